@@ -0,0 +1,192 @@
+package com.muratoksuzer.vp.api;
+
+import com.muratoksuzer.vp.dto.ApiSale;
+import com.muratoksuzer.vp.dto.ApiSaleLine;
+import com.muratoksuzer.vp.dto.ApiSaleResult;
+import com.muratoksuzer.vp.dto.ProductScanSnapshot;
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.service.BarcodeIndex;
+import com.muratoksuzer.vp.service.DegradedCheckoutService;
+import com.muratoksuzer.vp.service.PosService;
+import com.muratoksuzer.vp.service.TranslationService;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Headless POS for kiosks and online orders. Stateless (HTTP basic, no HTTP or Vaadin session, see
+ * {@code SecurityConfiguration}) and served on virtual threads.
+ * <p>
+ * {@code POST /api/pos/checkouts} takes a JSON array of sales, resolves all of their barcodes in one
+ * {@link BarcodeIndex} lookup and checks each sale out through {@link DegradedCheckoutService}, so
+ * group commit, the inventory engine and degraded mode apply as they do for the POS view. Sales run
+ * concurrently, at most {@code pos.api.max-parallel-checkouts} at a time across all requests, and each
+ * result is written as one line of newline-delimited JSON as soon as its sale is done.
+ */
+@RestController
+@RequestMapping("/api/pos")
+public class PosApiController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PosApiController.class);
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    // largest quantity of one sale line; keeps line totals far from overflowing
+    private static final Quantity MAX_LINE_QUANTITY = Quantity.ofMilli(1_000_000L * Quantity.MILLI);
+
+    private final BarcodeIndex barcodeIndex;
+    private final DegradedCheckoutService checkoutService;
+    private final TranslationService translations;
+    private final int maxBatchSize;
+    private final long timeoutMillis;
+    // bounds the sales checked out at once, so API batches cannot take every database connection
+    private final Semaphore checkoutPermits;
+
+    public PosApiController(BarcodeIndex barcodeIndex,
+                            DegradedCheckoutService checkoutService,
+                            TranslationService translations,
+                            @Value("${pos.api.max-batch-size:500}") int maxBatchSize,
+                            @Value("${pos.api.max-parallel-checkouts:16}") int maxParallelCheckouts,
+                            @Value("${pos.api.checkout-timeout-ms:60000}") long timeoutMillis) {
+        this.barcodeIndex = barcodeIndex;
+        this.checkoutService = checkoutService;
+        this.translations = translations;
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.checkoutPermits = new Semaphore(maxParallelCheckouts);
+    }
+
+    @GetMapping("/products/{barcode}")
+    public ResponseEntity<ProductScanSnapshot> lookup(@PathVariable String barcode) {
+        ProductScanSnapshot snapshot = barcodeIndex.lookup(barcode);
+        return snapshot == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(snapshot);
+    }
+
+    @PostMapping(path = "/checkouts", produces = APPLICATION_NDJSON)
+    public ResponseBodyEmitter checkout(@RequestBody List<ApiSale> sales) {
+        Locale locale = LocaleContextHolder.getLocale();
+        if (sales == null || sales.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, translations.t("api.batch.empty", locale));
+        }
+        if (sales.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, translations.t("api.batch.tooLarge", locale, maxBatchSize));
+        }
+
+        Map<String, ProductScanSnapshot> products = barcodeIndex.lookupAll(sales.stream()
+                .filter(sale -> sale != null && sale.lines() != null)
+                .flatMap(sale -> sale.lines().stream())
+                .filter(Objects::nonNull)
+                .map(ApiSaleLine::barcode)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList());
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMillis);
+        Thread.ofVirtual().name("api-checkout-batch").start(() -> {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < sales.size(); i++) {
+                    int index = i;
+                    checkoutPermits.acquire();
+                    executor.submit(() -> {
+                        ApiSaleResult result;
+                        try {
+                            result = translations.withLocale(locale, () -> checkout(index, sales.get(index), products));
+                        } finally {
+                            checkoutPermits.release();
+                        }
+                        send(emitter, result);
+                    });
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.completeWithError(e);
+                return;
+            }
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    /**
+     * Checks out one sale of the batch; every outcome, including unexpected errors, becomes a result.
+     */
+    private ApiSaleResult checkout(int index, ApiSale sale, Map<String, ProductScanSnapshot> products) {
+        String checkoutToken = sale == null ? null : sale.checkoutToken();
+        try {
+            return sell(index, sale, checkoutToken, products);
+        } catch (AppLevelValidationException e) {
+            return ApiSaleResult.failed(index, checkoutToken, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("API checkout {} failed", checkoutToken, e);
+            return ApiSaleResult.failed(index, checkoutToken, translations.t("api.sale.failed"));
+        }
+    }
+
+    private ApiSaleResult sell(int index, ApiSale sale, String checkoutToken, Map<String, ProductScanSnapshot> products) {
+        if (sale == null || sale.lines() == null || sale.lines().isEmpty()) {
+            return ApiSaleResult.failed(index, checkoutToken, translations.t("pos.cart.empty"));
+        }
+
+        List<PosService.CartLine> cartLines = new ArrayList<>(sale.lines().size());
+        for (ApiSaleLine line : sale.lines()) {
+            ProductScanSnapshot snapshot = line == null || line.barcode() == null ? null : products.get(line.barcode());
+            if (snapshot == null) {
+                return ApiSaleResult.failed(index, checkoutToken, translations.t("pos.productNotFound", line == null ? null : line.barcode()));
+            }
+            if (snapshot.price() == null) {
+                return ApiSaleResult.failed(index, checkoutToken, translations.t("pos.activePriceNotFound", snapshot.name()));
+            }
+            // checked on the rounded quantity that is sold, e.g. 0.0004 rounds to zero
+            boolean inRange = line.quantity() != null && line.quantity().compareTo(MAX_LINE_QUANTITY.toBigDecimal()) <= 0;
+            Quantity quantity = inRange ? Quantity.of(line.quantity()) : Quantity.ZERO;
+            if (!quantity.isPositive()) {
+                return ApiSaleResult.failed(index, checkoutToken, translations.t("api.sale.quantity", snapshot.name(), MAX_LINE_QUANTITY));
+            }
+            Product product = new Product(snapshot.name(), snapshot.barcode());
+            product.setId(snapshot.productId());
+            cartLines.add(new PosService.CartLine(product, quantity, Money.of(snapshot.price())));
+        }
+
+        DegradedCheckoutService.CheckoutResult result = checkoutService.checkout(cartLines, null, checkoutToken);
+        return ApiSaleResult.sold(index, checkoutToken, result.saleNo(), result.total(), result.provisional());
+    }
+
+    private static void send(ResponseBodyEmitter emitter, ApiSaleResult result) {
+        // results of concurrent sales must not interleave within a line
+        synchronized (emitter) {
+            try {
+                emitter.send(result, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            } catch (IOException | IllegalStateException e) {
+                // the client is gone; the remaining sales are still checked out and can be looked up by token
+                logger.debug("Could not stream result of sale {}", result.index(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.muratoksuzer.vp.api;
+
+import com.muratoksuzer.vp.dto.ReceiptStats;
+import com.muratoksuzer.vp.service.ReceiptService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.function.Function;
+
+/**
+ * Receipts for printers and reprints. The cached byte arrays are written to the response as they
+ * are; a sale's receipt never changes, so clients may cache it too.
+ */
+@RestController
+@RequestMapping("/api/pos/receipts")
+public class ReceiptApiController {
+
+    private final ReceiptService receiptService;
+
+    public ReceiptApiController(ReceiptService receiptService) {
+        this.receiptService = receiptService;
+    }
+
+    @GetMapping("/{saleNo}/escpos")
+    public ResponseEntity<byte[]> escPos(@PathVariable String saleNo) {
+        return receipt(saleNo, MediaType.APPLICATION_OCTET_STREAM, ReceiptService.RenderedReceipt::escPos);
+    }
+
+    @GetMapping("/{saleNo}/pdf")
+    public ResponseEntity<byte[]> pdf(@PathVariable String saleNo) {
+        return receipt(saleNo, MediaType.APPLICATION_PDF, ReceiptService.RenderedReceipt::pdf);
+    }
+
+    @GetMapping("/stats")
+    public ReceiptStats stats() {
+        return receiptService.getStats();
+    }
+
+    private ResponseEntity<byte[]> receipt(String saleNo, MediaType mediaType, Function<ReceiptService.RenderedReceipt, byte[]> format) {
+        return receiptService.findReceipt(saleNo)
+                .map(receipt -> ResponseEntity.ok()
+                        .contentType(mediaType)
+                        .cacheControl(CacheControl.empty().noTransform().cachePrivate())
+                        .body(format.apply(receipt)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,28 @@
+package com.muratoksuzer.vp.catalog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads a catalog file row by row, so an import never holds more than one row of the file in memory.
+ */
+public interface CatalogReader extends Closeable {
+
+    /**
+     * Fields of the next row, or null at the end of the file. A blank row has a single empty field.
+     */
+    List<String> next() throws IOException;
+
+    /**
+     * Opens {@code file} as XLSX when {@code fileName} ends with {@code .xlsx}, otherwise as CSV.
+     */
+    static CatalogReader open(Path file, String fileName) throws IOException {
+        if (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".xlsx")) {
+            return new XlsxCatalogReader(file);
+        }
+        return new CsvCatalogReader(file);
+    }
+}
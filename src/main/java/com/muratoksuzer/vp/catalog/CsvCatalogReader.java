@@ -0,0 +1,95 @@
+package com.muratoksuzer.vp.catalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UTF-8 CSV with double-quoted fields (which may contain delimiters, {@code ""} and line breaks).
+ * The delimiter is taken from the first line: tab or semicolon when it has one, otherwise comma.
+ */
+final class CsvCatalogReader implements CatalogReader {
+
+    private static final int FIRST_LINE_LIMIT = 64 * 1024;
+    private static final char BOM = '\uFEFF';
+
+    private final BufferedReader reader;
+    private final char delimiter;
+    private final StringBuilder field = new StringBuilder();
+
+    CsvCatalogReader(Path file) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            reader.mark(FIRST_LINE_LIMIT);
+            String firstLine = reader.readLine();
+            reader.reset();
+            this.delimiter = delimiterOf(firstLine == null ? "" : firstLine);
+
+            reader.mark(1);
+            if (reader.read() != BOM) {
+                reader.reset();
+            }
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean read = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            read = true;
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                    continue;
+                }
+                reader.mark(1);
+                if (reader.read() == '"') {
+                    field.append('"');
+                } else {
+                    reader.reset();
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!read) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static char delimiterOf(String line) {
+        if (line.indexOf('\t') >= 0) {
+            return '\t';
+        }
+        if (line.indexOf(';') >= 0) {
+            return ';';
+        }
+        return ',';
+    }
+}
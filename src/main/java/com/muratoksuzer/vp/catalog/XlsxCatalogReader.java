@@ -0,0 +1,208 @@
+package com.muratoksuzer.vp.catalog;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * First worksheet of an XLSX workbook, read with StAX straight from the zip: only the shared strings
+ * table is held in memory, the rows are parsed as they are asked for. Formulas yield their cached
+ * value and numbers are written out in plain notation, so numeric barcodes keep all their digits.
+ */
+final class XlsxCatalogReader implements CatalogReader {
+
+    private static final String FIRST_SHEET = "xl/worksheets/sheet1.xml";
+    private static final String SHARED_STRINGS = "xl/sharedStrings.xml";
+
+    private final XMLInputFactory xmlFactory = XMLInputFactory.newFactory();
+    private final ZipFile zip;
+    private final List<String> sharedStrings;
+    private final InputStream sheetStream;
+    private final XMLStreamReader sheet;
+
+    XlsxCatalogReader(Path file) throws IOException {
+        xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        this.zip = new ZipFile(file.toFile());
+        try {
+            this.sharedStrings = readSharedStrings();
+            this.sheetStream = zip.getInputStream(firstSheet());
+            this.sheet = xmlFactory.createXMLStreamReader(sheetStream);
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            zip.close();
+            throw e instanceof IOException io ? io : new IOException("Not a readable XLSX file", e);
+        }
+    }
+
+    @Override
+    public List<String> next() throws IOException {
+        try {
+            while (sheet.hasNext()) {
+                if (sheet.next() == XMLStreamConstants.START_ELEMENT && "row".equals(sheet.getLocalName())) {
+                    return readRow();
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException("Not a readable XLSX file", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sheet.close();
+        } catch (XMLStreamException e) {
+            // the underlying stream is closed below
+        }
+        sheetStream.close();
+        zip.close();
+    }
+
+    private List<String> readRow() throws XMLStreamException {
+        List<String> cells = new ArrayList<>();
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(sheet.getLocalName())) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(sheet.getLocalName())) {
+                // empty cells are left out of the sheet, the reference tells the column
+                int column = columnIndex(sheet.getAttributeValue(null, "r"), cells.size());
+                String value = readCell(sheet.getAttributeValue(null, "t"));
+                while (cells.size() < column) {
+                    cells.add("");
+                }
+                cells.add(value);
+            }
+        }
+        if (cells.isEmpty()) {
+            cells.add("");
+        }
+        return cells;
+    }
+
+    private String readCell(String type) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        boolean inValue = false;
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                // <v> holds the value, <is><t> (or rich text runs) an inline string; <f> is skipped
+                inValue = "v".equals(sheet.getLocalName()) || "t".equals(sheet.getLocalName());
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (inValue) {
+                    text.append(sheet.getText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("c".equals(sheet.getLocalName())) {
+                    break;
+                }
+                inValue = false;
+            }
+        }
+
+        String value = text.toString();
+        return switch (type == null ? "n" : type) {
+            case "s" -> sharedString(value);
+            case "n" -> plainNumber(value);
+            case "b" -> "1".equals(value) ? "TRUE" : "FALSE";
+            default -> value;
+        };
+    }
+
+    private String sharedString(String index) {
+        try {
+            return sharedStrings.get(Integer.parseInt(index.strip()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return "";
+        }
+    }
+
+    private List<String> readSharedStrings() throws IOException, XMLStreamException {
+        List<String> strings = new ArrayList<>();
+        ZipEntry entry = zip.getEntry(SHARED_STRINGS);
+        if (entry == null) {
+            return strings;
+        }
+
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader xml = xmlFactory.createXMLStreamReader(in);
+            StringBuilder current = new StringBuilder();
+            boolean inText = false;
+            boolean inPhonetic = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "si" -> current.setLength(0);
+                        case "t" -> inText = true;
+                        case "rPh" -> inPhonetic = true;
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "si" -> strings.add(current.toString());
+                        case "t" -> inText = false;
+                        case "rPh" -> inPhonetic = false;
+                        default -> { }
+                    }
+                } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+                        && inText && !inPhonetic) {
+                    current.append(xml.getText());
+                }
+            }
+            xml.close();
+        }
+        return strings;
+    }
+
+    private ZipEntry firstSheet() throws IOException {
+        ZipEntry entry = zip.getEntry(FIRST_SHEET);
+        if (entry != null) {
+            return entry;
+        }
+        return zip.stream()
+                .filter(e -> e.getName().startsWith("xl/worksheets/sheet") && e.getName().endsWith(".xml"))
+                .min(Comparator.comparing(ZipEntry::getName))
+                .orElseThrow(() -> new IOException("The workbook has no worksheet"));
+    }
+
+    /**
+     * Zero-based column of a cell reference such as {@code AB12}, or {@code fallback} without one.
+     */
+    private static int columnIndex(String reference, int fallback) {
+        if (reference == null || reference.isEmpty()) {
+            return fallback;
+        }
+        int column = 0;
+        int i = 0;
+        while (i < reference.length() && Character.isLetter(reference.charAt(i))) {
+            column = column * 26 + (Character.toUpperCase(reference.charAt(i)) - 'A' + 1);
+            i++;
+        }
+        return i == 0 ? fallback : column - 1;
+    }
+
+    private static String plainNumber(String value) {
+        if (value.isBlank()) {
+            return "";
+        }
+        try {
+            return new BigDecimal(value.strip()).stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+}
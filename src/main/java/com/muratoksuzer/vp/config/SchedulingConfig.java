@@ -0,0 +1,13 @@
+package com.muratoksuzer.vp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background jobs (reservation sweep, shard rebalancing, ...) run as {@code @Scheduled} methods on the
+ * task scheduler Spring Boot configures; with virtual threads enabled each run gets its own.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
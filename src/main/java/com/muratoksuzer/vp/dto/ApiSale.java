@@ -0,0 +1,9 @@
+package com.muratoksuzer.vp.dto;
+
+import java.util.List;
+
+/**
+ * One sale of a REST batch checkout. {@code checkoutToken} (optional) makes retries of the sale
+ * idempotent, like the POS view's token.
+ */
+public record ApiSale(String checkoutToken, List<ApiSaleLine> lines) {}
@@ -0,0 +1,8 @@
+package com.muratoksuzer.vp.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Sale line of the REST API; the product is sold at its active price.
+ */
+public record ApiSaleLine(String barcode, BigDecimal quantity) {}
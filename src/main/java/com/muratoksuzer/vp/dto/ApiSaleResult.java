@@ -0,0 +1,18 @@
+package com.muratoksuzer.vp.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Result of one sale of a batch checkout, streamed as soon as the sale is done. {@code index} is the
+ * position of the sale in the request; either {@code saleNo} or {@code error} is set.
+ */
+public record ApiSaleResult(int index, String checkoutToken, String saleNo, BigDecimal total, boolean provisional, String error) {
+
+    public static ApiSaleResult sold(int index, String checkoutToken, String saleNo, BigDecimal total, boolean provisional) {
+        return new ApiSaleResult(index, checkoutToken, saleNo, total, provisional, null);
+    }
+
+    public static ApiSaleResult failed(int index, String checkoutToken, String error) {
+        return new ApiSaleResult(index, checkoutToken, null, null, false, error);
+    }
+}
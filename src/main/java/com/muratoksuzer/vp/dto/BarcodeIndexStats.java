@@ -0,0 +1,10 @@
+package com.muratoksuzer.vp.dto;
+
+public record BarcodeIndexStats(
+        int size,
+        long hits,
+        long misses,
+        long fullReloads,
+        long productRefreshes,
+        long lastFullReloadMillis
+) {}
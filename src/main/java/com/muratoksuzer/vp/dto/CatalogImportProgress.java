@@ -0,0 +1,12 @@
+package com.muratoksuzer.vp.dto;
+
+/**
+ * Progress of a catalog import, reported after each committed chunk: data rows read so far, how
+ * many of them were imported and how many were skipped as duplicates or invalid.
+ */
+public record CatalogImportProgress(long rows, long imported, long skipped, long elapsedMillis) {
+
+    public long rowsPerSecond() {
+        return elapsedMillis <= 0 ? rows : rows * 1000 / elapsedMillis;
+    }
+}
@@ -0,0 +1,14 @@
+package com.muratoksuzer.vp.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a catalog import; {@code problems} describes the first skipped rows.
+ */
+public record CatalogImportResult(long rows, long imported, long duplicates, long invalid,
+                                  List<String> problems, long elapsedMillis) {
+
+    public long rowsPerSecond() {
+        return elapsedMillis <= 0 ? rows : rows * 1000 / elapsedMillis;
+    }
+}
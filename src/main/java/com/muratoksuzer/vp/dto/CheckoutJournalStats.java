@@ -0,0 +1,9 @@
+package com.muratoksuzer.vp.dto;
+
+public record CheckoutJournalStats(
+        boolean enabled,
+        long queueDepth,
+        long drainLagMillis,
+        long drained,
+        long rejected
+) {}
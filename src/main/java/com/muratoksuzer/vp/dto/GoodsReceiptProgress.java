@@ -0,0 +1,21 @@
+package com.muratoksuzer.vp.dto;
+
+/**
+ * Progress of a goods receipt: lines copied into the staging table so far and how much of the
+ * input was read ({@code totalBytes} is 0 when the size is not known).
+ */
+public record GoodsReceiptProgress(Phase phase, long lines, long bytesRead, long totalBytes) {
+
+    public enum Phase {
+        STAGING,
+        APPLYING,
+        DONE
+    }
+
+    public double fraction() {
+        return switch (phase) {
+            case STAGING -> totalBytes <= 0 ? 0 : Math.min(1.0, (double) bytesRead / totalBytes);
+            case APPLYING, DONE -> 1.0;
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package com.muratoksuzer.vp.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a goods receipt; {@code unknownBarcodes} lists barcodes of lines that were skipped.
+ */
+public record GoodsReceiptResult(long lines, long products, List<String> unknownBarcodes, long elapsedMillis) {}
@@ -0,0 +1,20 @@
+package com.muratoksuzer.vp.dto;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Keyset position in the unified movement list, ordered by date desc, source (movement before sale line), id desc.
+ */
+public record MovementCursor(OffsetDateTime dateCreated, boolean fromSale, long id) {
+
+    private static final OffsetDateTime END_OF_TIME = OffsetDateTime.of(9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    public static MovementCursor first() {
+        return new MovementCursor(END_OF_TIME, false, Long.MAX_VALUE);
+    }
+
+    public static MovementCursor after(StockMovementDto row) {
+        return new MovementCursor(row.getDateCreated(), row.isFromSale(), row.getId());
+    }
+}
@@ -0,0 +1,8 @@
+package com.muratoksuzer.vp.dto;
+
+import java.util.List;
+
+/**
+ * One keyset page of movements; {@code next} is null on the last page.
+ */
+public record MovementWindow(List<StockMovementDto> items, MovementCursor next) {}
@@ -0,0 +1,13 @@
+package com.muratoksuzer.vp.dto;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+public record ParkedCartDto(
+        Long id,
+        String label,
+        String parkedBy,
+        int lineCount,
+        BigDecimal total,
+        OffsetDateTime dateCreated
+) {}
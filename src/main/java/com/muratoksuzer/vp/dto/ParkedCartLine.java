@@ -0,0 +1,52 @@
+package com.muratoksuzer.vp.dto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One line of a parked cart: product id, quantity in thousandths and unit price in minor units.
+ * A cart is stored as a format version byte, the line count and 24 bytes per line.
+ */
+public record ParkedCartLine(long productId, long quantityMilli, long unitPriceMinor) {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    public static byte[] encode(List<ParkedCartLine> lines) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(5 + lines.size() * 24);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(lines.size());
+            for (ParkedCartLine line : lines) {
+                out.writeLong(line.productId());
+                out.writeLong(line.quantityMilli());
+                out.writeLong(line.unitPriceMinor());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<ParkedCartLine> decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("unknown parked cart format " + version);
+            }
+            int count = in.readInt();
+            List<ParkedCartLine> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                lines.add(new ParkedCartLine(in.readLong(), in.readLong(), in.readLong()));
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
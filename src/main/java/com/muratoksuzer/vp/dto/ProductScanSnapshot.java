@@ -0,0 +1,19 @@
+package com.muratoksuzer.vp.dto;
+
+import com.muratoksuzer.vp.entity.domain.Currency;
+import com.muratoksuzer.vp.entity.domain.ProductUnit;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable product + active price view used by barcode scans.
+ * {@code price} and {@code currency} are null when the product has no active price.
+ */
+public record ProductScanSnapshot(
+        Long productId,
+        String name,
+        String barcode,
+        ProductUnit unit,
+        BigDecimal price,
+        Currency currency
+) {}
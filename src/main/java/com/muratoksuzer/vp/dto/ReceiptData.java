@@ -0,0 +1,13 @@
+package com.muratoksuzer.vp.dto;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Everything printed on a receipt, taken from the sale when it is made, so rendering needs no database access.
+ */
+public record ReceiptData(String saleNo, OffsetDateTime soldAt, List<Line> lines, BigDecimal total) {
+
+    public record Line(String productName, BigDecimal quantity, BigDecimal unitPrice, BigDecimal lineTotal) {}
+}
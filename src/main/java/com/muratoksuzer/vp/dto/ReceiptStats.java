@@ -0,0 +1,17 @@
+package com.muratoksuzer.vp.dto;
+
+/**
+ * Receipt pipeline counters; render times cover ESC/POS and PDF of one receipt together, and the
+ * commit lag is the time from the sale's commit until its receipt is cached.
+ */
+public record ReceiptStats(
+        long rendered,
+        long failed,
+        int pending,
+        int cached,
+        long cacheHits,
+        long cacheMisses,
+        double averageRenderMicros,
+        long maxRenderMicros,
+        double averageCommitLagMicros
+) {}
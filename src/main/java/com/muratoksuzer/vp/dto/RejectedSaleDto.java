@@ -0,0 +1,13 @@
+package com.muratoksuzer.vp.dto;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+public record RejectedSaleDto(
+        Long id,
+        String saleNo,
+        BigDecimal total,
+        String reason,
+        String lines,
+        OffsetDateTime dateCreated
+) {}
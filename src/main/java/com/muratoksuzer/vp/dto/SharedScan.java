@@ -0,0 +1,7 @@
+package com.muratoksuzer.vp.dto;
+
+/**
+ * A scan sent from a scanner device to a POS terminal's cart, already resolved on the scanning side:
+ * the terminal adds it without looking the product up again.
+ */
+public record SharedScan(long productId, String productName, long unitPriceMinor, long quantityMilli) {}
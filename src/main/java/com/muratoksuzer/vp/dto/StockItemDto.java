@@ -8,6 +8,7 @@ public class StockItemDto {
     private BigDecimal quantityOnHand = BigDecimal.ZERO;
     private BigDecimal reorderLevel = BigDecimal.ZERO;
     private String location;
+    private int shardCount = 1;
 
     public Long getId() {
         return id;
@@ -48,4 +49,12 @@ public class StockItemDto {
     public void setLocation(String location) {
         this.location = location;
     }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
 }
@@ -0,0 +1,22 @@
+package com.muratoksuzer.vp.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Stock on hand of a product (shards included) against its reorder level.
+ */
+public record StockLevel(
+        Long productId,
+        String productName,
+        BigDecimal onHand,
+        BigDecimal reorderLevel
+) {
+
+    public boolean isLow() {
+        return onHand.compareTo(reorderLevel) <= 0;
+    }
+
+    public BigDecimal missing() {
+        return reorderLevel.subtract(onHand);
+    }
+}
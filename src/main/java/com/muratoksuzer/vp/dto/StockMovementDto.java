@@ -13,6 +13,8 @@ public class StockMovementDto {
     private BigDecimal quantity;
     private String note;
     private OffsetDateTime dateCreated;
+    // true when the row is derived from a sale line instead of a stored movement
+    private boolean fromSale;
 
     public Long getId() {
         return id;
@@ -61,4 +63,12 @@ public class StockMovementDto {
     public void setDateCreated(OffsetDateTime dateCreated) {
         this.dateCreated = dateCreated;
     }
+
+    public boolean isFromSale() {
+        return fromSale;
+    }
+
+    public void setFromSale(boolean fromSale) {
+        this.fromSale = fromSale;
+    }
 }
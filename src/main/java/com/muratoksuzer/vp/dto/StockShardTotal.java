@@ -0,0 +1,8 @@
+package com.muratoksuzer.vp.dto;
+
+import java.math.BigDecimal;
+
+public record StockShardTotal(
+        Long stockItemId,
+        BigDecimal quantity
+) {}
@@ -1,41 +1,67 @@
 package com.muratoksuzer.vp.dto;
 
-import com.muratoksuzer.vp.entity.domain.Product;
-
-import java.math.BigDecimal;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
 
+/**
+ * A POS cart line as kept in the Vaadin session: ids, the product name for display and primitive
+ * amounts only, no entity instances.
+ */
 public class UiCartLineDto {
-    private final Product product;
-    private BigDecimal quantity;
-    private BigDecimal unitPrice;
+    private final long productId;
+    private final String productName;
+    // fixed-point: +/- clicks and line totals are plain long math
+    private long quantityMilli;
+    private long unitPriceMinor;
+
+    public UiCartLineDto(long productId, String productName, Quantity quantity, Money unitPrice) {
+        this.productId = productId;
+        this.productName = productName;
+        this.quantityMilli = quantity.milliUnits();
+        this.unitPriceMinor = unitPrice.minorUnits();
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public Quantity getQuantity() {
+        return Quantity.ofMilli(quantityMilli);
+    }
+
+    public void setQuantity(Quantity quantity) {
+        this.quantityMilli = quantity.milliUnits();
+    }
 
-    public UiCartLineDto(Product product, BigDecimal quantity, BigDecimal unitPrice) {
-        this.product = product;
-        this.quantity = quantity;
-        this.unitPrice = unitPrice;
+    public void addQuantity(long milliUnits) {
+        this.quantityMilli = Math.addExact(quantityMilli, milliUnits);
     }
 
-    public Product getProduct() {
-        return product;
+    public long getQuantityMilli() {
+        return quantityMilli;
     }
 
-    public BigDecimal getQuantity() {
-        return quantity;
+    public Money getUnitPrice() {
+        return Money.ofMinor(unitPriceMinor);
     }
 
-    public void setQuantity(BigDecimal quantity) {
-        this.quantity = quantity;
+    public long getUnitPriceMinor() {
+        return unitPriceMinor;
     }
 
-    public BigDecimal getUnitPrice() {
-        return unitPrice;
+    public void setUnitPrice(Money unitPrice) {
+        this.unitPriceMinor = unitPrice.minorUnits();
     }
 
-    public void setUnitPrice(BigDecimal unitPrice) {
-        this.unitPrice = unitPrice;
+    public Money getLineTotal() {
+        return Money.ofMinor(getLineTotalMinor());
     }
 
-    public BigDecimal getLineTotal() {
-        return unitPrice.multiply(quantity);
+    public long getLineTotalMinor() {
+        return Money.timesMinor(unitPriceMinor, quantityMilli);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.muratoksuzer.vp.engine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer. Producers claim a sequence with a CAS, fill
+ * the slot and publish it; the single consumer takes slots strictly in sequence order.
+ */
+final class CommandRing<T> {
+
+    private final Object[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+    // written by the consumer only, read by producers for the capacity check
+    private volatile long consumed;
+
+    CommandRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        slots = new Object[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds the element, waiting while the ring is full.
+     */
+    void put(T element) {
+        long seq = claimed.getAndIncrement();
+        while (seq - consumed >= slots.length) {
+            LockSupport.parkNanos(1_000);
+        }
+        int index = (int) seq & mask;
+        slots[index] = element;
+        published.lazySet(index, seq);
+    }
+
+    /**
+     * Moves up to {@code max} published elements into {@code target}, in order. Consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<T> target, int max) {
+        long next = consumed;
+        int count = 0;
+        while (count < max) {
+            int index = (int) next & mask;
+            if (published.get(index) != next) {
+                break;
+            }
+            target.add((T) slots[index]);
+            slots[index] = null;
+            next++;
+            count++;
+        }
+        consumed = next;
+        return count;
+    }
+
+    boolean isEmpty() {
+        return published.get((int) consumed & mask) != consumed;
+    }
+}
@@ -0,0 +1,106 @@
+package com.muratoksuzer.vp.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A change applied by the {@link InventoryEngine}, as stored in its write-ahead log until it has been
+ * written to the database. Every record also carries the resulting quantity of each product it
+ * touched, for reading the journal; stock_item is written from the quantities changed.
+ */
+public sealed interface EngineRecord {
+
+    // SALE records written before checkout tokens existed are still read
+    byte SALE = 1;
+    byte ADJUSTMENT = 2;
+    byte SALE_WITH_TOKEN = 3;
+
+    record Line(long productId, long quantityMilli, long unitPriceMinor) {}
+
+    record StockLevel(long productId, long quantityMilli) {}
+
+    /**
+     * A sale; {@code checkoutToken} is null when the client sent none.
+     */
+    record SaleRecord(String saleNo, String checkoutToken, long createdAtMillis, List<Line> lines, List<StockLevel> levels) implements EngineRecord {}
+
+    /**
+     * Manual stock change; a positive delta is an IN movement, a negative one an OUT movement.
+     */
+    record AdjustmentRecord(long productId, long deltaMilli, String note, long createdAtMillis, StockLevel level) implements EngineRecord {}
+
+    default byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            switch (this) {
+                case SaleRecord sale -> {
+                    out.writeByte(SALE_WITH_TOKEN);
+                    out.writeUTF(sale.saleNo());
+                    out.writeUTF(sale.checkoutToken() == null ? "" : sale.checkoutToken());
+                    out.writeLong(sale.createdAtMillis());
+                    out.writeInt(sale.lines().size());
+                    for (Line line : sale.lines()) {
+                        out.writeLong(line.productId());
+                        out.writeLong(line.quantityMilli());
+                        out.writeLong(line.unitPriceMinor());
+                    }
+                    out.writeInt(sale.levels().size());
+                    for (StockLevel level : sale.levels()) {
+                        out.writeLong(level.productId());
+                        out.writeLong(level.quantityMilli());
+                    }
+                }
+                case AdjustmentRecord adjustment -> {
+                    out.writeByte(ADJUSTMENT);
+                    out.writeLong(adjustment.productId());
+                    out.writeLong(adjustment.deltaMilli());
+                    out.writeUTF(adjustment.note() == null ? "" : adjustment.note());
+                    out.writeLong(adjustment.createdAtMillis());
+                    out.writeLong(adjustment.level().quantityMilli());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static EngineRecord fromBytes(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte type = in.readByte();
+            if (type == SALE || type == SALE_WITH_TOKEN) {
+                String saleNo = in.readUTF();
+                String checkoutToken = type == SALE_WITH_TOKEN ? in.readUTF() : "";
+                long createdAtMillis = in.readLong();
+                int lineCount = in.readInt();
+                List<Line> lines = new ArrayList<>(lineCount);
+                for (int i = 0; i < lineCount; i++) {
+                    lines.add(new Line(in.readLong(), in.readLong(), in.readLong()));
+                }
+                int levelCount = in.readInt();
+                List<StockLevel> levels = new ArrayList<>(levelCount);
+                for (int i = 0; i < levelCount; i++) {
+                    levels.add(new StockLevel(in.readLong(), in.readLong()));
+                }
+                return new SaleRecord(saleNo, checkoutToken.isEmpty() ? null : checkoutToken, createdAtMillis, lines, levels);
+            }
+            if (type == ADJUSTMENT) {
+                long productId = in.readLong();
+                long deltaMilli = in.readLong();
+                String note = in.readUTF();
+                long createdAtMillis = in.readLong();
+                long level = in.readLong();
+                return new AdjustmentRecord(productId, deltaMilli, note, createdAtMillis, new StockLevel(productId, level));
+            }
+            throw new IllegalStateException("unknown engine record type " + type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
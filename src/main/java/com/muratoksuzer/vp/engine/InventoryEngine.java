@@ -0,0 +1,756 @@
+package com.muratoksuzer.vp.engine;
+
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.entity.domain.Sale;
+import com.muratoksuzer.vp.entity.domain.SaleLine;
+import com.muratoksuzer.vp.entity.domain.StockMovement;
+import com.muratoksuzer.vp.entity.domain.StockMovementType;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.journal.WriteAheadLog;
+import com.muratoksuzer.vp.repository.ProductRepository;
+import com.muratoksuzer.vp.repository.SaleLineRepository;
+import com.muratoksuzer.vp.repository.SaleRepository;
+import com.muratoksuzer.vp.repository.StockMovementRepository;
+import com.muratoksuzer.vp.service.LowStockIndex;
+import com.muratoksuzer.vp.service.PosService;
+import com.muratoksuzer.vp.service.StockReservationLedger;
+import com.muratoksuzer.vp.service.StockShardService;
+import com.muratoksuzer.vp.service.TranslationService;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer inventory engine: with {@code pos.inventory-engine.enabled=true} the authoritative stock
+ * quantities live in memory and checkout / stock adjustments never wait on a database lock.
+ * <p>
+ * Callers put commands into a {@link CommandRing}; one writer thread owns the {@link LongLongHashMap}
+ * (product id -> quantity in thousandths), validates and applies the commands, appends the resulting
+ * {@link EngineRecord}s to a {@link WriteAheadLog} with one fsync per drained batch and only then answers
+ * the callers. A flusher thread writes the records behind to sale, sale_line, stock_movement and
+ * stock_item in batches, dated with the time the change was accepted; stock_item gets the quantity
+ * deltas, so changes made to it outside the engine are not overwritten. The last written journal
+ * sequence is stored in the same transaction ({@code inventory_engine_state}), so a crash never
+ * writes a record twice; a record the database refuses is set aside in {@code inventory_engine_rejected}
+ * instead of blocking the ones after it. On startup pending records are written first and the map is
+ * then loaded from stock_item.
+ * <p>
+ * Sales and movements show up in the database up to {@code flush-interval-ms} later. Stock shards are
+ * not used in this mode; sharded items are merged back into one row on startup.
+ */
+@Service
+@DependsOn("sequenceInitializer")
+public class InventoryEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryEngine.class);
+
+    private static final int RING_SIZE = 1 << 14;
+    private static final int MAX_DRAIN = 512;
+    private static final int FLUSH_BATCH = 1000;
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final long NO_STOCK = Long.MIN_VALUE;
+    // producers unpark the writer after every put; the timeout is only a safety net
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+    // PosService looks tokens up in the database first; this only has to cover sales not yet written
+    private static final int RECENT_TOKENS = 1 << 16;
+    // checkout looks sale numbers up in the database first, the same applies
+    private static final int RECENT_SALE_NOS = 1 << 16;
+
+    private sealed interface Command {}
+
+    private record CheckoutCommand(String saleNo, List<PosService.CartLine> lines, String cartId, String checkoutToken,
+                                   CompletableFuture<Sale> result) implements Command {}
+
+    private record AdjustCommand(long productId, long deltaMilli, String note,
+                                 CompletableFuture<Long> result) implements Command {}
+
+    private record AdjustAllCommand(Map<Long, Long> deltasMilli, String note,
+                                    CompletableFuture<Integer> result) implements Command {}
+
+    private record QueryCommand(long[] productIds, CompletableFuture<long[]> result) implements Command {}
+
+    private record Pending(long seq, EngineRecord record) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductRepository productRepository;
+    private final SaleRepository saleRepository;
+    private final SaleLineRepository saleLineRepository;
+    private final StockMovementRepository movementRepository;
+    private final StockReservationLedger reservationLedger;
+    private final StockShardService stockShardService;
+    private final LowStockIndex lowStockIndex;
+    private final TranslationService translations;
+
+    private final boolean enabled;
+    private final Path journalDir;
+    private final long flushIntervalMillis;
+    private final boolean deriveSaleMovements;
+
+    private final CommandRing<Command> ring = new CommandRing<>(RING_SIZE);
+    private final ConcurrentLinkedQueue<Pending> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Semaphore flushSignal = new Semaphore(0);
+
+    // owned by the writer thread
+    private final LongLongHashMap quantities = new LongLongHashMap(1024);
+    private final Map<String, Sale> recentTokens = new LinkedHashMap<>(1024, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Sale> eldest) {
+            return size() > RECENT_TOKENS;
+        }
+    };
+    private final Map<String, Boolean> recentSaleNos = new LinkedHashMap<>(1024, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_SALE_NOS;
+        }
+    };
+
+    private WriteAheadLog journal;
+    private volatile boolean running;
+    private volatile long appendedSeq;
+    private volatile long persistedSeq;
+    private Thread writer;
+    private Thread flusher;
+
+    public InventoryEngine(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           ProductRepository productRepository,
+                           SaleRepository saleRepository,
+                           SaleLineRepository saleLineRepository,
+                           StockMovementRepository movementRepository,
+                           StockReservationLedger reservationLedger,
+                           StockShardService stockShardService,
+                           LowStockIndex lowStockIndex,
+                           TranslationService translations,
+                           @Value("${pos.inventory-engine.enabled:false}") boolean enabled,
+                           @Value("${pos.inventory-engine.journal-dir:data/inventory-journal}") Path journalDir,
+                           @Value("${pos.inventory-engine.flush-interval-ms:200}") long flushIntervalMillis,
+                           @Value("${pos.derive-sale-movements:false}") boolean deriveSaleMovements) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.productRepository = productRepository;
+        this.saleRepository = saleRepository;
+        this.saleLineRepository = saleLineRepository;
+        this.movementRepository = movementRepository;
+        this.reservationLedger = reservationLedger;
+        this.stockShardService = stockShardService;
+        this.lowStockIndex = lowStockIndex;
+        this.translations = translations;
+        this.enabled = enabled;
+        this.journalDir = journalDir;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.deriveSaleMovements = deriveSaleMovements;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.execute("create table if not exists inventory_engine_state (id int primary key, last_seq bigint not null)");
+        jdbcTemplate.update("insert into inventory_engine_state (id, last_seq) values (1, 0) on conflict (id) do nothing");
+        jdbcTemplate.execute("""
+                create table if not exists inventory_engine_rejected (
+                    seq bigint primary key,
+                    payload bytea not null,
+                    reason varchar(512),
+                    date_created timestamp with time zone not null
+                )
+                """);
+
+        journal = new WriteAheadLog(journalDir, SEGMENT_SIZE);
+        persistedSeq = jdbcTemplate.queryForObject("select last_seq from inventory_engine_state where id = 1", Long.class);
+        if (journal.getLastSeq() < persistedSeq) {
+            // journal directory was replaced: nothing in it is pending
+            logger.warn("Inventory journal ends at {} but database is at {}, resetting", journal.getLastSeq(), persistedSeq);
+            persistedSeq = journal.getLastSeq();
+            jdbcTemplate.update("update inventory_engine_state set last_seq = ? where id = 1", persistedSeq);
+        }
+        appendedSeq = journal.getLastSeq();
+
+        recover();
+        mergeShards();
+        loadQuantities();
+
+        running = true;
+        writer = Thread.ofPlatform().name("inventory-engine-writer").daemon().start(this::writeLoop);
+        flusher = Thread.ofVirtual().name("inventory-engine-flusher").start(this::flushLoop);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        flushSignal.release();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+            // write what the flusher left behind; the rest is picked up from the journal on next start
+            flushPending();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.warn("Inventory engine could not write pending changes on shutdown", e);
+        } finally {
+            journal.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sells the cart lines in memory. Lines are checked against the stock on hand minus other carts'
+     * reservations; the returned sale is not yet in the database. A {@code checkoutToken} seen in a
+     * recent sale returns that sale instead. A sale number already used, in the database or by a sale not
+     * yet written, fails with {@link DataIntegrityViolationException} like the unique key would.
+     */
+    public Sale checkout(String saleNo, List<PosService.CartLine> cartLines, String cartId, String checkoutToken) {
+        if (saleRepository.existsBySaleNo(saleNo)) {
+            throw duplicateSaleNo(saleNo);
+        }
+        CheckoutCommand command = new CheckoutCommand(saleNo, cartLines, cartId, checkoutToken, new CompletableFuture<>());
+        submit(command);
+        return join(command.result());
+    }
+
+    /**
+     * Changes the stock of a product by {@code deltaMilli} thousandths and returns the new quantity.
+     */
+    public long adjust(long productId, long deltaMilli, String note) {
+        AdjustCommand command = new AdjustCommand(productId, deltaMilli, note, new CompletableFuture<>());
+        submit(command);
+        return join(command.result());
+    }
+
+    /**
+     * Changes the stock of several products by their deltas in thousandths, in one journal write: all
+     * changes are applied or none, e.g. when a product has no stock item. Returns the number of products.
+     */
+    public int adjustAll(Map<Long, Long> deltasMilli, String note) {
+        AdjustAllCommand command = new AdjustAllCommand(new TreeMap<>(deltasMilli), note, new CompletableFuture<>());
+        submit(command);
+        return join(command.result());
+    }
+
+    /**
+     * Current quantities by product id; products without stock are left out.
+     */
+    public Map<Long, Quantity> quantities(Collection<Long> productIds) {
+        long[] ids = productIds.stream().mapToLong(Long::longValue).toArray();
+        QueryCommand command = new QueryCommand(ids, new CompletableFuture<>());
+        submit(command);
+        long[] values = join(command.result());
+
+        Map<Long, Quantity> result = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (values[i] != NO_STOCK) {
+                result.put(ids[i], Quantity.ofMilli(values[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of journaled changes not yet written to the database.
+     */
+    public long getPendingWriteCount() {
+        return appendedSeq - persistedSeq;
+    }
+
+    /**
+     * Waits until every change accepted so far has been written to the database.
+     */
+    public boolean awaitPersisted(Duration timeout) throws InterruptedException {
+        long target = appendedSeq;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (persistedSeq < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            flushSignal.release();
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private void submit(Command command) {
+        if (!running) {
+            throw new IllegalStateException("inventory engine is not running");
+        }
+        ring.put(command);
+        LockSupport.unpark(writer);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    // ---------------------------------------------------------------- writer thread
+
+    private void writeLoop() {
+        List<Command> commands = new ArrayList<>(MAX_DRAIN);
+        List<EngineRecord> records = new ArrayList<>(MAX_DRAIN);
+        List<Runnable> replies = new ArrayList<>(MAX_DRAIN);
+        List<CompletableFuture<?>> journaled = new ArrayList<>(MAX_DRAIN);
+        // pairs of product id / previous quantity, to undo the batch if the journal write fails
+        List<long[]> undo = new ArrayList<>();
+        List<String> batchTokens = new ArrayList<>();
+        List<String> batchSaleNos = new ArrayList<>();
+
+        while (running || !ring.isEmpty()) {
+            if (ring.drainTo(commands, MAX_DRAIN) == 0) {
+                // a put published before this check has left an unpark permit, so no command is missed
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+
+            for (Command command : commands) {
+                try {
+                    switch (command) {
+                        case CheckoutCommand checkout -> applyCheckout(checkout, records, replies, journaled, undo, batchTokens, batchSaleNos);
+                        case AdjustCommand adjust -> applyAdjust(adjust, records, replies, journaled, undo);
+                        case AdjustAllCommand adjustAll -> applyAdjustAll(adjustAll, records, replies, journaled, undo);
+                        case QueryCommand query -> answerQuery(query);
+                    }
+                } catch (RuntimeException e) {
+                    failCommand(command, e);
+                }
+            }
+
+            if (!records.isEmpty()) {
+                try {
+                    List<byte[]> payloads = new ArrayList<>(records.size());
+                    records.forEach(record -> payloads.add(record.toBytes()));
+                    long lastSeq = journal.appendAll(payloads);
+                    long seq = lastSeq - records.size();
+                    for (EngineRecord record : records) {
+                        pendingWrites.add(new Pending(++seq, record));
+                    }
+                    appendedSeq = lastSeq;
+                    replies.forEach(Runnable::run);
+                    if (getPendingWriteCount() >= FLUSH_BATCH) {
+                        flushSignal.release();
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Inventory journal write failed, rejecting {} changes", records.size(), e);
+                    for (int i = undo.size() - 1; i >= 0; i--) {
+                        quantities.put(undo.get(i)[0], undo.get(i)[1]);
+                    }
+                    batchTokens.forEach(recentTokens::remove);
+                    batchSaleNos.forEach(recentSaleNos::remove);
+                    journaled.forEach(future -> future.completeExceptionally(e));
+                }
+            } else {
+                // only queries and retries of earlier sales
+                replies.forEach(Runnable::run);
+            }
+
+            commands.clear();
+            batchTokens.clear();
+            batchSaleNos.clear();
+            records.clear();
+            replies.clear();
+            journaled.clear();
+            undo.clear();
+        }
+    }
+
+    private void applyCheckout(CheckoutCommand command, List<EngineRecord> records, List<Runnable> replies,
+                               List<CompletableFuture<?>> journaled, List<long[]> undo, List<String> batchTokens,
+                               List<String> batchSaleNos) {
+        Sale tokenSale = command.checkoutToken() == null ? null : recentTokens.get(command.checkoutToken());
+        if (tokenSale != null) {
+            // the first attempt may still be waiting for the journal write of this batch
+            replies.add(() -> command.result().complete(tokenSale));
+            journaled.add(command.result());
+            return;
+        }
+        if (recentSaleNos.containsKey(command.saleNo())) {
+            throw duplicateSaleNo(command.saleNo());
+        }
+
+        // sum per product first, so a product on several lines is checked once
+        Map<Long, Long> requested = new TreeMap<>();
+        Map<Long, Product> products = new HashMap<>();
+        for (PosService.CartLine line : command.lines()) {
+            requested.merge(line.product().getId(), line.quantity().milliUnits(), Math::addExact);
+            products.putIfAbsent(line.product().getId(), line.product());
+        }
+
+        for (Map.Entry<Long, Long> entry : requested.entrySet()) {
+            long onHand = quantity(entry.getKey());
+            String productName = products.get(entry.getKey()).getName();
+            if (onHand == NO_STOCK) {
+                throw new AppLevelValidationException(translations.t("pos.stock.missing", productName));
+            }
+            long available = onHand - reservationLedger.reservedByOthers(entry.getKey(), command.cartId()).milliUnits();
+            if (available < entry.getValue()) {
+                throw new AppLevelValidationException(translations.t(
+                        "pos.stock.insufficient", productName, Quantity.ofMilli(available), Quantity.ofMilli(entry.getValue())));
+            }
+        }
+
+        List<EngineRecord.StockLevel> levels = new ArrayList<>(requested.size());
+        for (Map.Entry<Long, Long> entry : requested.entrySet()) {
+            long previous = quantities.get(entry.getKey(), NO_STOCK);
+            long next = previous - entry.getValue();
+            undo.add(new long[]{entry.getKey(), previous});
+            quantities.put(entry.getKey(), next);
+            levels.add(new EngineRecord.StockLevel(entry.getKey(), next));
+        }
+
+        long totalMinor = 0;
+        List<EngineRecord.Line> lines = new ArrayList<>(command.lines().size());
+        for (PosService.CartLine line : command.lines()) {
+            totalMinor = Math.addExact(totalMinor, Money.timesMinor(line.unitPrice().minorUnits(), line.quantity().milliUnits()));
+            lines.add(new EngineRecord.Line(line.product().getId(), line.quantity().milliUnits(), line.unitPrice().minorUnits()));
+        }
+
+        records.add(new EngineRecord.SaleRecord(command.saleNo(), command.checkoutToken(), System.currentTimeMillis(), lines, levels));
+        Sale sale = new Sale(command.saleNo());
+        sale.setCheckoutToken(command.checkoutToken());
+        sale.setTotal(Money.ofMinor(totalMinor).toBigDecimal());
+        if (command.checkoutToken() != null) {
+            recentTokens.put(command.checkoutToken(), sale);
+            batchTokens.add(command.checkoutToken());
+        }
+        recentSaleNos.put(command.saleNo(), Boolean.TRUE);
+        batchSaleNos.add(command.saleNo());
+        replies.add(() -> command.result().complete(sale));
+        journaled.add(command.result());
+    }
+
+    private DataIntegrityViolationException duplicateSaleNo(String saleNo) {
+        return new DataIntegrityViolationException("Sale number " + saleNo + " is already used");
+    }
+
+    private void applyAdjust(AdjustCommand command, List<EngineRecord> records, List<Runnable> replies,
+                             List<CompletableFuture<?>> journaled, List<long[]> undo) {
+        long previous = quantity(command.productId());
+        if (previous == NO_STOCK) {
+            throw new IllegalArgumentException("no stock item found");
+        }
+        long next = previous + command.deltaMilli();
+        if (next < 0) {
+            throw new AppLevelValidationException(translations.t("inventory.insufficientStock"));
+        }
+
+        undo.add(new long[]{command.productId(), previous});
+        quantities.put(command.productId(), next);
+        records.add(new EngineRecord.AdjustmentRecord(command.productId(), command.deltaMilli(), command.note(),
+                System.currentTimeMillis(), new EngineRecord.StockLevel(command.productId(), next)));
+        replies.add(() -> command.result().complete(next));
+        journaled.add(command.result());
+    }
+
+    private void applyAdjustAll(AdjustAllCommand command, List<EngineRecord> records, List<Runnable> replies,
+                                List<CompletableFuture<?>> journaled, List<long[]> undo) {
+        // every product is checked before any is changed
+        for (Map.Entry<Long, Long> entry : command.deltasMilli().entrySet()) {
+            long previous = quantity(entry.getKey());
+            if (previous == NO_STOCK) {
+                throw new IllegalArgumentException("no stock item found for product " + entry.getKey());
+            }
+            if (previous + entry.getValue() < 0) {
+                throw new AppLevelValidationException(translations.t("inventory.insufficientStock"));
+            }
+        }
+
+        long createdAtMillis = System.currentTimeMillis();
+        for (Map.Entry<Long, Long> entry : command.deltasMilli().entrySet()) {
+            long previous = quantities.get(entry.getKey(), NO_STOCK);
+            long next = previous + entry.getValue();
+            undo.add(new long[]{entry.getKey(), previous});
+            quantities.put(entry.getKey(), next);
+            records.add(new EngineRecord.AdjustmentRecord(entry.getKey(), entry.getValue(), command.note(),
+                    createdAtMillis, new EngineRecord.StockLevel(entry.getKey(), next)));
+        }
+        replies.add(() -> command.result().complete(command.deltasMilli().size()));
+        journaled.add(command.result());
+    }
+
+    private void answerQuery(QueryCommand command) {
+        long[] values = new long[command.productIds().length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = quantity(command.productIds()[i]);
+        }
+        command.result().complete(values);
+    }
+
+    private static void failCommand(Command command, RuntimeException e) {
+        switch (command) {
+            case CheckoutCommand checkout -> checkout.result().completeExceptionally(e);
+            case AdjustCommand adjust -> adjust.result().completeExceptionally(e);
+            case AdjustAllCommand adjustAll -> adjustAll.result().completeExceptionally(e);
+            case QueryCommand query -> query.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Quantity from the map; a product created after startup is read from stock_item once.
+     */
+    private long quantity(long productId) {
+        long quantity = quantities.get(productId, NO_STOCK);
+        if (quantity != NO_STOCK) {
+            return quantity;
+        }
+        List<BigDecimal> rows = jdbcTemplate.queryForList(
+                "select quantity_on_hand from stock_item where product_id = ?", BigDecimal.class, productId);
+        if (rows.isEmpty()) {
+            return NO_STOCK;
+        }
+        quantity = Quantity.of(rows.getFirst()).milliUnits();
+        quantities.put(productId, quantity);
+        return quantity;
+    }
+
+    // ---------------------------------------------------------------- write-behind
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                flushSignal.tryAcquire(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                flushSignal.drainPermits();
+                while (flushPending() == FLUSH_BATCH) {
+                    // keep going while there is a backlog
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Inventory engine write-behind failed, retrying", e);
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes up to {@link #FLUSH_BATCH} pending records in one transaction. Returns how many were written.
+     * <p>
+     * If the batch fails on a constraint or the SQL itself, the records are written one by one and each
+     * one that still fails is set aside in {@code inventory_engine_rejected}, so one bad record (a
+     * deleted product, a duplicate sale number) does not hold up the rest. Its stock change stays in
+     * memory until the next restart. Other failures, such as the database being unavailable, are
+     * retried by the caller.
+     */
+    private synchronized int flushPending() {
+        List<Pending> batch = new ArrayList<>(FLUSH_BATCH);
+        for (Pending pending : pendingWrites) {
+            if (batch.size() == FLUSH_BATCH) {
+                break;
+            }
+            if (pending.seq() > persistedSeq) {
+                batch.add(pending);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            writeBatch(batch);
+            persisted(batch);
+        } catch (DataIntegrityViolationException | InvalidDataAccessResourceUsageException e) {
+            logger.warn("Inventory engine batch of {} changes failed, writing them one by one", batch.size(), e);
+            for (Pending pending : batch) {
+                writeOrReject(pending);
+                persisted(List.of(pending));
+            }
+        }
+        return batch.size();
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        long lastSeq = batch.getLast().seq();
+        transactionTemplate.executeWithoutResult(status -> {
+            write(batch.stream().map(Pending::record).toList());
+            jdbcTemplate.update("update inventory_engine_state set last_seq = ? where id = 1", lastSeq);
+        });
+    }
+
+    private void writeOrReject(Pending pending) {
+        try {
+            writeBatch(List.of(pending));
+        } catch (DataIntegrityViolationException | InvalidDataAccessResourceUsageException e) {
+            String reason = StringUtils.abbreviate(e.getMostSpecificCause().getMessage(), 512);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("""
+                        insert into inventory_engine_rejected (seq, payload, reason, date_created)
+                        values (?, ?, ?, now())
+                        on conflict (seq) do nothing
+                        """, pending.seq(), pending.record().toBytes(), reason);
+                jdbcTemplate.update("update inventory_engine_state set last_seq = ? where id = 1", pending.seq());
+            });
+            logger.error("Inventory engine change {} could not be written and was set aside: {}", pending.seq(), reason);
+        }
+    }
+
+    /**
+     * Drops the written records, which are the oldest pending ones, and lets the journal reuse their space.
+     */
+    private void persisted(List<Pending> written) {
+        long lastSeq = written.getLast().seq();
+        persistedSeq = lastSeq;
+        for (int i = 0; i < written.size(); i++) {
+            pendingWrites.poll();
+        }
+        journal.checkpoint(lastSeq);
+    }
+
+    private void write(List<EngineRecord> records) {
+        List<Sale> sales = new ArrayList<>();
+        List<Timestamp> saleTimes = new ArrayList<>();
+        List<SaleLine> saleLines = new ArrayList<>();
+        List<StockMovement> movements = new ArrayList<>();
+        List<Timestamp> movementTimes = new ArrayList<>();
+        // summed change per product, applied in product id order
+        Map<Long, Long> deltas = new TreeMap<>();
+
+        for (EngineRecord record : records) {
+            switch (record) {
+                case EngineRecord.SaleRecord saleRecord -> {
+                    Timestamp createdAt = new Timestamp(saleRecord.createdAtMillis());
+                    Sale sale = new Sale(saleRecord.saleNo());
+                    sale.setCheckoutToken(saleRecord.checkoutToken());
+                    long totalMinor = 0;
+                    for (EngineRecord.Line line : saleRecord.lines()) {
+                        Product product = productRepository.getReferenceById(line.productId());
+                        long lineTotalMinor = Money.timesMinor(line.unitPriceMinor(), line.quantityMilli());
+                        totalMinor = Math.addExact(totalMinor, lineTotalMinor);
+
+                        SaleLine saleLine = new SaleLine(sale, product,
+                                Quantity.ofMilli(line.quantityMilli()).toBigDecimal(),
+                                Money.ofMinor(line.unitPriceMinor()).toBigDecimal());
+                        saleLine.setLineTotal(Money.ofMinor(lineTotalMinor).toBigDecimal());
+                        saleLines.add(saleLine);
+                        deltas.merge(line.productId(), -line.quantityMilli(), Math::addExact);
+
+                        if (!deriveSaleMovements) {
+                            StockMovement movement = new StockMovement(product, StockMovementType.OUT,
+                                    Quantity.ofMilli(line.quantityMilli()).toBigDecimal(), "Sale " + saleRecord.saleNo());
+                            movement.setSale(sale);
+                            movements.add(movement);
+                            movementTimes.add(createdAt);
+                        }
+                    }
+                    sale.setTotal(Money.ofMinor(totalMinor).toBigDecimal());
+                    sales.add(sale);
+                    saleTimes.add(createdAt);
+                }
+                case EngineRecord.AdjustmentRecord adjustment -> {
+                    movements.add(new StockMovement(
+                            productRepository.getReferenceById(adjustment.productId()),
+                            adjustment.deltaMilli() >= 0 ? StockMovementType.IN : StockMovementType.OUT,
+                            Quantity.ofMilli(Math.abs(adjustment.deltaMilli())).toBigDecimal(),
+                            adjustment.note()));
+                    movementTimes.add(new Timestamp(adjustment.createdAtMillis()));
+                    deltas.merge(adjustment.productId(), adjustment.deltaMilli(), Math::addExact);
+                }
+            }
+        }
+
+        saleRepository.saveAll(sales);
+        saleLineRepository.saveAll(saleLines);
+        movementRepository.saveAll(movements);
+        saleRepository.flush();
+
+        // @CreationTimestamp dates the rows at flush time; a replayed record keeps the time it was accepted.
+        // Sale lines have no date of their own, they are dated by their sale
+        List<Object[]> saleDates = new ArrayList<>(sales.size());
+        for (int i = 0; i < sales.size(); i++) {
+            saleDates.add(new Object[]{saleTimes.get(i), sales.get(i).getId()});
+        }
+        jdbcTemplate.batchUpdate("update sale set date_created = ? where id = ?", saleDates);
+        List<Object[]> movementDates = new ArrayList<>(movements.size());
+        for (int i = 0; i < movements.size(); i++) {
+            movementDates.add(new Object[]{movementTimes.get(i), movements.get(i).getId()});
+        }
+        jdbcTemplate.batchUpdate("update stock_movement set date_created = ? where id = ?", movementDates);
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> updates.add(new Object[]{Quantity.ofMilli(delta).toBigDecimal(), now, productId}));
+        jdbcTemplate.batchUpdate(
+                "update stock_item set quantity_on_hand = quantity_on_hand + ?, last_updated = ? where product_id = ?", updates);
+        lowStockIndex.refreshAfterCommit(deltas.keySet());
+    }
+
+    // ---------------------------------------------------------------- startup
+
+    private void recover() {
+        List<WriteAheadLog.Entry> entries;
+        int recovered = 0;
+        while (!(entries = journal.read(persistedSeq, FLUSH_BATCH)).isEmpty()) {
+            entries.forEach(entry -> pendingWrites.add(new Pending(entry.seq(), EngineRecord.fromBytes(entry.payload()))));
+            recovered += flushPending();
+        }
+        if (recovered > 0) {
+            logger.info("Inventory engine wrote {} journaled changes left from the last run", recovered);
+        }
+    }
+
+    private void mergeShards() {
+        for (Long stockItemId : stockShardService.findShardedStockItemIds()) {
+            Long productId = jdbcTemplate.queryForObject("select product_id from stock_item where id = ?", Long.class, stockItemId);
+            stockShardService.reshard(productId, 1);
+            logger.warn("Stock of product {} merged into one row: shards are not used by the inventory engine", productId);
+        }
+    }
+
+    private void loadQuantities() {
+        jdbcTemplate.query("select product_id, quantity_on_hand from stock_item", rs -> {
+            quantities.put(rs.getLong(1), Quantity.of(rs.getBigDecimal(2)).milliUnits());
+        });
+        logger.info("Inventory engine loaded {} stock items", quantities.size());
+    }
+}
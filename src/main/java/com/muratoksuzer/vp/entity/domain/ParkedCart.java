@@ -0,0 +1,71 @@
+package com.muratoksuzer.vp.entity.domain;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A POS cart put aside to serve another customer. The lines are stored in the compact binary form of
+ * {@link com.muratoksuzer.vp.dto.ParkedCartLine}; label, line count and total are kept as columns
+ * for the resume list.
+ */
+@Entity
+@Table(name = "parked_cart",
+        indexes = @Index(name = "ix_parked_cart_date_created", columnList = "date_created"))
+public class ParkedCart extends BaseEntity implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64)
+    private String label;
+
+    @Column(length = 64)
+    private String parkedBy;
+
+    @Column(nullable = false)
+    private int lineCount;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal total = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private byte[] lines;
+
+    public ParkedCart() {
+    }
+
+    public ParkedCart(String label, String parkedBy, int lineCount, BigDecimal total, byte[] lines) {
+        this.label = label;
+        this.parkedBy = parkedBy;
+        this.lineCount = lineCount;
+        this.total = total;
+        this.lines = lines;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getParkedBy() {
+        return parkedBy;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public byte[] getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,78 @@
+package com.muratoksuzer.vp.entity.domain;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A sale taken in degraded mode that could not be applied when the journal was drained
+ * (e.g. stock ran out meanwhile). Kept for a manager to follow up.
+ */
+@Entity
+@Table(name = "rejected_sale",
+        uniqueConstraints = @UniqueConstraint(name = "uq_rejected_sale_sale_no", columnNames = "saleNo"))
+public class RejectedSale extends BaseEntity implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String saleNo;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal total = BigDecimal.ZERO;
+
+    @Column(length = 512)
+    private String reason;
+
+    @Column(length = 2048)
+    private String lines;
+
+    public RejectedSale() {
+    }
+
+    public RejectedSale(String saleNo, BigDecimal total, String reason, String lines) {
+        this.saleNo = saleNo;
+        this.total = total;
+        this.reason = reason;
+        this.lines = lines;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSaleNo() {
+        return saleNo;
+    }
+
+    public void setSaleNo(String saleNo) {
+        this.saleNo = saleNo;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public String getLines() {
+        return lines;
+    }
+
+    public void setLines(String lines) {
+        this.lines = lines;
+    }
+}
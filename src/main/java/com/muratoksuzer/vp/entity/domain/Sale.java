@@ -8,11 +8,15 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "sale",
         indexes = @Index(name = "ix_sale_date_created", columnList = "dateCreated"),
-        uniqueConstraints = @UniqueConstraint(name = "uq_sale_sale_no", columnNames = "saleNo"))
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uq_sale_sale_no", columnNames = "saleNo"),
+                @UniqueConstraint(name = "uq_sale_checkout_token", columnNames = "checkoutToken")
+        })
 public class Sale extends BaseEntity implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_seq")
+    @SequenceGenerator(name = "sale_seq", sequenceName = "sale_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 32)
@@ -21,6 +25,10 @@ public class Sale extends BaseEntity implements Serializable {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal total = BigDecimal.ZERO;
 
+    // set by the POS client per cart; a retried checkout with the same token returns this sale
+    @Column(length = 64)
+    private String checkoutToken;
+
     public Sale() {
     }
 
@@ -51,4 +59,12 @@ public class Sale extends BaseEntity implements Serializable {
     public void setTotal(BigDecimal total) {
         this.total = total;
     }
+
+    public String getCheckoutToken() {
+        return checkoutToken;
+    }
+
+    public void setCheckoutToken(String checkoutToken) {
+        this.checkoutToken = checkoutToken;
+    }
 }
@@ -10,7 +10,8 @@ import java.math.BigDecimal;
 public class SaleLine {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sale_line_seq")
+    @SequenceGenerator(name = "sale_line_seq", sequenceName = "sale_line_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
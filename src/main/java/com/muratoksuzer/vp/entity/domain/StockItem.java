@@ -1,6 +1,7 @@
 package com.muratoksuzer.vp.entity.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -26,6 +27,11 @@ public class StockItem extends BaseEntity implements Serializable {
     @Column(length = 128)
     private String location;
 
+    // > 1: stock is held in stock_shard rows and quantityOnHand stays 0, see StockShardService
+    @ColumnDefault("1")
+    @Column(nullable = false)
+    private int shardCount = 1;
+
     public StockItem() {
     }
 
@@ -68,4 +74,16 @@ public class StockItem extends BaseEntity implements Serializable {
     public void setLocation(String location) {
         this.location = location;
     }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
 }
@@ -9,12 +9,16 @@ import java.math.BigDecimal;
 @Table(name = "stock_movement",
         indexes = {
                 @Index(name = "ix_movement_date_created", columnList = "dateCreated"),
-                @Index(name = "ix_movement_product", columnList = "product_id")
+                @Index(name = "ix_movement_product", columnList = "product_id"),
+                // movements of a product within a time range, for point-in-time stock
+                @Index(name = "ix_movement_product_date", columnList = "product_id, dateCreated"),
+                @Index(name = "ix_movement_sale", columnList = "sale_id")
         })
 public class StockMovement extends BaseEntity implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_movement_seq")
+    @SequenceGenerator(name = "stock_movement_seq", sequenceName = "stock_movement_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -30,6 +34,10 @@ public class StockMovement extends BaseEntity implements Serializable {
     @Column(length = 512)
     private String note;
 
+    // set for OUT movements written by checkout, null for manual movements
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Sale sale;
+
     public StockMovement() {
     }
 
@@ -75,4 +83,12 @@ public class StockMovement extends BaseEntity implements Serializable {
     public void setNote(String note) {
         this.note = note;
     }
+
+    public Sale getSale() {
+        return sale;
+    }
+
+    public void setSale(Sale sale) {
+        this.sale = sale;
+    }
 }
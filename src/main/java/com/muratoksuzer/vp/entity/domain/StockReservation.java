@@ -0,0 +1,89 @@
+package com.muratoksuzer.vp.entity.domain;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Stock held for an open POS cart until checkout, removal or expiry. Written behind by the
+ * in-memory reservation ledger of the node in {@code node_id}, so the holds of every node can be
+ * seen in the database; a node deletes its rows on startup, as its carts did not survive the restart.
+ */
+@Entity
+@Table(name = "stock_reservation",
+        uniqueConstraints = @UniqueConstraint(name = "uq_stock_reservation_cart_product", columnNames = {"cart_id", "product_id"}),
+        indexes = {
+                @Index(name = "ix_stock_reservation_expires", columnList = "expires_at"),
+                @Index(name = "ix_stock_reservation_node", columnList = "node_id")
+        })
+public class StockReservation extends BaseEntity implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cart_id", nullable = false, length = 64)
+    private String cartId;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private Product product;
+
+    @Column(nullable = false, precision = 19, scale = 3)
+    private BigDecimal quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+
+    // pos.node-id of the node whose cart holds the stock; null for rows written before nodes were recorded
+    @Column(name = "node_id", length = 16)
+    private String nodeId;
+
+    public StockReservation() {
+    }
+
+    public StockReservation(String cartId, Product product, BigDecimal quantity, OffsetDateTime expiresAt, String nodeId) {
+        this.cartId = cartId;
+        this.product = product;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+        this.nodeId = nodeId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCartId() {
+        return cartId;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(BigDecimal quantity) {
+        this.quantity = quantity;
+    }
+
+    public OffsetDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(OffsetDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+}
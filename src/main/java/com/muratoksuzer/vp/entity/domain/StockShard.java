@@ -0,0 +1,58 @@
+package com.muratoksuzer.vp.entity.domain;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * One slice of the stock of a sharded {@link StockItem}. The stock on hand of a sharded item is the
+ * sum of its shards, so concurrent checkouts of a hot product update different rows.
+ */
+@Entity
+@Table(name = "stock_shard",
+        uniqueConstraints = @UniqueConstraint(name = "uq_stock_shard_item_no", columnNames = {"stock_item_id", "shard_no"}))
+public class StockShard extends BaseEntity implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private StockItem stockItem;
+
+    @Column(nullable = false)
+    private int shardNo;
+
+    @Column(nullable = false, precision = 19, scale = 3)
+    private BigDecimal quantity = BigDecimal.ZERO;
+
+    public StockShard() {
+    }
+
+    public StockShard(StockItem stockItem, int shardNo, BigDecimal quantity) {
+        this.stockItem = stockItem;
+        this.shardNo = shardNo;
+        this.quantity = quantity;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public StockItem getStockItem() {
+        return stockItem;
+    }
+
+    public int getShardNo() {
+        return shardNo;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(BigDecimal quantity) {
+        this.quantity = quantity;
+    }
+}
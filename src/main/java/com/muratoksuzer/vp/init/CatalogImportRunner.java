@@ -0,0 +1,72 @@
+package com.muratoksuzer.vp.init;
+
+import com.muratoksuzer.vp.dto.CatalogImportResult;
+import com.muratoksuzer.vp.service.CatalogImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command line catalog import: started with {@code --pos.catalog-import.file=<csv or xlsx>}, imports
+ * the file once the application is ready, logs the progress and the outcome and, unless
+ * {@code pos.catalog-import.exit-on-finish=false}, exits with 0 on success and 1 on failure.
+ */
+@Component
+@ConditionalOnProperty(name = "pos.catalog-import.file")
+@Order(2)
+public class CatalogImportRunner implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportRunner.class);
+
+    private final CatalogImportService catalogImportService;
+    private final ApplicationContext applicationContext;
+
+    @Value("${pos.catalog-import.file}")
+    private String file;
+
+    @Value("${pos.catalog-import.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    public CatalogImportRunner(CatalogImportService catalogImportService, ApplicationContext applicationContext) {
+        this.catalogImportService = catalogImportService;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Path path = Path.of(file);
+        int exitCode = 0;
+        if (!Files.isReadable(path)) {
+            logger.error("Catalog import: cannot read {}", path.toAbsolutePath());
+            exitCode = 1;
+        } else {
+            try {
+                CatalogImportResult result = catalogImportService.importCatalog(path, path.getFileName().toString(),
+                        progress -> logger.info("Catalog import: {} rows read, {} imported, {} skipped, {} rows/s",
+                                progress.rows(), progress.imported(), progress.skipped(), progress.rowsPerSecond()));
+                result.problems().forEach(problem -> logger.warn("Catalog import: {}", problem));
+                logger.info("Catalog import finished: {} of {} rows imported, {} duplicates, {} invalid in {} ms ({} rows/s)",
+                        result.imported(), result.rows(), result.duplicates(), result.invalid(),
+                        result.elapsedMillis(), result.rowsPerSecond());
+            } catch (RuntimeException e) {
+                logger.error("Catalog import failed: {}", e.getMessage(), e);
+                exitCode = 1;
+            }
+        }
+
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.muratoksuzer.vp.init;
+
+import com.muratoksuzer.vp.service.StockMovementPartitionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command line conversion of {@code stock_movement} to monthly partitions: started with
+ * {@code --pos.movement-partitions.convert=true} while the other nodes are stopped, converts the table
+ * once the application is ready and, unless {@code pos.movement-partitions.exit-on-finish=false},
+ * exits with 0 on success and 1 on failure.
+ */
+@Component
+@ConditionalOnProperty(name = "pos.movement-partitions.convert", havingValue = "true")
+@Order(3)
+public class MovementPartitionRunner implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovementPartitionRunner.class);
+
+    private final StockMovementPartitionService partitionService;
+    private final ApplicationContext applicationContext;
+
+    @Value("${pos.movement-partitions.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    public MovementPartitionRunner(StockMovementPartitionService partitionService, ApplicationContext applicationContext) {
+        this.partitionService = partitionService;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        int exitCode = 0;
+        try {
+            if (partitionService.convertToPartitioned()) {
+                logger.info("stock_movement converted to monthly partitions");
+            } else {
+                logger.info("stock_movement is partitioned already, nothing to convert");
+            }
+        } catch (RuntimeException e) {
+            logger.error("Converting stock_movement to partitions failed: {}", e.getMessage(), e);
+            exitCode = 1;
+        }
+
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+}
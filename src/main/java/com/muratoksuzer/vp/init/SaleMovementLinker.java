@@ -0,0 +1,34 @@
+package com.muratoksuzer.vp.init;
+
+import com.muratoksuzer.vp.service.StockMovementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * When sale movements are derived from sale lines, links sale movements stored by older
+ * checkouts to their sale so they are not listed twice.
+ */
+@Component
+public class SaleMovementLinker implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleMovementLinker.class);
+
+    private final StockMovementService stockMovementService;
+
+    public SaleMovementLinker(StockMovementService stockMovementService) {
+        this.stockMovementService = stockMovementService;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!stockMovementService.isDerivingSaleMovements()) {
+            return;
+        }
+        int linked = stockMovementService.linkLegacySaleMovements();
+        if (linked > 0) {
+            logger.info("Linked {} stored sale movements to their sales", linked);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.muratoksuzer.vp.init;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves pooled id sequences past ids that were generated by the former IDENTITY columns,
+ * so databases created before the switch to sequences keep working.
+ * <p>
+ * Runs while the context starts, right after Hibernate has updated the schema. Beans that insert
+ * rows during their own initialization (the inventory engine's recovery, the checkout journal
+ * drainer) depend on it, and the web server only accepts requests after all beans are created.
+ */
+@Component
+public class SequenceInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceInitializer.class);
+
+    // must match allocationSize of the @SequenceGenerator mappings
+    private static final int ALLOCATION_SIZE = 50;
+
+    // table name -> sequence name
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "sale", "sale_seq",
+            "sale_line", "sale_line_seq",
+            "stock_movement", "stock_movement_seq"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // the entity manager factory creates the sequences, so it has to be initialized first
+    public SequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void alignSequences() {
+        SEQUENCES.forEach(this::alignSequence);
+    }
+
+    private void alignSequence(String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+        Long lastValue = jdbcTemplate.queryForObject("select last_value from " + sequence, Long.class);
+
+        if (maxId != null && lastValue != null && maxId >= lastValue) {
+            jdbcTemplate.queryForObject("select setval('" + sequence + "', ?)", Long.class, maxId + ALLOCATION_SIZE);
+            logger.info("Sequence {} moved past existing id {} of table {}", sequence, maxId, table);
+        }
+    }
+}
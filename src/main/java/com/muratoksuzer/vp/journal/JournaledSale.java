@@ -0,0 +1,56 @@
+package com.muratoksuzer.vp.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A checkout accepted while the database was unavailable, as stored in the write-ahead log.
+ * {@code checkoutToken} is null when the client sent none; it is stored last, so entries written
+ * before it existed are still read.
+ */
+public record JournaledSale(String saleNo, String checkoutToken, long createdAtMillis, List<Line> lines) {
+
+    public record Line(long productId, String productName, BigDecimal quantity, BigDecimal unitPrice) {}
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + lines.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(saleNo);
+            out.writeLong(createdAtMillis);
+            out.writeInt(lines.size());
+            for (Line line : lines) {
+                out.writeLong(line.productId());
+                out.writeUTF(line.productName());
+                out.writeUTF(line.quantity().toPlainString());
+                out.writeUTF(line.unitPrice().toPlainString());
+            }
+            out.writeUTF(checkoutToken == null ? "" : checkoutToken);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static JournaledSale fromBytes(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String saleNo = in.readUTF();
+            long createdAtMillis = in.readLong();
+            int count = in.readInt();
+            List<Line> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                lines.add(new Line(in.readLong(), in.readUTF(), new BigDecimal(in.readUTF()), new BigDecimal(in.readUTF())));
+            }
+            String checkoutToken = in.available() > 0 ? in.readUTF() : "";
+            return new JournaledSale(saleNo, checkoutToken.isEmpty() ? null : checkoutToken, createdAtMillis, lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.muratoksuzer.vp.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, checksummed log of opaque records stored in memory-mapped segment files.
+ * <p>
+ * Record layout: {@code [int length][long seq][int crc32c(payload)][payload]}; a zero length marks the
+ * end of a segment. Every append is forced to disk before it returns. On open, segments are scanned and
+ * the log is cut at the first torn or corrupt record. Consumers acknowledge records with
+ * {@link #checkpoint(long)}; segments whose records are all acknowledged are deleted.
+ * <p>
+ * {@link #read(long, int)} remembers where the last record it returned ends, so a consumer reading on
+ * from there does not rescan the segment from its start.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    public record Entry(long seq, byte[] payload) {}
+
+    private interface RecordVisitor {
+        /**
+         * Called with a valid record and the offset it ends at; returns false to stop the scan.
+         */
+        boolean visit(Entry entry, int end);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+
+    // first seq of segment -> segment file
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private long lastSeq;
+    private long checkpointSeq;
+    // end of the last record returned by read: its seq, segment and offset
+    private long cursorSeq = -1;
+    private long cursorSegment;
+    private int cursorOffset;
+
+    public WriteAheadLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            checkpointSeq = readCheckpoint();
+            lastSeq = checkpointSeq;
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends and fsyncs one record, returning its sequence number.
+     */
+    public synchronized long append(byte[] payload) {
+        return appendAll(List.of(payload));
+    }
+
+    /**
+     * Appends the records in order with a single fsync (group commit), returning the sequence number
+     * of the last one.
+     */
+    public synchronized long appendAll(List<byte[]> payloads) {
+        for (byte[] payload : payloads) {
+            if (HEADER_SIZE + payload.length + Integer.BYTES > segmentSize) {
+                throw new IllegalArgumentException("record of " + payload.length + " bytes does not fit a segment");
+            }
+        }
+
+        int unforcedStart = active == null ? 0 : active.position();
+        for (byte[] payload : payloads) {
+            if (active == null || active.remaining() < HEADER_SIZE + payload.length + Integer.BYTES) {
+                // closing the previous segment forces it
+                rollSegment(lastSeq + 1);
+                unforcedStart = 0;
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+
+            long seq = lastSeq + 1;
+            active.putInt(payload.length);
+            active.putLong(seq);
+            active.putInt((int) crc.getValue());
+            active.put(payload);
+            lastSeq = seq;
+        }
+        if (active != null && active.position() > unforcedStart) {
+            active.force(unforcedStart, active.position() - unforcedStart);
+        }
+        return lastSeq;
+    }
+
+    /**
+     * Reads up to {@code max} records with a sequence number greater than {@code afterSeq}, in order.
+     */
+    public synchronized List<Entry> read(long afterSeq, int max) {
+        List<Entry> entries = new ArrayList<>();
+        if (max <= 0) {
+            return entries;
+        }
+        long firstSegment;
+        int firstOffset;
+        if (afterSeq == cursorSeq && segments.containsKey(cursorSegment)) {
+            firstSegment = cursorSegment;
+            firstOffset = cursorOffset;
+        } else {
+            Long fromKey = segments.floorKey(afterSeq + 1);
+            firstSegment = fromKey == null ? Long.MIN_VALUE : fromKey;
+            firstOffset = 0;
+        }
+        for (Map.Entry<Long, Path> segment : segments.tailMap(firstSegment, true).entrySet()) {
+            long segmentKey = segment.getKey();
+            scan(segment.getValue(), segmentKey == firstSegment ? firstOffset : 0, (entry, end) -> {
+                if (entry.seq() <= afterSeq) {
+                    return true;
+                }
+                entries.add(entry);
+                cursorSeq = entry.seq();
+                cursorSegment = segmentKey;
+                cursorOffset = end;
+                return entries.size() < max;
+            });
+            if (entries.size() >= max) {
+                break;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Marks all records up to {@code seq} as processed and drops fully processed segments.
+     */
+    public synchronized void checkpoint(long seq) {
+        if (seq <= checkpointSeq) {
+            return;
+        }
+        checkpointSeq = seq;
+        writeCheckpoint(seq);
+
+        // a segment can go once the next segment starts at or before the first unprocessed record
+        while (segments.size() > 1) {
+            Long second = segments.higherKey(segments.firstKey());
+            if (second == null || second > checkpointSeq + 1) {
+                break;
+            }
+            deleteSegment(segments.pollFirstEntry().getValue());
+        }
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    public synchronized long getCheckpointSeq() {
+        return checkpointSeq;
+    }
+
+    public synchronized long getPendingCount() {
+        return lastSeq - checkpointSeq;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeActive();
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .forEach(p -> segments.put(firstSeqOf(p), p));
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        // scan all segments to find the last valid record; only the last segment can be torn
+        for (Path segment : segments.values()) {
+            scan(segment, 0, (entry, end) -> {
+                lastSeq = Math.max(lastSeq, entry.seq());
+                return true;
+            });
+        }
+
+        Path last = segments.lastEntry().getValue();
+        openActive(last);
+        int end = scan(last, 0, (entry, recordEnd) -> true);
+        active.position(end);
+        // clear any torn tail so a later scan stops at our end marker
+        if (active.remaining() >= Integer.BYTES) {
+            active.putInt(end, 0);
+        }
+        logger.info("Write-ahead log {} recovered: last seq {}, checkpoint {}", directory, lastSeq, checkpointSeq);
+    }
+
+    /**
+     * Calls {@code visitor} for each valid record of the segment from offset {@code from} on and returns
+     * the end offset of the last record visited.
+     */
+    private int scan(Path segment, int from, RecordVisitor visitor) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position(Math.min(from, buffer.limit()));
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining() - Long.BYTES - Integer.BYTES) {
+                    return start;
+                }
+                long seq = buffer.getLong();
+                int checksum = buffer.getInt();
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("Write-ahead log {}: checksum mismatch at seq {}, log cut here", segment, seq);
+                    return start;
+                }
+                if (!visitor.visit(new Entry(seq, payload), buffer.position())) {
+                    break;
+                }
+            }
+            return buffer.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void rollSegment(long firstSeq) {
+        closeActive();
+        Path segment = directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+        segments.put(firstSeq, segment);
+        openActive(segment);
+    }
+
+    private void openActive(Path segment) {
+        try {
+            activeChannel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeActive() {
+        if (activeChannel == null) {
+            return;
+        }
+        try {
+            active.force();
+            activeChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            active = null;
+            activeChannel = null;
+        }
+    }
+
+    private void deleteSegment(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            logger.warn("Could not delete processed write-ahead log segment {}", segment, e);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(file).trim());
+    }
+
+    private void writeCheckpoint(long seq) {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(Long.toString(seq).getBytes(StandardCharsets.US_ASCII)));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,236 @@
+package com.muratoksuzer.vp.receipt;
+
+import com.muratoksuzer.vp.dto.ReceiptData;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receipt layout for a fixed-width printer, compiled once: the store header and the footer are
+ * encoded to ESC/POS bytes and to PDF content-stream fragments when the template is created, so a
+ * receipt only lays out and encodes its own sale rows.
+ * <p>
+ * The PDF is an 80 mm wide single page set in Courier, with the same columns as the printed receipt.
+ * It uses the standard fonts and WinAnsiEncoding, so characters outside windows-1252 print as '?'.
+ */
+public final class ReceiptTemplate {
+
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+    private static final byte LF = 0x0A;
+
+    private static final byte[] INIT = {ESC, '@'};
+    private static final byte[] BOLD_ON = {ESC, 'E', 1};
+    private static final byte[] BOLD_OFF = {ESC, 'E', 0};
+    private static final byte[] FEED_AND_CUT = {ESC, 'd', 4, GS, 'V', 66, 0};
+
+    private static final Charset PDF_CHARSET = Charset.forName("windows-1252");
+    private static final int PDF_PAGE_WIDTH = 226;
+    private static final int PDF_MARGIN = 12;
+    private static final int PDF_FONT_SIZE = 8;
+    private static final int PDF_LEADING = 10;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private record Row(String text, boolean bold) {}
+
+    private final int width;
+    private final Charset printerCharset;
+
+    private final byte[] escPosHeader;
+    private final byte[] escPosFooter;
+    private final byte[] pdfHeader;
+    private final byte[] pdfFooter;
+    private final byte[] pdfFixedObjects;
+    // byte offsets of the fixed PDF objects 1, 2, 4 and 5 (index = object number)
+    private final long[] pdfFixedOffsets = new long[6];
+    private final int fixedRows;
+
+    /**
+     * @param width          characters per printed line
+     * @param printerCharset charset of the printer's code page
+     * @param codePage       ESC/POS code page number selecting that charset on the printer ({@code ESC t n})
+     */
+    public ReceiptTemplate(String storeName, List<String> headerLines, List<String> footerLines,
+                           int width, Charset printerCharset, int codePage) {
+        this.width = width;
+        this.printerCharset = printerCharset;
+
+        List<Row> header = new ArrayList<>();
+        header.add(new Row(center(storeName), true));
+        headerLines.forEach(line -> header.add(new Row(center(line), false)));
+        header.add(new Row(separator(), false));
+
+        List<Row> footer = new ArrayList<>();
+        footer.add(new Row(separator(), false));
+        footerLines.forEach(line -> footer.add(new Row(center(line), false)));
+
+        ByteArrayOutputStream escPos = new ByteArrayOutputStream();
+        escPos.writeBytes(INIT);
+        escPos.writeBytes(new byte[]{ESC, 't', (byte) codePage});
+        writeEscPos(escPos, header);
+        this.escPosHeader = escPos.toByteArray();
+
+        escPos = new ByteArrayOutputStream();
+        writeEscPos(escPos, footer);
+        escPos.writeBytes(FEED_AND_CUT);
+        this.escPosFooter = escPos.toByteArray();
+
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        writePdfRows(pdf, header);
+        this.pdfHeader = pdf.toByteArray();
+
+        pdf = new ByteArrayOutputStream();
+        writePdfRows(pdf, footer);
+        this.pdfFooter = pdf.toByteArray();
+
+        this.fixedRows = header.size() + footer.size();
+        this.pdfFixedObjects = ascii("""
+                %PDF-1.4
+                1 0 obj
+                << /Type /Catalog /Pages 2 0 R >>
+                endobj
+                2 0 obj
+                << /Type /Pages /Kids [3 0 R] /Count 1 >>
+                endobj
+                4 0 obj
+                << /Type /Font /Subtype /Type1 /BaseFont /Courier /Encoding /WinAnsiEncoding >>
+                endobj
+                5 0 obj
+                << /Type /Font /Subtype /Type1 /BaseFont /Courier-Bold /Encoding /WinAnsiEncoding >>
+                endobj
+                """);
+        String fixed = new String(pdfFixedObjects, StandardCharsets.US_ASCII);
+        for (int object : new int[]{1, 2, 4, 5}) {
+            pdfFixedOffsets[object] = fixed.indexOf("\n" + object + " 0 obj") + 1;
+        }
+    }
+
+    public byte[] renderEscPos(ReceiptData receipt) {
+        List<Row> rows = saleRows(receipt);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(escPosHeader.length + escPosFooter.length + rows.size() * (width + 8));
+        out.writeBytes(escPosHeader);
+        writeEscPos(out, rows);
+        out.writeBytes(escPosFooter);
+        return out.toByteArray();
+    }
+
+    public byte[] renderPdf(ReceiptData receipt) {
+        List<Row> rows = saleRows(receipt);
+        int pageHeight = 2 * PDF_MARGIN + (fixedRows + rows.size()) * PDF_LEADING;
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream(pdfHeader.length + pdfFooter.length + rows.size() * (width + 16));
+        content.writeBytes(ascii("BT\n/F1 " + PDF_FONT_SIZE + " Tf\n" + PDF_LEADING + " TL\n"
+                + PDF_MARGIN + " " + (pageHeight - PDF_MARGIN - PDF_FONT_SIZE) + " Td\n"));
+        content.writeBytes(pdfHeader);
+        writePdfRows(content, rows);
+        content.writeBytes(pdfFooter);
+        content.writeBytes(ascii("ET\n"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pdfFixedObjects.length + content.size() + 512);
+        out.writeBytes(pdfFixedObjects);
+        // objects 3 (page) and 6 (content) follow the fixed ones
+        long[] offsets = new long[7];
+        System.arraycopy(pdfFixedOffsets, 0, offsets, 0, pdfFixedOffsets.length);
+        offsets[3] = out.size();
+        out.writeBytes(ascii("3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + PDF_PAGE_WIDTH + " " + pageHeight + "]"
+                + " /Resources << /Font << /F1 4 0 R /F2 5 0 R >> >> /Contents 6 0 R >>\nendobj\n"));
+        offsets[6] = out.size();
+        out.writeBytes(ascii("6 0 obj\n<< /Length " + content.size() + " >>\nstream\n"));
+        out.writeBytes(content.toByteArray());
+        out.writeBytes(ascii("endstream\nendobj\n"));
+
+        long xref = out.size();
+        StringBuilder trailer = new StringBuilder("xref\n0 7\n0000000000 65535 f \n");
+        for (int object = 1; object < offsets.length; object++) {
+            trailer.append(String.format("%010d 00000 n \n", offsets[object]));
+        }
+        trailer.append("trailer\n<< /Size 7 /Root 1 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        out.writeBytes(ascii(trailer.toString()));
+        return out.toByteArray();
+    }
+
+    private List<Row> saleRows(ReceiptData receipt) {
+        List<Row> rows = new ArrayList<>(receipt.lines().size() * 2 + 4);
+        rows.add(new Row(columns(receipt.saleNo(), receipt.soldAt() == null ? "" : DATE_FORMAT.format(receipt.soldAt())), false));
+        rows.add(new Row(separator(), false));
+        for (ReceiptData.Line line : receipt.lines()) {
+            rows.add(new Row(truncate(line.productName(), width), false));
+            rows.add(new Row(columns("  " + quantity(line.quantity()) + " x " + money(line.unitPrice()), money(line.lineTotal())), false));
+        }
+        rows.add(new Row(separator(), false));
+        rows.add(new Row(columns("TOTAL", money(receipt.total())), true));
+        return rows;
+    }
+
+    private void writeEscPos(ByteArrayOutputStream out, List<Row> rows) {
+        for (Row row : rows) {
+            if (row.bold()) {
+                out.writeBytes(BOLD_ON);
+            }
+            out.writeBytes(row.text().getBytes(printerCharset));
+            out.write(LF);
+            if (row.bold()) {
+                out.writeBytes(BOLD_OFF);
+            }
+        }
+    }
+
+    private static void writePdfRows(ByteArrayOutputStream out, List<Row> rows) {
+        for (Row row : rows) {
+            if (row.bold()) {
+                out.writeBytes(ascii("/F2 " + PDF_FONT_SIZE + " Tf\n"));
+            }
+            out.write('(');
+            for (byte b : row.text().getBytes(PDF_CHARSET)) {
+                if (b == '(' || b == ')' || b == '\\') {
+                    out.write('\\');
+                }
+                out.write(b);
+            }
+            out.writeBytes(ascii(") Tj T*\n"));
+            if (row.bold()) {
+                out.writeBytes(ascii("/F1 " + PDF_FONT_SIZE + " Tf\n"));
+            }
+        }
+    }
+
+    private String columns(String left, String right) {
+        String l = truncate(left == null ? "" : left, Math.max(0, width - right.length() - 1));
+        return l + " ".repeat(Math.max(1, width - l.length() - right.length())) + right;
+    }
+
+    private String center(String text) {
+        String t = truncate(text == null ? "" : text, width);
+        return " ".repeat((width - t.length()) / 2) + t;
+    }
+
+    private String separator() {
+        return "-".repeat(width);
+    }
+
+    private static String truncate(String text, int max) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() <= max ? text : text.substring(0, max);
+    }
+
+    private static String quantity(BigDecimal value) {
+        return value == null ? "" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private static String money(BigDecimal value) {
+        return value == null ? "" : value.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,21 @@
+package com.muratoksuzer.vp.repository;
+
+import com.muratoksuzer.vp.entity.domain.ParkedCart;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ParkedCartRepository extends JpaRepository<ParkedCart, Long> {
+
+    List<ParkedCart> findAllByOrderByDateCreatedAsc();
+
+    // two terminals resuming the same cart: the second one waits and then finds it gone
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select pc from ParkedCart pc where pc.id = :id")
+    Optional<ParkedCart> lockById(@Param("id") Long id);
+}
@@ -1,10 +1,15 @@
 package com.muratoksuzer.vp.repository;
 
+import com.muratoksuzer.vp.dto.ProductScanSnapshot;
 import com.muratoksuzer.vp.entity.domain.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -14,4 +19,43 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Page<Product> findByNameContainingIgnoreCase(String searchTerm, Pageable pageable);
 
+    @Query("""
+        select new com.muratoksuzer.vp.dto.ProductScanSnapshot(
+            p.id, p.name, p.barcode, p.unit, pr.amount, pr.currency
+        )
+        from Product p
+        left join Price pr on pr.product = p and pr.active = true
+    """)
+    List<ProductScanSnapshot> findAllScanSnapshots();
+
+    @Query("""
+        select new com.muratoksuzer.vp.dto.ProductScanSnapshot(
+            p.id, p.name, p.barcode, p.unit, pr.amount, pr.currency
+        )
+        from Product p
+        left join Price pr on pr.product = p and pr.active = true
+        where p.id = :productId
+    """)
+    Optional<ProductScanSnapshot> findScanSnapshot(@Param("productId") Long productId);
+
+    @Query("""
+        select new com.muratoksuzer.vp.dto.ProductScanSnapshot(
+            p.id, p.name, p.barcode, p.unit, pr.amount, pr.currency
+        )
+        from Product p
+        left join Price pr on pr.product = p and pr.active = true
+        where p.barcode = :barcode
+    """)
+    Optional<ProductScanSnapshot> findScanSnapshotByBarcode(@Param("barcode") String barcode);
+
+    @Query("""
+        select new com.muratoksuzer.vp.dto.ProductScanSnapshot(
+            p.id, p.name, p.barcode, p.unit, pr.amount, pr.currency
+        )
+        from Product p
+        left join Price pr on pr.product = p and pr.active = true
+        where p.barcode in :barcodes
+    """)
+    List<ProductScanSnapshot> findScanSnapshotsByBarcodeIn(@Param("barcodes") Collection<String> barcodes);
+
 }
@@ -0,0 +1,13 @@
+package com.muratoksuzer.vp.repository;
+
+import com.muratoksuzer.vp.entity.domain.RejectedSale;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RejectedSaleRepository extends JpaRepository<RejectedSale, Long> {
+
+    Page<RejectedSale> findBySaleNoContainingIgnoreCase(String searchTerm, Pageable pageable);
+
+    boolean existsBySaleNo(String saleNo);
+}
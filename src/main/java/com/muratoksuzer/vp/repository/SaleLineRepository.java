@@ -26,4 +26,13 @@ public interface SaleLineRepository extends JpaRepository<SaleLine, Long> {
     List<TopProductPoint> topProductsByRevenue(@Param("from") OffsetDateTime from,
                                                @Param("to") OffsetDateTime to,
                                                Pageable pageable);
+
+    @Query("""
+        select sl
+        from SaleLine sl
+        join fetch sl.product
+        where sl.sale.id = :saleId
+        order by sl.id
+    """)
+    List<SaleLine> findBySaleIdWithProduct(@Param("saleId") Long saleId);
 }
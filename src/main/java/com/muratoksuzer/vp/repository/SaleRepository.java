@@ -14,12 +14,19 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Optional;
 
 
 public interface SaleRepository extends JpaRepository<Sale, Long> {
 
     Page<Sale> findBySaleNoContainingIgnoreCase(String searchTerm, Pageable pageable);
 
+    boolean existsBySaleNo(String saleNo);
+
+    Optional<Sale> findByCheckoutToken(String checkoutToken);
+
+    Optional<Sale> findBySaleNo(String saleNo);
+
 
     @Query("""
         select coalesce(sum(s.total), 0)
@@ -1,37 +1,107 @@
 package com.muratoksuzer.vp.repository;
 
-import com.muratoksuzer.vp.dto.LowStockRow;
+import com.muratoksuzer.vp.dto.StockLevel;
 import com.muratoksuzer.vp.entity.domain.StockItem;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface StockItemRepository extends JpaRepository<StockItem, Long> {
     Optional<StockItem> findByProductId(Long productId);
 
+    List<StockItem> findByProductIdIn(Collection<Long> productIds);
+
+    /**
+     * Locks the stock rows of all given unsharded products in one statement.
+     * Rows are always locked in product id order so two concurrent checkouts never deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+        select si
+        from StockItem si
+        where si.product.id in :productIds and si.shardCount = 1
+        order by si.product.id
+    """)
+    List<StockItem> lockByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Share-locks the rows of sharded stock items: checkouts do not block each other on them,
+     * but a concurrent reshard waits. Their stock is changed through the shard rows.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("""
+        select si
+        from StockItem si
+        where si.product.id in :productIds and si.shardCount > 1
+        order by si.product.id
+    """)
+    List<StockItem> lockShardedByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+        select si
+        from StockItem si
+        where si.product.id = :productId
+    """)
+    Optional<StockItem> lockByProductId(@Param("productId") Long productId);
+
+    boolean existsByProductId(Long productId);
+
+    /**
+     * Decrements stock only if enough is on hand. Returns the number of updated rows (0 or 1).
+     */
+    @Modifying
+    @Query("""
+        update StockItem si
+        set si.quantityOnHand = si.quantityOnHand - :quantity,
+            si.lastUpdated = :now
+        where si.product.id = :productId and si.quantityOnHand >= :quantity
+    """)
+    int decrementIfAvailable(@Param("productId") Long productId,
+                             @Param("quantity") BigDecimal quantity,
+                             @Param("now") OffsetDateTime now);
+
     Page<StockItem> findByProductNameContainingIgnoreCaseOrProductBarcodeContaining(String nameSearchTerm, String barcodeSearchTerm, Pageable pageable);
 
+    // on hand = quantityOnHand + shards (sharded items keep quantityOnHand at 0)
     @Query("""
-        select new com.muratoksuzer.vp.dto.LowStockRow(
-            si.product.name,
-            si.quantityOnHand,
-            si.reorderLevel,
-            (si.reorderLevel - si.quantityOnHand)
+        select new com.muratoksuzer.vp.dto.StockLevel(
+            p.id,
+            p.name,
+            si.quantityOnHand + coalesce(sum(sh.quantity), 0),
+            si.reorderLevel
         )
         from StockItem si
-        where si.quantityOnHand <= si.reorderLevel
-        order by (si.reorderLevel - si.quantityOnHand) desc
+        join si.product p
+        left join StockShard sh on sh.stockItem = si
+        where p.id in :productIds
+        group by si.id, p.id, p.name, si.quantityOnHand, si.reorderLevel
     """)
-    List<LowStockRow> findLowStock(Pageable pageable);
+    List<StockLevel> findStockLevels(@Param("productIds") Collection<Long> productIds);
 
     @Query("""
-        select count(si)
+        select new com.muratoksuzer.vp.dto.StockLevel(
+            p.id,
+            p.name,
+            si.quantityOnHand + coalesce(sum(sh.quantity), 0),
+            si.reorderLevel
+        )
         from StockItem si
-        where si.quantityOnHand <= si.reorderLevel
+        join si.product p
+        left join StockShard sh on sh.stockItem = si
+        group by si.id, p.id, p.name, si.quantityOnHand, si.reorderLevel
+        having si.quantityOnHand + coalesce(sum(sh.quantity), 0) <= si.reorderLevel
     """)
-    long countLowStock();
+    List<StockLevel> findLowStockLevels();
 }
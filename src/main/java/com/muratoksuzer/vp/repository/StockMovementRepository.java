@@ -4,9 +4,25 @@ import com.muratoksuzer.vp.entity.domain.StockMovement;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.domain.Page;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+import java.time.OffsetDateTime;
 
-    Page<StockMovement> findByProductNameContainingIgnoreCaseOrProductBarcodeContaining(String nameSearchTerm, String barcodeSearchTerm, Pageable pageable);
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long>, StockMovementRepositoryCustom {
+
+    // bounded by date, so the page and its count read only the partitions of the range
+    Page<StockMovement> findByDateCreatedGreaterThanEqualAndDateCreatedLessThanOrderByDateCreatedDescIdDesc(OffsetDateTime from, OffsetDateTime to, Pageable pageable);
+
+    @Query("""
+        select m
+        from StockMovement m
+        join m.product p
+        where m.dateCreated >= :from and m.dateCreated < :to
+          and (lower(p.name) like lower(concat('%', :term, '%')) or p.barcode like concat('%', :term, '%'))
+        order by m.dateCreated desc, m.id desc
+    """)
+    Page<StockMovement> searchBetween(@Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to,
+                                      @Param("term") String term, Pageable pageable);
 
 }
@@ -0,0 +1,21 @@
+package com.muratoksuzer.vp.repository;
+
+import com.muratoksuzer.vp.dto.MovementCursor;
+import com.muratoksuzer.vp.dto.StockMovementDto;
+
+import java.util.List;
+
+public interface StockMovementRepositoryCustom {
+
+    /**
+     * Manual stock movements and sale lines (as OUT rows) in one list, newest first,
+     * starting right after {@code cursor}. Returns at most {@code limit} rows.
+     */
+    List<StockMovementDto> findUnifiedAfter(MovementCursor cursor, String searchTerm, int limit);
+
+    /**
+     * Links sale movements written before {@code stock_movement.sale_id} existed to their sale,
+     * so the unified list does not show them next to the sale lines they duplicate.
+     */
+    int linkLegacySaleMovements();
+}
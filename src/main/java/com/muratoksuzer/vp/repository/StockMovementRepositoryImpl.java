@@ -0,0 +1,105 @@
+package com.muratoksuzer.vp.repository;
+
+import com.muratoksuzer.vp.dto.MovementCursor;
+import com.muratoksuzer.vp.dto.ProductDto;
+import com.muratoksuzer.vp.dto.StockMovementDto;
+import com.muratoksuzer.vp.entity.domain.ProductUnit;
+import com.muratoksuzer.vp.entity.domain.StockMovementType;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+class StockMovementRepositoryImpl implements StockMovementRepositoryCustom {
+
+    // each branch is limited on its own so both can walk their date index; the outer query merges them
+    private static final String UNIFIED_SQL = """
+            select * from (
+                (select m.id, false as from_sale, m.type, m.quantity, m.note, m.date_created,
+                        p.id as product_id, p.name, p.barcode, p.unit, p.active
+                 from stock_movement m
+                 join product p on p.id = m.product_id
+                 where m.sale_id is null
+                   and (m.date_created < :date or (m.date_created = :date and m.id < :movementBound))
+                   %1$s
+                 order by m.date_created desc, m.id desc
+                 limit :limit)
+                union all
+                (select sl.id, true as from_sale, 'OUT', sl.quantity, 'Sale ' || s.sale_no, s.date_created,
+                        p.id as product_id, p.name, p.barcode, p.unit, p.active
+                 from sale_line sl
+                 join sale s on s.id = sl.sale_id
+                 join product p on p.id = sl.product_id
+                 where (s.date_created < :date or (s.date_created = :date and sl.id < :saleLineBound))
+                   %1$s
+                 order by s.date_created desc, sl.id desc
+                 limit :limit)
+            ) u
+            order by u.date_created desc, u.from_sale asc, u.id desc
+            limit :limit
+            """;
+
+    private static final String SEARCH_CLAUSE = "and (lower(p.name) like :nameTerm or p.barcode like :barcodeTerm)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    StockMovementRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<StockMovementDto> findUnifiedAfter(MovementCursor cursor, String searchTerm, int limit) {
+        boolean search = StringUtils.isNotBlank(searchTerm);
+
+        // at the cursor's own timestamp, movements sort before sale lines
+        long movementBound = cursor.fromSale() ? Long.MIN_VALUE : cursor.id();
+        long saleLineBound = cursor.fromSale() ? cursor.id() : Long.MAX_VALUE;
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("date", cursor.dateCreated())
+                .addValue("movementBound", movementBound)
+                .addValue("saleLineBound", saleLineBound)
+                .addValue("limit", limit);
+        if (search) {
+            params.addValue("nameTerm", "%" + searchTerm.toLowerCase() + "%");
+            params.addValue("barcodeTerm", "%" + searchTerm + "%");
+        }
+
+        return jdbcTemplate.query(UNIFIED_SQL.formatted(search ? SEARCH_CLAUSE : ""), params, this::mapRow);
+    }
+
+    @Override
+    public int linkLegacySaleMovements() {
+        return jdbcTemplate.update("""
+                update stock_movement m
+                set sale_id = s.id
+                from sale s
+                where m.sale_id is null
+                  and m.type = 'OUT'
+                  and m.note = 'Sale ' || s.sale_no
+                """, new MapSqlParameterSource());
+    }
+
+    private StockMovementDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+        ProductDto product = new ProductDto();
+        product.setId(rs.getLong("product_id"));
+        product.setName(rs.getString("name"));
+        product.setBarcode(rs.getString("barcode"));
+        product.setUnit(ProductUnit.valueOf(rs.getString("unit")));
+        product.setActive(rs.getBoolean("active"));
+
+        StockMovementDto dto = new StockMovementDto();
+        dto.setId(rs.getLong("id"));
+        dto.setFromSale(rs.getBoolean("from_sale"));
+        dto.setType(StockMovementType.valueOf(rs.getString("type")));
+        dto.setQuantity(rs.getBigDecimal("quantity"));
+        dto.setNote(rs.getString("note"));
+        dto.setDateCreated(rs.getObject("date_created", OffsetDateTime.class));
+        dto.setProduct(product);
+        return dto;
+    }
+}
@@ -0,0 +1,29 @@
+package com.muratoksuzer.vp.repository;
+
+import com.muratoksuzer.vp.entity.domain.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    /**
+     * Deletes the rows of the node, and rows written before nodes were recorded.
+     */
+    @Modifying
+    @Query("""
+        delete from StockReservation r
+        where r.nodeId = :nodeId or r.nodeId is null
+    """)
+    int deleteByNodeId(@Param("nodeId") String nodeId);
+
+    @Modifying
+    @Query("""
+        delete from StockReservation r
+        where r.expiresAt <= :now
+    """)
+    int deleteExpired(@Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,117 @@
+package com.muratoksuzer.vp.repository;
+
+import com.muratoksuzer.vp.dto.StockShardTotal;
+import com.muratoksuzer.vp.entity.domain.StockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface StockShardRepository extends JpaRepository<StockShard, Long> {
+
+    /**
+     * Takes the quantity from one random shard that has enough and is not locked by another
+     * transaction. Returns 0 if no such shard exists right now.
+     */
+    @Modifying
+    @Query(value = """
+        update stock_shard
+        set quantity = quantity - :quantity,
+            last_updated = :now
+        where id = (
+            select sh.id
+            from stock_shard sh
+            where sh.stock_item_id = :stockItemId and sh.quantity >= :quantity
+            order by random()
+            limit 1
+            for update skip locked
+        )
+    """, nativeQuery = true)
+    int decrementRandomShard(@Param("stockItemId") Long stockItemId,
+                             @Param("quantity") BigDecimal quantity,
+                             @Param("now") OffsetDateTime now);
+
+    /**
+     * Adds the quantity to the emptiest shard that is not locked by another transaction.
+     * Returns 0 if all shards are locked right now.
+     */
+    @Modifying
+    @Query(value = """
+        update stock_shard
+        set quantity = quantity + :quantity,
+            last_updated = :now
+        where id = (
+            select sh.id
+            from stock_shard sh
+            where sh.stock_item_id = :stockItemId
+            order by sh.quantity
+            limit 1
+            for update skip locked
+        )
+    """, nativeQuery = true)
+    int incrementSmallestShard(@Param("stockItemId") Long stockItemId,
+                               @Param("quantity") BigDecimal quantity,
+                               @Param("now") OffsetDateTime now);
+
+    /**
+     * Locks all shards of the item, always in shard order.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+        select sh
+        from StockShard sh
+        where sh.stockItem.id = :stockItemId
+        order by sh.shardNo
+    """)
+    List<StockShard> lockByStockItemId(@Param("stockItemId") Long stockItemId);
+
+    /**
+     * Locks the shards of the item that no other transaction holds; used by the rebalancer,
+     * which must never make a checkout wait.
+     */
+    @Query(value = """
+        select *
+        from stock_shard
+        where stock_item_id = :stockItemId
+        order by shard_no
+        for update skip locked
+    """, nativeQuery = true)
+    List<StockShard> lockAvailableByStockItemId(@Param("stockItemId") Long stockItemId);
+
+    @Query("""
+        select coalesce(sum(sh.quantity), 0)
+        from StockShard sh
+        where sh.stockItem.id = :stockItemId
+    """)
+    BigDecimal sumByStockItemId(@Param("stockItemId") Long stockItemId);
+
+    @Query("""
+        select new com.muratoksuzer.vp.dto.StockShardTotal(sh.stockItem.id, sum(sh.quantity))
+        from StockShard sh
+        where sh.stockItem.id in :stockItemIds
+        group by sh.stockItem.id
+    """)
+    List<StockShardTotal> sumByStockItemIds(@Param("stockItemIds") Collection<Long> stockItemIds);
+
+    @Query("""
+        select si.id
+        from StockItem si
+        where si.shardCount > 1
+        order by si.id
+    """)
+    List<Long> findShardedStockItemIds();
+
+    @Modifying
+    @Query("""
+        delete from StockShard sh
+        where sh.stockItem.id = :stockItemId
+    """)
+    void deleteByStockItemId(@Param("stockItemId") Long stockItemId);
+}
@@ -0,0 +1,201 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.BarcodeIndexStats;
+import com.muratoksuzer.vp.dto.ProductScanSnapshot;
+import com.muratoksuzer.vp.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide barcode -> (product, active price) index, so a POS scan is a single hash lookup.
+ * <p>
+ * Loaded on startup and kept current by the product and price services, which call
+ * {@link #refreshAfterCommit(Long)} / {@link #removeAfterCommit(Long)} from their write methods.
+ * The index is per JVM; other nodes only see changes through their own writes or a {@link #reloadAll()}.
+ */
+@Service
+public class BarcodeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarcodeIndex.class);
+
+    private final ProductRepository productRepository;
+
+    private final Map<String, ProductScanSnapshot> byBarcode = new ConcurrentHashMap<>();
+    // needed to drop the old key when a product's barcode changes or the product is deleted
+    private final Map<Long, String> barcodeByProductId = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fullReloads = new LongAdder();
+    private final LongAdder productRefreshes = new LongAdder();
+    private final AtomicLong lastFullReloadMillis = new AtomicLong();
+
+    public BarcodeIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reloadAll();
+    }
+
+    /**
+     * Returns the snapshot for the barcode, or null if no product has it.
+     * A miss falls back to the database once, in case the product was written by another node.
+     */
+    public ProductScanSnapshot lookup(String barcode) {
+        ProductScanSnapshot snapshot = byBarcode.get(barcode);
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+
+        misses.increment();
+        snapshot = productRepository.findScanSnapshotByBarcode(barcode).orElse(null);
+        if (snapshot != null) {
+            putIfAbsent(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Looks up a burst of scans at once: index misses are read from the database in one query.
+     * Barcodes without a product are not in the returned map.
+     */
+    public Map<String, ProductScanSnapshot> lookupAll(Collection<String> barcodes) {
+        Map<String, ProductScanSnapshot> found = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String barcode : barcodes) {
+            ProductScanSnapshot snapshot = byBarcode.get(barcode);
+            if (snapshot != null) {
+                hits.increment();
+                found.put(barcode, snapshot);
+            } else if (missing.add(barcode)) {
+                misses.increment();
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (ProductScanSnapshot snapshot : productRepository.findScanSnapshotsByBarcodeIn(missing)) {
+                putIfAbsent(snapshot);
+                found.put(snapshot.barcode(), snapshot);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the snapshot of the product, or null if it no longer exists.
+     */
+    public ProductScanSnapshot lookupByProductId(Long productId) {
+        String barcode = barcodeByProductId.get(productId);
+        ProductScanSnapshot snapshot = barcode == null ? null : byBarcode.get(barcode);
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+
+        misses.increment();
+        snapshot = productRepository.findScanSnapshot(productId).orElse(null);
+        if (snapshot != null) {
+            putIfAbsent(snapshot);
+        }
+        return snapshot;
+    }
+
+    public synchronized void reloadAll() {
+        long start = System.currentTimeMillis();
+        List<ProductScanSnapshot> snapshots = productRepository.findAllScanSnapshots();
+
+        byBarcode.clear();
+        barcodeByProductId.clear();
+        snapshots.forEach(this::put);
+
+        fullReloads.increment();
+        lastFullReloadMillis.set(System.currentTimeMillis() - start);
+        logger.info("Barcode index loaded {} products in {} ms", snapshots.size(), lastFullReloadMillis.get());
+    }
+
+    /**
+     * Re-reads the product and its active price once the current transaction commits,
+     * or immediately when called outside a transaction.
+     */
+    public void refreshAfterCommit(Long productId) {
+        runAfterCommit(() -> refresh(productId));
+    }
+
+    public void removeAfterCommit(Long productId) {
+        runAfterCommit(() -> remove(productId));
+    }
+
+    public BarcodeIndexStats getStats() {
+        return new BarcodeIndexStats(
+                byBarcode.size(),
+                hits.sum(),
+                misses.sum(),
+                fullReloads.sum(),
+                productRefreshes.sum(),
+                lastFullReloadMillis.get()
+        );
+    }
+
+    private void refresh(Long productId) {
+        productRefreshes.increment();
+        productRepository.findScanSnapshot(productId)
+                .ifPresentOrElse(this::put, () -> remove(productId));
+    }
+
+    private synchronized void put(ProductScanSnapshot snapshot) {
+        String previousBarcode = barcodeByProductId.put(snapshot.productId(), snapshot.barcode());
+        if (previousBarcode != null && !previousBarcode.equals(snapshot.barcode())) {
+            byBarcode.remove(previousBarcode);
+        }
+        byBarcode.put(snapshot.barcode(), snapshot);
+    }
+
+    /**
+     * Adds a snapshot read on a lookup miss unless the barcode was indexed meanwhile: a refresh after
+     * commit may have put a newer snapshot than the one this lookup read.
+     */
+    private synchronized void putIfAbsent(ProductScanSnapshot snapshot) {
+        if (!byBarcode.containsKey(snapshot.barcode())) {
+            put(snapshot);
+        }
+    }
+
+    private synchronized void remove(Long productId) {
+        String barcode = barcodeByProductId.remove(productId);
+        if (barcode != null) {
+            byBarcode.remove(barcode);
+        }
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
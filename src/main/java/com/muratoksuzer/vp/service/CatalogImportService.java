@@ -0,0 +1,327 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.catalog.CatalogReader;
+import com.muratoksuzer.vp.dto.CatalogImportProgress;
+import com.muratoksuzer.vp.dto.CatalogImportResult;
+import com.muratoksuzer.vp.entity.domain.Currency;
+import com.muratoksuzer.vp.entity.domain.ProductUnit;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.value.Quantity;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streaming catalog import for loading a whole product catalog at once. Each row of a CSV or XLSX file
+ * is one new product: {@code name, barcode[, unit[, price[, stock]]]}; the unit defaults to PCS, a row
+ * without a price gets none and a row with stock gets it as an IN movement. A first row whose barcode
+ * column has no digit is taken as a header.
+ * <p>
+ * Names (ignoring case, as {@link ProductService} does) and barcodes of all products are loaded into
+ * hash sets up front, so duplicates, in the database or within the file, are found without a query per
+ * row and are skipped, as are invalid rows. Valid rows are written with batched JDBC statements and
+ * committed every {@code pos.catalog-import.chunk-size} rows: a failed import keeps the chunks before
+ * the failure, and running it again imports only the rest.
+ * <p>
+ * New products are not in the {@code InventoryEngine} yet, which reads their stock row on first use, so
+ * the initial stock can be written directly in either mode.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportService.class);
+
+    private static final int MAX_NAME_LENGTH = 256;
+    private static final int MAX_BARCODE_LENGTH = 64;
+    private static final int MAX_NOTE_LENGTH = 512;
+    private static final int MAX_REPORTED_PROBLEMS = 50;
+    // price is numeric(12, 2)
+    private static final BigDecimal MAX_PRICE = new BigDecimal("10000000000");
+    private static final BigDecimal DEFAULT_REORDER_LEVEL = BigDecimal.TEN;
+
+    private record CatalogRow(String name, String barcode, ProductUnit unit, BigDecimal price, BigDecimal stock) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BarcodeIndex barcodeIndex;
+    private final LowStockIndex lowStockIndex;
+    private final TranslationService translations;
+    private final int chunkSize;
+    private final Currency currency;
+
+    public CatalogImportService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                BarcodeIndex barcodeIndex,
+                                LowStockIndex lowStockIndex,
+                                TranslationService translations,
+                                @Value("${pos.catalog-import.chunk-size:1000}") int chunkSize,
+                                @Value("${pos.catalog-import.currency:TRY}") Currency currency) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.barcodeIndex = barcodeIndex;
+        this.lowStockIndex = lowStockIndex;
+        this.translations = translations;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.currency = currency;
+    }
+
+    /**
+     * Imports the products in {@code file}; {@code fileName} (the original name of an upload) tells
+     * whether it is XLSX or CSV. {@code progress} is called after each committed chunk.
+     */
+    public CatalogImportResult importCatalog(Path file, String fileName, Consumer<CatalogImportProgress> progress) {
+        long start = System.currentTimeMillis();
+        String stockNote = StringUtils.truncate(translations.t("catalogImport.movementNote",
+                StringUtils.defaultIfBlank(fileName, "-")), MAX_NOTE_LENGTH);
+
+        Set<String> names = new HashSet<>();
+        Set<String> barcodes = new HashSet<>();
+        jdbcTemplate.query("select name, barcode from product", (RowCallbackHandler) rs -> {
+            names.add(nameKey(rs.getString(1)));
+            barcodes.add(rs.getString(2));
+        });
+
+        List<CatalogRow> chunk = new ArrayList<>(chunkSize);
+        List<String> problems = new ArrayList<>();
+        long rows = 0;
+        long imported = 0;
+        long duplicates = 0;
+        long invalid = 0;
+
+        try (CatalogReader reader = CatalogReader.open(file, fileName)) {
+            List<String> fields;
+            long rowNo = 0;
+            while ((fields = reader.next()) != null) {
+                rowNo++;
+                if (isBlank(fields) || (rowNo == 1 && isHeader(fields))) {
+                    continue;
+                }
+                rows++;
+
+                CatalogRow row = parse(rowNo, fields, problems);
+                if (row == null) {
+                    invalid++;
+                    continue;
+                }
+                String nameKey = nameKey(row.name());
+                if (barcodes.contains(row.barcode())) {
+                    duplicates++;
+                    report(problems, translations.t("catalogImport.row.duplicateBarcode", rowNo, row.barcode()));
+                    continue;
+                }
+                if (names.contains(nameKey)) {
+                    duplicates++;
+                    report(problems, translations.t("catalogImport.row.duplicateName", rowNo, row.name()));
+                    continue;
+                }
+                barcodes.add(row.barcode());
+                names.add(nameKey);
+
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    imported += write(chunk, stockNote, imported);
+                    progress.accept(new CatalogImportProgress(rows, imported, duplicates + invalid,
+                            System.currentTimeMillis() - start));
+                }
+            }
+            if (!chunk.isEmpty()) {
+                imported += write(chunk, stockNote, imported);
+            }
+        } catch (IOException e) {
+            throw new AppLevelValidationException(translations.t("catalogImport.unreadable", e.getMessage()));
+        } finally {
+            if (imported > 0) {
+                barcodeIndex.reloadAll();
+            }
+        }
+
+        CatalogImportResult result = new CatalogImportResult(rows, imported, duplicates, invalid,
+                List.copyOf(problems), System.currentTimeMillis() - start);
+        progress.accept(new CatalogImportProgress(rows, imported, duplicates + invalid, result.elapsedMillis()));
+        logger.info("Catalog import {}: {} rows, {} imported, {} duplicates, {} invalid in {} ms ({} rows/s)",
+                fileName, rows, imported, duplicates, invalid, result.elapsedMillis(), result.rowsPerSecond());
+        return result;
+    }
+
+    /**
+     * Writes one chunk in its own transaction and clears it.
+     */
+    private int write(List<CatalogRow> chunk, String stockNote, long importedBefore) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(chunk, stockNote));
+        } catch (DataAccessException e) {
+            throw new AppLevelValidationException(translations.t("catalogImport.chunkFailed",
+                    importedBefore, e.getMostSpecificCause().getMessage()));
+        }
+        int written = chunk.size();
+        chunk.clear();
+        return written;
+    }
+
+    private void insert(List<CatalogRow> chunk, String stockNote) {
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement("""
+                        insert into product (name, barcode, unit, active, date_created, last_updated)
+                        values (?, ?, ?, true, now(), now())
+                        """, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        CatalogRow row = chunk.get(i);
+                        ps.setString(1, row.name());
+                        ps.setString(2, row.barcode());
+                        ps.setString(3, row.unit().name());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                },
+                keys);
+
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        long[] productIds = new long[chunk.size()];
+        for (int i = 0; i < productIds.length; i++) {
+            productIds[i] = ((Number) keyList.get(i).get("id")).longValue();
+        }
+
+        lowStockIndex.refreshAfterCommit(Arrays.stream(productIds).boxed().toList());
+
+        List<Object[]> prices = new ArrayList<>();
+        List<Object[]> stockItems = new ArrayList<>(chunk.size());
+        List<Object[]> movements = new ArrayList<>();
+        for (int i = 0; i < productIds.length; i++) {
+            CatalogRow row = chunk.get(i);
+            if (row.price() != null) {
+                prices.add(new Object[]{productIds[i], row.price(), currency.name()});
+            }
+            stockItems.add(new Object[]{productIds[i], row.stock(), DEFAULT_REORDER_LEVEL});
+            if (row.stock().signum() > 0) {
+                movements.add(new Object[]{productIds[i], row.stock(), stockNote});
+            }
+        }
+
+        if (!prices.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                    insert into price (product_id, amount, currency, active, date_created, last_updated)
+                    values (?, ?, ?, true, now(), now())
+                    """, prices);
+        }
+        jdbcTemplate.batchUpdate("""
+                insert into stock_item (product_id, quantity_on_hand, reorder_level, shard_count, date_created, last_updated)
+                values (?, ?, ?, 1, now(), now())
+                """, stockItems);
+        if (!movements.isEmpty()) {
+            // ids come from the movement sequence; each nextval reserves a whole pooled block, so
+            // they cannot collide with ids Hibernate hands out
+            jdbcTemplate.batchUpdate("""
+                    insert into stock_movement (id, product_id, type, quantity, note, sale_id, date_created, last_updated)
+                    values (nextval('stock_movement_seq'), ?, 'IN', ?, ?, null, now(), now())
+                    """, movements);
+        }
+    }
+
+    private CatalogRow parse(long rowNo, List<String> fields, List<String> problems) {
+        String name = field(fields, 0);
+        String barcode = field(fields, 1);
+        if (name.isEmpty() || barcode.isEmpty()) {
+            report(problems, translations.t("catalogImport.row.missing", rowNo));
+            return null;
+        }
+        if (name.length() > MAX_NAME_LENGTH || barcode.length() > MAX_BARCODE_LENGTH) {
+            report(problems, translations.t("catalogImport.row.tooLong", rowNo));
+            return null;
+        }
+
+        String unitText = field(fields, 2);
+        ProductUnit unit = ProductUnit.PCS;
+        if (!unitText.isEmpty()) {
+            try {
+                unit = ProductUnit.valueOf(unitText.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                report(problems, translations.t("catalogImport.row.unit", rowNo, unitText));
+                return null;
+            }
+        }
+
+        String priceText = field(fields, 3);
+        BigDecimal price = null;
+        if (!priceText.isEmpty()) {
+            price = parseNumber(priceText);
+            if (price == null || price.signum() < 0 || price.compareTo(MAX_PRICE) >= 0) {
+                report(problems, translations.t("catalogImport.row.price", rowNo, priceText));
+                return null;
+            }
+            price = price.setScale(2, RoundingMode.HALF_UP);
+        }
+
+        String stockText = field(fields, 4);
+        BigDecimal stock = BigDecimal.ZERO;
+        if (!stockText.isEmpty()) {
+            stock = parseNumber(stockText);
+            if (stock == null || stock.signum() < 0) {
+                report(problems, translations.t("catalogImport.row.stock", rowNo, stockText));
+                return null;
+            }
+            stock = Quantity.of(stock).toBigDecimal();
+        }
+
+        return new CatalogRow(name, barcode, unit, price, stock);
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() && fields.get(index) != null ? fields.get(index).strip() : "";
+    }
+
+    private static boolean isBlank(List<String> fields) {
+        return fields.stream().allMatch(StringUtils::isBlank);
+    }
+
+    private static boolean isHeader(List<String> fields) {
+        return field(fields, 1).chars().noneMatch(Character::isDigit);
+    }
+
+    private static String nameKey(String name) {
+        return name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static BigDecimal parseNumber(String text) {
+        try {
+            // "12,50" is accepted when the fields are not comma separated
+            return new BigDecimal(text.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void report(List<String> problems, String problem) {
+        if (problems.size() < MAX_REPORTED_PROBLEMS) {
+            problems.add(problem);
+        }
+    }
+}
@@ -7,7 +7,6 @@ import com.muratoksuzer.vp.dto.TopProductPoint;
 import com.muratoksuzer.vp.dto.TopProductsSeries;
 import com.muratoksuzer.vp.repository.SaleLineRepository;
 import com.muratoksuzer.vp.repository.SaleRepository;
-import com.muratoksuzer.vp.repository.StockItemRepository;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
@@ -25,14 +24,14 @@ public class DashboardServiceImpl {
 
     private final SaleRepository saleRepo;
     private final SaleLineRepository saleLineRepo;
-    private final StockItemRepository stockItemRepo;
+    private final LowStockIndex lowStockIndex;
 
     public DashboardServiceImpl(SaleRepository saleRepo,
                                 SaleLineRepository saleLineRepo,
-                                StockItemRepository stockItemRepo) {
+                                LowStockIndex lowStockIndex) {
         this.saleRepo = saleRepo;
         this.saleLineRepo = saleLineRepo;
-        this.stockItemRepo = stockItemRepo;
+        this.lowStockIndex = lowStockIndex;
     }
 
 
@@ -46,7 +45,7 @@ public class DashboardServiceImpl {
         BigDecimal revenueToday = saleRepo.sumTotalBetween(startToday, startTomorrow);
         BigDecimal revenueThisMonth = saleRepo.sumTotalBetween(startMonth, startTomorrow);
         long salesCountToday = saleRepo.countBetween(startToday, startTomorrow);
-        long lowStockCount = stockItemRepo.countLowStock();
+        long lowStockCount = lowStockIndex.count();
 
         return new DashboardKpis(revenueToday, revenueThisMonth, salesCountToday, lowStockCount);
     }
@@ -114,7 +113,7 @@ public class DashboardServiceImpl {
 
 
     public List<LowStockRow> getLowStockRows(int limit) {
-        return stockItemRepo.findLowStock(PageRequest.of(0, Math.max(1, limit)));
+        return lowStockIndex.top(Math.max(1, limit));
     }
 
     private static OffsetDateTime startOfDay(LocalDate day) {
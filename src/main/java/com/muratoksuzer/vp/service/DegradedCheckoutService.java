@@ -0,0 +1,383 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.CheckoutJournalStats;
+import com.muratoksuzer.vp.dto.RejectedSaleDto;
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.entity.domain.RejectedSale;
+import com.muratoksuzer.vp.entity.domain.Sale;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.journal.JournaledSale;
+import com.muratoksuzer.vp.journal.WriteAheadLog;
+import com.muratoksuzer.vp.repository.RejectedSaleRepository;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Checkout entry point for the POS that keeps selling when PostgreSQL stalls.
+ * <p>
+ * With {@code pos.degraded-mode.enabled=true} a checkout that does not finish within
+ * {@code pos.degraded-mode.timeout-ms}, or fails because the database is unreachable, is appended to a
+ * local {@link WriteAheadLog} and answered at once with its (provisional) sale number. Until the database
+ * answers again, new checkouts go straight to the log instead of waiting for the timeout each time. A
+ * background drainer replays the log through {@link PosService#checkout(String, List, String, String)}
+ * and notices when the database is back; from then on checkouts are validated and committed online
+ * again while the rest of the log drains. The sale number makes replays idempotent, and sales that can no longer be applied
+ * are stored as {@link RejectedSale} for a manager.
+ * <p>
+ * A journaled sale keeps its checkout token: a retry with a token still in the log gets the first
+ * provisional sale back, and the replay stores the token, so a sale that the timed-out attempt
+ * committed after all is not sold twice.
+ */
+@Service
+@DependsOn("sequenceInitializer")
+public class DegradedCheckoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DegradedCheckoutService.class);
+
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int DRAIN_BATCH = 50;
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    public record CheckoutResult(String saleNo, BigDecimal total, boolean provisional) {}
+
+    private final PosService posService;
+    private final GroupCommitCheckoutService groupCommit;
+    private final SaleNumberGenerator saleNumberGenerator;
+    private final RejectedSaleRepository rejectedSaleRepository;
+    private final TranslationService translations;
+
+    private final boolean enabled;
+    private final Path journalDir;
+    private final long timeoutMillis;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore drainSignal = new Semaphore(0);
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    // checkout tokens of sales still in the journal
+    private final Map<String, CheckoutResult> pendingTokens = new ConcurrentHashMap<>();
+
+    private WriteAheadLog journal;
+    private volatile boolean running;
+    private volatile long oldestPendingCreatedAt;
+    // set when a checkout could not reach the database, cleared once the drainer reaches it again
+    private volatile boolean databaseDown;
+
+    public DegradedCheckoutService(PosService posService,
+                                   GroupCommitCheckoutService groupCommit,
+                                   SaleNumberGenerator saleNumberGenerator,
+                                   RejectedSaleRepository rejectedSaleRepository,
+                                   TranslationService translations,
+                                   @Value("${pos.degraded-mode.enabled:false}") boolean enabled,
+                                   @Value("${pos.degraded-mode.journal-dir:data/checkout-journal}") Path journalDir,
+                                   @Value("${pos.degraded-mode.timeout-ms:2000}") long timeoutMillis) {
+        this.posService = posService;
+        this.groupCommit = groupCommit;
+        this.saleNumberGenerator = saleNumberGenerator;
+        this.rejectedSaleRepository = rejectedSaleRepository;
+        this.translations = translations;
+        this.enabled = enabled;
+        this.journalDir = journalDir;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        journal = new WriteAheadLog(journalDir, SEGMENT_SIZE);
+        List<WriteAheadLog.Entry> entries;
+        long seq = journal.getCheckpointSeq();
+        while (!(entries = journal.read(seq, DRAIN_BATCH)).isEmpty()) {
+            for (WriteAheadLog.Entry entry : entries) {
+                JournaledSale sale = JournaledSale.fromBytes(entry.payload());
+                if (sale.checkoutToken() != null) {
+                    pendingTokens.put(sale.checkoutToken(), new CheckoutResult(sale.saleNo(), total(sale.lines()), true));
+                }
+            }
+            seq = entries.getLast().seq();
+        }
+        running = true;
+        Thread.ofVirtual().name("checkout-journal-drainer").start(this::drainLoop);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        drainSignal.release();
+        executor.shutdownNow();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    public CheckoutResult checkout(List<PosService.CartLine> cartLines) {
+        return checkout(cartLines, null);
+    }
+
+    /**
+     * Checkout of a cart holding stock reservations under {@code cartId}. A journaled sale does not
+     * keep the reservations; it is validated against the stock when it is drained.
+     */
+    public CheckoutResult checkout(List<PosService.CartLine> cartLines, String cartId) {
+        return checkout(cartLines, cartId, null);
+    }
+
+    /**
+     * Checkout identified by a client {@code checkoutToken} (may be null): retrying with the same
+     * token returns the sale of the first attempt that committed instead of selling again.
+     */
+    public CheckoutResult checkout(List<PosService.CartLine> cartLines, String cartId, String checkoutToken) {
+        try {
+            return attemptCheckout(cartLines, cartId, checkoutToken);
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent attempt with the same token committed first
+            return posService.findSaleByCheckoutToken(checkoutToken)
+                    .map(DegradedCheckoutService::toResult)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    private CheckoutResult attemptCheckout(List<PosService.CartLine> cartLines, String cartId, String checkoutToken) {
+        if (!enabled || cartLines == null || cartLines.isEmpty()) {
+            return toResult(groupCommit.isEnabled()
+                    ? groupCommit.checkout(cartLines, cartId, checkoutToken)
+                    : posService.checkout(saleNumberGenerator.next(), cartLines, cartId, checkoutToken));
+        }
+
+        // a retry of a sale still in the journal; it is not in the database yet
+        CheckoutResult pending = checkoutToken == null ? null : pendingTokens.get(checkoutToken);
+        if (pending != null) {
+            return pending;
+        }
+
+        // no point in waiting for the timeout again while the drainer cannot reach the database either
+        if (databaseDown && journal.getPendingCount() > 0) {
+            return append(saleNumberGenerator.provisional(), cartLines, checkoutToken);
+        }
+
+        String saleNo = saleNumberGenerator.nextIfAvailable();
+        if (saleNo == null) {
+            executor.submit(saleNumberGenerator::prefetch);
+            saleNo = saleNumberGenerator.provisional();
+        }
+
+        String attemptedSaleNo = saleNo;
+        Future<Sale> attempt = groupCommit.isEnabled()
+                ? groupCommit.submit(attemptedSaleNo, cartLines, cartId, checkoutToken)
+                : executor.submit(() -> posService.checkout(attemptedSaleNo, cartLines, cartId, checkoutToken));
+        try {
+            return toResult(attempt.get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            // the attempt may still commit; the drainer then finds the sale number and skips it
+            logger.warn("Checkout {} exceeded {} ms, continuing in degraded mode", saleNo, timeoutMillis);
+            databaseDown = true;
+            return append(saleNo, cartLines, checkoutToken);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isDatabaseUnavailable(cause)) {
+                logger.warn("Database unavailable for checkout {}, continuing in degraded mode", saleNo, cause);
+                databaseDown = true;
+                return append(saleNo, cartLines, checkoutToken);
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs {@link #checkout(List, String, String)} on a virtual thread, so a UI request does not wait for the
+     * database while holding its session. Validation messages are translated to {@code locale}.
+     */
+    public CompletableFuture<CheckoutResult> checkoutAsync(List<PosService.CartLine> cartLines, String cartId,
+                                                          String checkoutToken, Locale locale) {
+        return CompletableFuture.supplyAsync(
+                () -> translations.withLocale(locale, () -> checkout(cartLines, cartId, checkoutToken)), executor);
+    }
+
+    public CheckoutJournalStats getStats() {
+        if (!enabled) {
+            return new CheckoutJournalStats(false, 0, 0, 0, rejected.sum());
+        }
+        long oldest = oldestPendingCreatedAt;
+        long lag = oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+        return new CheckoutJournalStats(true, journal.getPendingCount(), lag, drained.sum(), rejected.sum());
+    }
+
+    public Page<RejectedSaleDto> findRejectedPaginated(Pageable pageable, String searchTerm) {
+        Page<RejectedSale> page = StringUtils.isBlank(searchTerm)
+                ? rejectedSaleRepository.findAll(pageable)
+                : rejectedSaleRepository.findBySaleNoContainingIgnoreCase(searchTerm, pageable);
+        return page.map(r -> new RejectedSaleDto(r.getId(), r.getSaleNo(), r.getTotal(), r.getReason(), r.getLines(), r.getDateCreated()));
+    }
+
+    private CheckoutResult append(String saleNo, List<PosService.CartLine> cartLines, String checkoutToken) {
+        if (checkoutToken == null) {
+            return appendToJournal(saleNo, cartLines, null);
+        }
+        // concurrent retries of the same cart journal it once
+        return pendingTokens.computeIfAbsent(checkoutToken, token -> appendToJournal(saleNo, cartLines, token));
+    }
+
+    private CheckoutResult appendToJournal(String saleNo, List<PosService.CartLine> cartLines, String checkoutToken) {
+        List<JournaledSale.Line> lines = cartLines.stream()
+                .map(l -> new JournaledSale.Line(l.product().getId(), l.product().getName(), l.quantity().toBigDecimal(), l.unitPrice().toBigDecimal()))
+                .toList();
+        JournaledSale sale = new JournaledSale(saleNo, checkoutToken, System.currentTimeMillis(), lines);
+        journal.append(sale.toBytes());
+        drainSignal.release();
+        return new CheckoutResult(saleNo, total(lines), true);
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                List<WriteAheadLog.Entry> batch = journal.read(journal.getCheckpointSeq(), DRAIN_BATCH);
+                if (batch.isEmpty()) {
+                    oldestPendingCreatedAt = 0;
+                    drainSignal.tryAcquire(1, TimeUnit.SECONDS);
+                    drainSignal.drainPermits();
+                    continue;
+                }
+
+                for (WriteAheadLog.Entry entry : batch) {
+                    JournaledSale sale = JournaledSale.fromBytes(entry.payload());
+                    oldestPendingCreatedAt = sale.createdAtMillis();
+                    if (!replay(sale)) {
+                        Thread.sleep(RETRY_BACKOFF_MILLIS);
+                        break;
+                    }
+                    journal.checkpoint(entry.seq());
+                    if (sale.checkoutToken() != null) {
+                        pendingTokens.remove(sale.checkoutToken());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Checkout journal drainer failed, retrying", e);
+            }
+        }
+    }
+
+    /**
+     * Applies one journaled sale. Returns false if the database is still unavailable.
+     */
+    private boolean replay(JournaledSale sale) {
+        try {
+            boolean applied = posService.saleExists(sale.saleNo()) || rejectedSaleRepository.existsBySaleNo(sale.saleNo());
+            // the database answers again: new checkouts go online while the rest of the log drains
+            databaseDown = false;
+            if (applied) {
+                return true;
+            }
+            // a token already committed, e.g. by the timed-out attempt, returns that sale instead
+            posService.checkout(sale.saleNo(), toCartLines(sale), null, sale.checkoutToken());
+            drained.increment();
+        } catch (AppLevelValidationException e) {
+            reject(sale, e.getMessage());
+        } catch (DataIntegrityViolationException e) {
+            // a timed-out original attempt may have committed meanwhile
+            if (!posService.saleExists(sale.saleNo()) && posService.findSaleByCheckoutToken(sale.checkoutToken()).isEmpty()) {
+                reject(sale, e.getMostSpecificCause().getMessage());
+            }
+        } catch (RuntimeException e) {
+            if (isDatabaseUnavailable(e)) {
+                databaseDown = true;
+                return false;
+            }
+            logger.error("Journaled sale {} could not be applied", sale.saleNo(), e);
+            reject(sale, e.getMessage());
+        }
+        return true;
+    }
+
+    private void reject(JournaledSale sale, String reason) {
+        String lines = sale.lines().stream()
+                .map(l -> l.productName() + " x" + l.quantity().toPlainString() + " @" + l.unitPrice().toPlainString())
+                .collect(Collectors.joining(", "));
+        rejectedSaleRepository.save(new RejectedSale(
+                sale.saleNo(),
+                total(sale.lines()),
+                StringUtils.abbreviate(reason, 512),
+                StringUtils.abbreviate(lines, 2048)
+        ));
+        rejected.increment();
+        logger.warn("Journaled sale {} rejected: {}", sale.saleNo(), reason);
+    }
+
+    private static List<PosService.CartLine> toCartLines(JournaledSale sale) {
+        return sale.lines().stream()
+                .map(l -> {
+                    Product product = new Product(l.productName(), null);
+                    product.setId(l.productId());
+                    return new PosService.CartLine(product, Quantity.of(l.quantity()), Money.of(l.unitPrice()));
+                })
+                .toList();
+    }
+
+    private static BigDecimal total(List<JournaledSale.Line> lines) {
+        Money total = Money.ZERO;
+        for (JournaledSale.Line line : lines) {
+            total = total.plus(Money.of(line.unitPrice()).times(Quantity.of(line.quantity())));
+        }
+        return total.toBigDecimal();
+    }
+
+    private static CheckoutResult toResult(Sale sale) {
+        return new CheckoutResult(sale.getSaleNo(), sale.getTotal(), false);
+    }
+
+    private static boolean isDatabaseUnavailable(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof CannotCreateTransactionException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof TransientDataAccessResourceException
+                    || t instanceof QueryTimeoutException
+                    || t instanceof TransactionTimedOutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
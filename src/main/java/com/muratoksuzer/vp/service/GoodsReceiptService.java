@@ -0,0 +1,329 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.GoodsReceiptProgress;
+import com.muratoksuzer.vp.dto.GoodsReceiptResult;
+import com.muratoksuzer.vp.engine.InventoryEngine;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.value.Quantity;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bulk goods receipt. Lines of {@code barcode[;quantity[;note]]} (tab, semicolon or comma separated,
+ * quantity 1 when missing) are streamed in batched inserts into a temporary staging table, resolved to products with one join, and applied with set-based statements: missing stock rows are
+ * inserted, unsharded stock rows are increased with one {@code UPDATE ... FROM}, sharded ones on their
+ * smallest shard, and all IN movements are written with one {@code INSERT ... SELECT}.
+ * <p>
+ * A receipt is one transaction: it is applied completely or not at all. Stock rows are locked in the
+ * same order as checkout locks them. With the {@link InventoryEngine} enabled, the staged totals are
+ * handed to the engine as one command instead, which applies and journals all of them or none and
+ * writes the movements itself.
+ */
+@Transactional(rollbackFor = Exception.class)
+@Service
+public class GoodsReceiptService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GoodsReceiptService.class);
+
+    // progress is reported every this many lines
+    private static final int PROGRESS_INTERVAL = 500;
+    // staged rows per batch; the driver rewrites each batch into multi-row inserts
+    private static final int STAGING_BATCH = 1000;
+    private static final int MAX_BARCODE_LENGTH = 64;
+    private static final int MAX_NOTE_LENGTH = 512;
+    private static final int MAX_REPORTED_UNKNOWN = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryEngine inventoryEngine;
+    private final LowStockIndex lowStockIndex;
+    private final TranslationService translations;
+
+    public GoodsReceiptService(JdbcTemplate jdbcTemplate, InventoryEngine inventoryEngine, LowStockIndex lowStockIndex,
+                               TranslationService translations) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inventoryEngine = inventoryEngine;
+        this.lowStockIndex = lowStockIndex;
+        this.translations = translations;
+    }
+
+    /**
+     * Receives the goods listed in {@code input} (UTF-8). Lines whose barcode is unknown fail the
+     * receipt, unless {@code skipUnknown} is set; they are then left out and reported in the result.
+     *
+     * @param reference  delivery note or other reference, used as the note of lines without one
+     * @param totalBytes size of the input for progress reporting, 0 if unknown
+     */
+    public GoodsReceiptResult receive(String reference, InputStream input, long totalBytes, boolean skipUnknown,
+                                      Consumer<GoodsReceiptProgress> progress) {
+        long start = System.currentTimeMillis();
+        String defaultNote = StringUtils.truncate(translations.t("goodsReceipt.movementNote",
+                StringUtils.defaultIfBlank(reference, "-")), MAX_NOTE_LENGTH);
+
+        jdbcTemplate.execute("""
+                create temporary table goods_receipt_staging (
+                    line_no integer not null,
+                    barcode varchar(64) not null,
+                    quantity numeric(19, 3) not null,
+                    note varchar(512),
+                    product_id bigint
+                ) on commit drop
+                """);
+
+        long lines = stage(input, totalBytes, progress);
+        if (lines == 0) {
+            throw new AppLevelValidationException(translations.t("goodsReceipt.empty"));
+        }
+        progress.accept(new GoodsReceiptProgress(GoodsReceiptProgress.Phase.APPLYING, lines, totalBytes, totalBytes));
+
+        jdbcTemplate.update("""
+                update goods_receipt_staging s
+                set product_id = p.id
+                from product p
+                where p.barcode = s.barcode
+                """);
+        List<String> unknown = jdbcTemplate.queryForList("""
+                select barcode
+                from goods_receipt_staging
+                where product_id is null
+                group by barcode
+                order by min(line_no)
+                limit ?
+                """, String.class, MAX_REPORTED_UNKNOWN);
+        if (!unknown.isEmpty() && !skipUnknown) {
+            throw new AppLevelValidationException(translations.t("goodsReceipt.unknownBarcodes", String.join(", ", unknown)));
+        }
+
+        jdbcTemplate.execute("""
+                create temporary table goods_receipt_total on commit drop as
+                select product_id, sum(quantity) as quantity
+                from goods_receipt_staging
+                where product_id is not null
+                group by product_id
+                """);
+
+        long products;
+        if (inventoryEngine.isEnabled()) {
+            products = applyThroughEngine(defaultNote);
+        } else {
+            products = applyToTables(defaultNote);
+        }
+
+        GoodsReceiptResult result = new GoodsReceiptResult(lines, products, unknown, System.currentTimeMillis() - start);
+        progress.accept(new GoodsReceiptProgress(GoodsReceiptProgress.Phase.DONE, lines, totalBytes, totalBytes));
+        logger.info("Goods receipt {}: {} lines, {} products, {} unknown barcodes in {} ms",
+                reference, lines, products, unknown.size(), result.elapsedMillis());
+        return result;
+    }
+
+    private long applyToTables(String defaultNote) {
+        jdbcTemplate.update("""
+                insert into stock_item (product_id, quantity_on_hand, reorder_level, shard_count, date_created, last_updated)
+                select t.product_id, 0, 10, 1, now(), now()
+                from goods_receipt_total t
+                on conflict (product_id) do nothing
+                """);
+
+        // same lock order as checkout: unsharded rows, then sharded rows, each by product id
+        jdbcTemplate.queryForList("""
+                select si.id
+                from stock_item si
+                join goods_receipt_total t on t.product_id = si.product_id
+                where si.shard_count = 1
+                order by si.product_id
+                for update of si
+                """, Long.class);
+        jdbcTemplate.queryForList("""
+                select si.id
+                from stock_item si
+                join goods_receipt_total t on t.product_id = si.product_id
+                where si.shard_count > 1
+                order by si.product_id
+                for share of si
+                """, Long.class);
+
+        int unsharded = jdbcTemplate.update("""
+                update stock_item si
+                set quantity_on_hand = si.quantity_on_hand + t.quantity,
+                    last_updated = now()
+                from goods_receipt_total t
+                where si.product_id = t.product_id and si.shard_count = 1
+                """);
+        int sharded = jdbcTemplate.update("""
+                update stock_shard sh
+                set quantity = sh.quantity + smallest.quantity,
+                    last_updated = now()
+                from (
+                    select distinct on (sh2.stock_item_id) sh2.id, t.quantity
+                    from stock_shard sh2
+                    join stock_item si on si.id = sh2.stock_item_id
+                    join goods_receipt_total t on t.product_id = si.product_id
+                    where si.shard_count > 1
+                    order by sh2.stock_item_id, sh2.quantity, sh2.id
+                ) smallest
+                where sh.id = smallest.id
+                """);
+
+        // ids come from the movement sequence; each nextval reserves a whole pooled block, so
+        // they cannot collide with ids Hibernate hands out
+        jdbcTemplate.update("""
+                insert into stock_movement (id, product_id, type, quantity, note, sale_id, date_created, last_updated)
+                select nextval('stock_movement_seq'), s.product_id, 'IN', s.quantity, coalesce(s.note, ?), null, now(), now()
+                from goods_receipt_staging s
+                where s.product_id is not null
+                order by s.line_no
+                """, defaultNote);
+        lowStockIndex.refreshAfterCommit(
+                jdbcTemplate.queryForList("select product_id from goods_receipt_total", Long.class));
+        return unsharded + sharded;
+    }
+
+    private long applyThroughEngine(String defaultNote) {
+        Map<Long, Long> totals = new HashMap<>();
+        jdbcTemplate.query("select product_id, quantity from goods_receipt_total", rs -> {
+            totals.put(rs.getLong(1), Quantity.of(rs.getBigDecimal(2)).milliUnits());
+        });
+        return inventoryEngine.adjustAll(totals, defaultNote);
+    }
+
+    private long stage(InputStream input, long totalBytes, Consumer<GoodsReceiptProgress> progress) {
+        try {
+            return stream(input, totalBytes, progress);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read goods receipt", e);
+        }
+    }
+
+    private long stream(InputStream input, long totalBytes, Consumer<GoodsReceiptProgress> progress) throws IOException {
+        CountingInputStream counting = new CountingInputStream(input);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8));
+        List<Object[]> batch = new ArrayList<>(STAGING_BATCH);
+        long lines = 0;
+        int lineNo = 0;
+        String raw;
+        while ((raw = reader.readLine()) != null) {
+            lineNo++;
+            String[] fields = split(raw.strip());
+            if (fields == null || (lineNo == 1 && isHeader(fields))) {
+                continue;
+            }
+
+            String barcode = fields[0].strip();
+            if (barcode.isEmpty() || barcode.length() > MAX_BARCODE_LENGTH) {
+                throw new AppLevelValidationException(translations.t("goodsReceipt.invalidLine", lineNo, raw));
+            }
+            BigDecimal quantity = fields.length > 1 && !fields[1].isBlank() ? parseQuantity(fields[1]) : BigDecimal.ONE;
+            if (quantity == null || quantity.signum() <= 0) {
+                throw new AppLevelValidationException(translations.t("goodsReceipt.invalidLine", lineNo, raw));
+            }
+            String note = fields.length > 2 ? StringUtils.truncate(fields[2].strip(), MAX_NOTE_LENGTH) : "";
+
+            // lines without a note get the default note when the movements are written
+            batch.add(new Object[]{lineNo, barcode, Quantity.of(quantity).toBigDecimal(), StringUtils.defaultIfEmpty(note, null)});
+            lines++;
+
+            if (batch.size() >= STAGING_BATCH) {
+                insertIntoStaging(batch);
+            }
+            if (lines % PROGRESS_INTERVAL == 0) {
+                progress.accept(new GoodsReceiptProgress(GoodsReceiptProgress.Phase.STAGING, lines, counting.count, totalBytes));
+            }
+        }
+        insertIntoStaging(batch);
+        progress.accept(new GoodsReceiptProgress(GoodsReceiptProgress.Phase.STAGING, lines, counting.count, totalBytes));
+        return lines;
+    }
+
+    private void insertIntoStaging(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("insert into goods_receipt_staging (line_no, barcode, quantity, note) values (?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    /**
+     * Counts the bytes read from the input, so progress is reported in bytes however the text is
+     * encoded; the reader reads ahead, so the count runs up to one buffer ahead of the parsed lines.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Splits on tabs or semicolons when the line has them, otherwise on commas; null for blank lines
+     * and {@code #} comments.
+     */
+    private static String[] split(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        if (line.indexOf('\t') >= 0) {
+            return line.split("\t", 3);
+        }
+        if (line.indexOf(';') >= 0) {
+            return line.split(";", 3);
+        }
+        return line.split(",", 3);
+    }
+
+    private static boolean isHeader(String[] fields) {
+        return fields.length > 1 && !fields[1].isBlank() && parseQuantity(fields[1]) == null;
+    }
+
+    private static BigDecimal parseQuantity(String text) {
+        try {
+            // "1,5" is accepted when the fields are not comma separated
+            return new BigDecimal(text.strip().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.engine.InventoryEngine;
+import com.muratoksuzer.vp.entity.domain.Sale;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group commit for checkouts: concurrent checkout requests are collected for up to
+ * {@code pos.group-commit.max-wait-ms} or {@code pos.group-commit.max-batch-size} sales and written in
+ * one transaction, so a burst of terminals pays for one commit instead of one each.
+ * <p>
+ * Every sale runs in its own savepoint ({@link PosService#checkoutInSavepoint}), so a basket that fails
+ * validation is rolled back alone and only its caller sees the error. Any other failure (constraint
+ * violation, deadlock, failed commit) leaves the transaction unusable; the batch is then rolled back and
+ * each of its sales is retried in its own transaction.
+ * <p>
+ * With the {@link InventoryEngine} enabled a sale is applied and journaled by the engine, not by the
+ * batch transaction, so a rolled back batch does not undo it; only the sales the batch had not settled
+ * are retried, so none is decremented twice.
+ */
+@Service
+public class GroupCommitCheckoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitCheckoutService.class);
+
+    private record Request(String saleNo, List<PosService.CartLine> cartLines, String cartId, String checkoutToken,
+                           CompletableFuture<Sale> result) {}
+
+    private final PosService posService;
+    private final SaleNumberGenerator saleNumberGenerator;
+    private final InventoryEngine inventoryEngine;
+    private final EntityManager entityManager;
+    private final TransactionTemplate batchTransaction;
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedSales = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    private volatile boolean running;
+    private Thread committer;
+
+    public GroupCommitCheckoutService(PosService posService,
+                                      SaleNumberGenerator saleNumberGenerator,
+                                      InventoryEngine inventoryEngine,
+                                      EntityManager entityManager,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${pos.group-commit.enabled:false}") boolean enabled,
+                                      @Value("${pos.group-commit.max-batch-size:32}") int maxBatchSize,
+                                      @Value("${pos.group-commit.max-wait-ms:5}") long maxWaitMillis) {
+        this.posService = posService;
+        this.saleNumberGenerator = saleNumberGenerator;
+        this.inventoryEngine = inventoryEngine;
+        this.entityManager = entityManager;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        committer = Thread.ofVirtual().name("checkout-group-commit").start(this::commitLoop);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (committer != null) {
+            committer.interrupt();
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.result().completeExceptionally(new IllegalStateException("group commit stopped"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a checkout for the next group commit. The future completes with the stored sale, or with
+     * the exception that this sale alone failed with.
+     */
+    public CompletableFuture<Sale> submit(String saleNo, List<PosService.CartLine> cartLines, String cartId, String checkoutToken) {
+        if (!running) {
+            throw new IllegalStateException("group commit is not running");
+        }
+        Request request = new Request(saleNo, cartLines, cartId, checkoutToken, new CompletableFuture<>());
+        queue.add(request);
+        return request.result();
+    }
+
+    /**
+     * Blocking checkout through the group commit; throws the same exceptions as {@link PosService#checkout}.
+     */
+    public Sale checkout(List<PosService.CartLine> cartLines, String cartId) {
+        return checkout(cartLines, cartId, null);
+    }
+
+    public Sale checkout(List<PosService.CartLine> cartLines, String cartId, String checkoutToken) {
+        try {
+            return submit(saleNumberGenerator.next(), cartLines, cartId, checkoutToken).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) batchedSales.sum() / count;
+    }
+
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    private void commitLoop() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(r -> r.result().completeExceptionally(e));
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Group commit failed", e);
+                batch.forEach(r -> r.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        Sale[] sales = new Sale[batch.size()];
+        RuntimeException[] rejections = new RuntimeException[batch.size()];
+        try {
+            batchTransaction.executeWithoutResult(status -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    Request request = batch.get(i);
+                    try {
+                        sales[i] = posService.checkoutInSavepoint(request.saleNo(), request.cartLines(), request.cartId(), request.checkoutToken());
+                    } catch (AppLevelValidationException e) {
+                        rejections[i] = e;
+                    } finally {
+                        // later sales must not see entities loaded or changed by this one
+                        entityManager.clear();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Group commit of {} sales failed, committing them one by one", batch.size(), e);
+            fallbacks.increment();
+            boolean engineApplied = inventoryEngine.isEnabled();
+            for (int i = 0; i < batch.size(); i++) {
+                if (engineApplied && rejections[i] != null) {
+                    batch.get(i).result().completeExceptionally(rejections[i]);
+                } else if (engineApplied && sales[i] != null) {
+                    // already taken from the engine's stock and journaled
+                    batch.get(i).result().complete(sales[i]);
+                } else {
+                    commitAlone(batch.get(i));
+                }
+            }
+            return;
+        }
+
+        batches.increment();
+        batchedSales.add(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (rejections[i] != null) {
+                batch.get(i).result().completeExceptionally(rejections[i]);
+            } else {
+                batch.get(i).result().complete(sales[i]);
+            }
+        }
+    }
+
+    private void commitAlone(Request request) {
+        try {
+            request.result().complete(posService.checkout(request.saleNo(), request.cartLines(), request.cartId(), request.checkoutToken()));
+        } catch (RuntimeException e) {
+            request.result().completeExceptionally(e);
+        }
+    }
+}
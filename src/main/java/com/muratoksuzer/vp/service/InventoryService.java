@@ -2,6 +2,7 @@ package com.muratoksuzer.vp.service;
 
 import com.muratoksuzer.vp.dto.ProductDto;
 import com.muratoksuzer.vp.dto.StockItemDto;
+import com.muratoksuzer.vp.engine.InventoryEngine;
 import com.muratoksuzer.vp.entity.domain.Product;
 import com.muratoksuzer.vp.entity.domain.StockItem;
 import com.muratoksuzer.vp.entity.domain.StockMovement;
@@ -10,14 +11,19 @@ import com.muratoksuzer.vp.exception.AppLevelValidationException;
 import com.muratoksuzer.vp.repository.ProductRepository;
 import com.muratoksuzer.vp.repository.StockItemRepository;
 import com.muratoksuzer.vp.repository.StockMovementRepository;
+import com.muratoksuzer.vp.value.Quantity;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Transactional(rollbackFor = Exception.class)
@@ -27,12 +33,20 @@ public class InventoryService {
     private final StockItemRepository stockRepo;
     private final StockMovementRepository stockMovementRepository;
     private final ProductRepository productRepository;
+    private final StockShardService stockShardService;
+    private final InventoryEngine inventoryEngine;
+    private final LowStockIndex lowStockIndex;
+    private final StockSnapshotService stockSnapshotService;
     private final TranslationService translations;
 
-    public InventoryService(StockItemRepository stockRepo, StockMovementRepository stockMovementRepository, ProductRepository productRepository, TranslationService translations) {
+    public InventoryService(StockItemRepository stockRepo, StockMovementRepository stockMovementRepository, ProductRepository productRepository, StockShardService stockShardService, InventoryEngine inventoryEngine, LowStockIndex lowStockIndex, StockSnapshotService stockSnapshotService, TranslationService translations) {
         this.stockRepo = stockRepo;
         this.stockMovementRepository = stockMovementRepository;
         this.productRepository = productRepository;
+        this.stockShardService = stockShardService;
+        this.inventoryEngine = inventoryEngine;
+        this.lowStockIndex = lowStockIndex;
+        this.stockSnapshotService = stockSnapshotService;
         this.translations = translations;
 
     }
@@ -42,28 +56,48 @@ public class InventoryService {
     }
 
     public void increaseStock(Long productId, BigDecimal quantity, String note) {
-        Optional<StockItem> byProductId = Optional.ofNullable(stockRepo.findByProductId(productId).orElseThrow(() -> new IllegalArgumentException("no stock item found")));
+        if (inventoryEngine.isEnabled()) {
+            inventoryEngine.adjust(productId, Quantity.of(quantity).milliUnits(), note);
+            return;
+        }
+        Optional<StockItem> byProductId = Optional.ofNullable(stockRepo.lockByProductId(productId).orElseThrow(() -> new IllegalArgumentException("no stock item found")));
         StockItem s = byProductId.get();
-        s.setQuantityOnHand(s.getQuantityOnHand().add(quantity));
-        stockRepo.save(s);
+        if (s.isSharded()) {
+            stockShardService.increase(s, quantity);
+        } else {
+            s.setQuantityOnHand(s.getQuantityOnHand().add(quantity));
+            stockRepo.save(s);
+        }
 
         StockMovement stockMovement = new StockMovement(productRepository.findById(productId).get(), StockMovementType.IN, quantity, note);
         stockMovementRepository.save(stockMovement);
+        lowStockIndex.refreshAfterCommit(List.of(productId));
     }
 
     public void decreaseStock(Long productId, BigDecimal quantity, String note) {
-        Optional<StockItem> byProductId = Optional.ofNullable(stockRepo.findByProductId(productId).orElseThrow(() -> new IllegalArgumentException("no stock item found")));
+        if (inventoryEngine.isEnabled()) {
+            inventoryEngine.adjust(productId, -Quantity.of(quantity).milliUnits(), note);
+            return;
+        }
+        Optional<StockItem> byProductId = Optional.ofNullable(stockRepo.lockByProductId(productId).orElseThrow(() -> new IllegalArgumentException("no stock item found")));
         StockItem s = byProductId.get();
 
-        if(s.getQuantityOnHand().compareTo(quantity) < 0 ) {
-            throw new AppLevelValidationException(translations.t("inventory.insufficientStock"));
+        if (s.isSharded()) {
+            if (!stockShardService.decrement(s, quantity)) {
+                throw new AppLevelValidationException(translations.t("inventory.insufficientStock"));
+            }
+        } else {
+            if(s.getQuantityOnHand().compareTo(quantity) < 0 ) {
+                throw new AppLevelValidationException(translations.t("inventory.insufficientStock"));
+            }
+
+            s.setQuantityOnHand(s.getQuantityOnHand().subtract(quantity));
+            stockRepo.save(s);
         }
 
-        s.setQuantityOnHand(s.getQuantityOnHand().subtract(quantity));
-        stockRepo.save(s);
-
         StockMovement stockMovement = new StockMovement(productRepository.findById(productId).get(), StockMovementType.OUT, quantity, note);
         stockMovementRepository.save(stockMovement);
+        lowStockIndex.refreshAfterCommit(List.of(productId));
     }
 
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
@@ -85,13 +119,50 @@ public class InventoryService {
         si.setReorderLevel(reorderLevel == null ? BigDecimal.ZERO : reorderLevel);
         si.setLocation(location);
         stockRepo.save(si);
+        lowStockIndex.refreshAfterCommit(List.of(productId));
+    }
+
+    /**
+     * Quantity of the product on hand at {@code instant}, from the nearest stock snapshot and the
+     * movements since. With the inventory engine enabled, the last flush interval is not included yet.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public BigDecimal quantityAsOf(Long productId, Instant instant) {
+        return stockSnapshotService.quantityAsOf(productId, instant);
+    }
+
+    /**
+     * Quantities on hand of all products at {@code instant}; products without stock then are left out.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Map<Long, BigDecimal> quantityAsOf(Instant instant) {
+        return stockSnapshotService.quantityAsOf(instant);
+    }
+
+    /**
+     * Opts a product's stock in or out of sharded counters; 1 means a single stock row.
+     */
+    public void updateShardCount(Long productId, int shardCount) {
+        if (inventoryEngine.isEnabled()) {
+            throw new AppLevelValidationException(translations.t("inventory.shards.engine"));
+        }
+        stockShardService.reshard(productId, shardCount);
     }
 
     private Page<StockItemDto> mapToDto(Page<StockItem> page) {
-        return page.map(stockItem -> toDto(stockItem));
+        List<Long> shardedIds = page.stream()
+                .filter(StockItem::isSharded)
+                .map(StockItem::getId)
+                .toList();
+        Map<Long, BigDecimal> shardTotals = stockShardService.shardTotals(shardedIds);
+        // the database lags behind the engine until its write-behind catches up
+        Map<Long, Quantity> engineQuantities = inventoryEngine.isEnabled()
+                ? inventoryEngine.quantities(page.map(stockItem -> stockItem.getProduct().getId()).getContent())
+                : Map.of();
+        return page.map(stockItem -> toDto(stockItem, shardTotals, engineQuantities));
     }
 
-    private StockItemDto toDto(StockItem stockItem) {
+    private StockItemDto toDto(StockItem stockItem, Map<Long, BigDecimal> shardTotals, Map<Long, Quantity> engineQuantities) {
         if (stockItem == null) {
             return null;
         }
@@ -99,7 +170,11 @@ public class InventoryService {
         dto.setId(stockItem.getId());
         dto.setLocation(stockItem.getLocation());
         dto.setReorderLevel(stockItem.getReorderLevel());
-        dto.setQuantityOnHand(stockItem.getQuantityOnHand());
+        Quantity engineQuantity = engineQuantities.get(stockItem.getProduct().getId());
+        dto.setQuantityOnHand(engineQuantity != null
+                ? engineQuantity.toBigDecimal()
+                : stockItem.getQuantityOnHand().add(shardTotals.getOrDefault(stockItem.getId(), BigDecimal.ZERO)));
+        dto.setShardCount(stockItem.getShardCount());
         dto.setProduct(toDto(stockItem.getProduct()));
 
         return dto;
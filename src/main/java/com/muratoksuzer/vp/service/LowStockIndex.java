@@ -0,0 +1,175 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.LowStockRow;
+import com.muratoksuzer.vp.dto.StockLevel;
+import com.muratoksuzer.vp.repository.StockItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Process-wide set of low-stock products (on hand at or below the reorder level), sorted by the
+ * missing quantity, so the dashboard's count is O(1) and its top list O(k) instead of a scan of
+ * every stock row.
+ * <p>
+ * Loaded on startup and kept current by the services that change stock or reorder levels, which
+ * call {@link #refreshAfterCommit(Collection)} with the products they touched; only those rows are
+ * read again. Like the {@link BarcodeIndex} the set is per JVM, so {@link LowStockReloader} also
+ * reloads it every {@code pos.low-stock.reload-interval-ms} to pick up changes made by other nodes.
+ */
+@Service
+public class LowStockIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LowStockIndex.class);
+
+    // product ids per query when re-reading stock rows
+    private static final int REFRESH_BATCH = 1000;
+
+    private record Entry(long productId, LowStockRow row) {}
+
+    // most missing first; product id keeps entries with the same shortage apart
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry entry) -> entry.row().missing()).reversed()
+            .thenComparingLong(Entry::productId);
+
+    private final StockItemRepository stockItemRepository;
+
+    // guarded by this
+    private final Map<Long, Entry> byProductId = new HashMap<>();
+    private final TreeSet<Entry> sorted = new TreeSet<>(ORDER);
+    private final Set<Long> refreshedWhileLoading = new HashSet<>();
+    private boolean loading;
+    private final Object reloadLock = new Object();
+
+    public LowStockIndex(StockItemRepository stockItemRepository) {
+        this.stockItemRepository = stockItemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reloadAll();
+    }
+
+    public synchronized long count() {
+        return byProductId.size();
+    }
+
+    /**
+     * The {@code limit} products missing the most stock.
+     */
+    public synchronized List<LowStockRow> top(int limit) {
+        List<LowStockRow> rows = new ArrayList<>(Math.min(limit, sorted.size()));
+        Iterator<Entry> entries = sorted.iterator();
+        while (rows.size() < limit && entries.hasNext()) {
+            rows.add(entries.next().row());
+        }
+        return rows;
+    }
+
+    public void reloadAll() {
+        // one full load at a time; refreshes go on meanwhile and are read again afterwards
+        synchronized (reloadLock) {
+            synchronized (this) {
+                loading = true;
+                refreshedWhileLoading.clear();
+            }
+            long start = System.currentTimeMillis();
+            List<StockLevel> levels;
+            try {
+                levels = stockItemRepository.findLowStockLevels();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    loading = false;
+                }
+                throw e;
+            }
+
+            List<Long> refreshAgain;
+            synchronized (this) {
+                byProductId.clear();
+                sorted.clear();
+                levels.forEach(this::apply);
+                loading = false;
+                // the load may have read rows from before these refreshes committed
+                refreshAgain = List.copyOf(refreshedWhileLoading);
+                refreshedWhileLoading.clear();
+            }
+            refresh(refreshAgain);
+            logger.debug("Low-stock index loaded {} products in {} ms", levels.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Re-reads the stock of these products once the current transaction commits,
+     * or immediately when called outside a transaction.
+     */
+    public void refreshAfterCommit(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(productIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(ids);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    refresh(ids);
+                } catch (RuntimeException e) {
+                    // the change is committed; the next reload corrects the set
+                    logger.warn("Could not refresh low-stock index for products {}", ids, e);
+                }
+            }
+        });
+    }
+
+    private void refresh(List<Long> productIds) {
+        for (int from = 0; from < productIds.size(); from += REFRESH_BATCH) {
+            List<Long> batch = productIds.subList(from, Math.min(from + REFRESH_BATCH, productIds.size()));
+            List<StockLevel> levels = stockItemRepository.findStockLevels(batch);
+            synchronized (this) {
+                if (loading) {
+                    refreshedWhileLoading.addAll(batch);
+                }
+                // products without a stock row (deleted meanwhile) drop out
+                batch.forEach(this::remove);
+                levels.forEach(this::apply);
+            }
+        }
+    }
+
+    private void apply(StockLevel level) {
+        remove(level.productId());
+        if (level.isLow()) {
+            Entry entry = new Entry(level.productId(),
+                    new LowStockRow(level.productName(), level.onHand(), level.reorderLevel(), level.missing()));
+            byProductId.put(level.productId(), entry);
+            sorted.add(entry);
+        }
+    }
+
+    private void remove(Long productId) {
+        Entry previous = byProductId.remove(productId);
+        if (previous != null) {
+            sorted.remove(previous);
+        }
+    }
+}
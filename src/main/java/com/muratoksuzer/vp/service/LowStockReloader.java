@@ -0,0 +1,35 @@
+package com.muratoksuzer.vp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background task that reloads the {@link LowStockIndex} periodically, so stock changed by other
+ * nodes shows up on this node's dashboard. Not created when {@code pos.low-stock.reload-interval-ms}
+ * is 0 or less.
+ */
+@Component
+@ConditionalOnExpression("${pos.low-stock.reload-interval-ms:300000} > 0")
+public class LowStockReloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(LowStockReloader.class);
+
+    private final LowStockIndex lowStockIndex;
+
+    public LowStockReloader(LowStockIndex lowStockIndex) {
+        this.lowStockIndex = lowStockIndex;
+    }
+
+    @Scheduled(initialDelayString = "${pos.low-stock.reload-interval-ms:300000}",
+            fixedDelayString = "${pos.low-stock.reload-interval-ms:300000}")
+    void reload() {
+        try {
+            lowStockIndex.reloadAll();
+        } catch (RuntimeException e) {
+            logger.warn("Low-stock index reload failed, retrying", e);
+        }
+    }
+}
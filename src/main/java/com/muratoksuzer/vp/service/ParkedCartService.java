@@ -0,0 +1,62 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.ParkedCartDto;
+import com.muratoksuzer.vp.dto.ParkedCartLine;
+import com.muratoksuzer.vp.entity.domain.ParkedCart;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.repository.ParkedCartRepository;
+import com.muratoksuzer.vp.value.Money;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Park sale / resume sale: a POS cart is stored as {@link ParkedCartLine}s in the database, so it
+ * survives a restart and can be resumed at any terminal. A parked cart holds no stock reservations;
+ * resuming it reserves the stock again.
+ */
+@Transactional(rollbackFor = Exception.class)
+@Service
+public class ParkedCartService {
+
+    private final ParkedCartRepository parkedCartRepository;
+    private final TranslationService translations;
+
+    public ParkedCartService(ParkedCartRepository parkedCartRepository, TranslationService translations) {
+        this.parkedCartRepository = parkedCartRepository;
+        this.translations = translations;
+    }
+
+    public Long park(String label, String parkedBy, List<ParkedCartLine> lines) {
+        if (lines.isEmpty()) {
+            throw new AppLevelValidationException(translations.t("pos.cart.empty"));
+        }
+        long totalMinor = 0;
+        for (ParkedCartLine line : lines) {
+            totalMinor = Math.addExact(totalMinor, Money.timesMinor(line.unitPriceMinor(), line.quantityMilli()));
+        }
+        ParkedCart parkedCart = new ParkedCart(label, parkedBy, lines.size(),
+                Money.ofMinor(totalMinor).toBigDecimal(), ParkedCartLine.encode(lines));
+        return parkedCartRepository.save(parkedCart).getId();
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<ParkedCartDto> findParked() {
+        return parkedCartRepository.findAllByOrderByDateCreatedAsc().stream()
+                .map(pc -> new ParkedCartDto(pc.getId(), pc.getLabel(), pc.getParkedBy(), pc.getLineCount(), pc.getTotal(), pc.getDateCreated()))
+                .toList();
+    }
+
+    /**
+     * Removes the parked cart and returns its lines; a cart can only be resumed once.
+     */
+    public List<ParkedCartLine> resume(Long parkedCartId) {
+        ParkedCart parkedCart = parkedCartRepository.lockById(parkedCartId)
+                .orElseThrow(() -> new AppLevelValidationException(translations.t("pos.park.notFound")));
+        List<ParkedCartLine> lines = ParkedCartLine.decode(parkedCart.getLines());
+        parkedCartRepository.delete(parkedCart);
+        return lines;
+    }
+}
@@ -1,5 +1,7 @@
 package com.muratoksuzer.vp.service;
 
+import com.muratoksuzer.vp.dto.ReceiptData;
+import com.muratoksuzer.vp.engine.InventoryEngine;
 import com.muratoksuzer.vp.entity.domain.Product;
 import com.muratoksuzer.vp.entity.domain.Sale;
 import com.muratoksuzer.vp.entity.domain.SaleLine;
@@ -12,39 +14,76 @@ import com.muratoksuzer.vp.repository.SaleLineRepository;
 import com.muratoksuzer.vp.repository.SaleRepository;
 import com.muratoksuzer.vp.repository.StockItemRepository;
 import com.muratoksuzer.vp.repository.StockMovementRepository;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Transactional(rollbackFor = Exception.class)
 @Service
 public class PosService {
 
-    public record CartLine(Product product, BigDecimal quantity, BigDecimal unitPrice) {}
+    public record CartLine(Product product, Quantity quantity, Money unitPrice) {}
 
     private final ProductRepository productRepo;
     private final StockItemRepository stockRepo;
     private final StockMovementRepository movementRepo;
     private final SaleRepository saleRepo;
     private final SaleLineRepository saleLineRepo;
+    private final SaleNumberGenerator saleNumberGenerator;
+    private final StockShardService stockShardService;
+    private final StockReservationLedger reservationLedger;
+    private final InventoryEngine inventoryEngine;
+    private final LowStockIndex lowStockIndex;
     private final TranslationService translations;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    // when true, sale OUT movements are not stored; they are derived from sale lines
+    private final boolean deriveSaleMovements;
 
     public PosService(ProductRepository productRepo,
                       StockItemRepository stockRepo,
                       StockMovementRepository movementRepo,
                       SaleRepository saleRepo,
                       SaleLineRepository saleLineRepo,
-                      TranslationService translations) {
+                      SaleNumberGenerator saleNumberGenerator,
+                      StockShardService stockShardService,
+                      StockReservationLedger reservationLedger,
+                      InventoryEngine inventoryEngine,
+                      LowStockIndex lowStockIndex,
+                      TranslationService translations,
+                      EntityManager entityManager,
+                      ApplicationEventPublisher eventPublisher,
+                      @Value("${pos.derive-sale-movements:false}") boolean deriveSaleMovements) {
         this.productRepo = productRepo;
         this.stockRepo = stockRepo;
         this.movementRepo = movementRepo;
         this.saleRepo = saleRepo;
         this.saleLineRepo = saleLineRepo;
+        this.saleNumberGenerator = saleNumberGenerator;
+        this.stockShardService = stockShardService;
+        this.reservationLedger = reservationLedger;
+        this.inventoryEngine = inventoryEngine;
+        this.lowStockIndex = lowStockIndex;
         this.translations = translations;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.deriveSaleMovements = deriveSaleMovements;
     }
 
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
@@ -52,58 +91,241 @@ public class PosService {
         return productRepo.findByBarcode(barcode).orElse(null);
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public boolean saleExists(String saleNo) {
+        return saleRepo.existsBySaleNo(saleNo);
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Optional<Sale> findSaleByCheckoutToken(String checkoutToken) {
+        return checkoutToken == null ? Optional.empty() : saleRepo.findByCheckoutToken(checkoutToken);
+    }
+
     public Sale checkout(List<CartLine> cartLines) {
+        return checkout(cartLines, null);
+    }
+
+    /**
+     * Checkout of a POS cart whose lines hold stock reservations under {@code cartId}.
+     */
+    public Sale checkout(List<CartLine> cartLines, String cartId) {
+        return checkout(saleNumberGenerator.next(), cartLines, cartId);
+    }
+
+    public Sale checkout(String saleNo, List<CartLine> cartLines) {
+        return checkout(saleNo, cartLines, null);
+    }
+
+    /**
+     * Checkout inside a savepoint of the caller's transaction, used by group commit: a validation
+     * error rolls back only this sale. Flushes before returning so database errors surface here too.
+     */
+    @Transactional(propagation = Propagation.NESTED, rollbackFor = Exception.class)
+    public Sale checkoutInSavepoint(String saleNo, List<CartLine> cartLines, String cartId, String checkoutToken) {
+        Optional<Sale> existing = findSaleByCheckoutToken(checkoutToken);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        Sale sale = sell(saleNo, cartLines, cartId, checkoutToken);
+        saleRepo.flush();
+        // published only once the savepoint's inserts went through
+        publishCompleted(sale, cartLines);
+        return sale;
+    }
+
+    /**
+     * Checkout with a sale number chosen by the caller, e.g. a provisional number handed out
+     * in degraded mode. The unique sale number makes replays of the same sale fail instead of
+     * selling twice.
+     * <p>
+     * Lines covered by the cart's reservations ({@code cartId} may be null) are not locked and
+     * re-validated; their reservations are consumed by the sale. Other lines are checked against
+     * the stock not reserved by other carts.
+     */
+    public Sale checkout(String saleNo, List<CartLine> cartLines, String cartId) {
+        return checkout(saleNo, cartLines, cartId, null);
+    }
+
+    /**
+     * Idempotent checkout: {@code checkoutToken} (may be null) identifies one attempt to sell a cart
+     * and is stored with the sale under a unique index. A retry with a token that was already
+     * committed returns the stored sale without touching stock; two concurrent attempts with the
+     * same token cannot both commit.
+     * <p>
+     * With the {@link InventoryEngine} enabled the sale is made in memory and written to the database
+     * shortly after; the returned sale is then not persisted yet.
+     * <p>
+     * A new sale publishes a {@link SaleCompletedEvent}.
+     */
+    public Sale checkout(String saleNo, List<CartLine> cartLines, String cartId, String checkoutToken) {
+        Optional<Sale> existing = findSaleByCheckoutToken(checkoutToken);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        Sale sale = sell(saleNo, cartLines, cartId, checkoutToken);
+        publishCompleted(sale, cartLines);
+        return sale;
+    }
+
+    private void publishCompleted(Sale sale, List<CartLine> cartLines) {
+        List<ReceiptData.Line> lines = new ArrayList<>(cartLines.size());
+        for (CartLine line : cartLines) {
+            lines.add(new ReceiptData.Line(
+                    line.product().getName(),
+                    line.quantity().toBigDecimal(),
+                    line.unitPrice().toBigDecimal(),
+                    line.unitPrice().times(line.quantity()).toBigDecimal()
+            ));
+        }
+        OffsetDateTime soldAt = sale.getDateCreated() != null ? sale.getDateCreated() : OffsetDateTime.now();
+        eventPublisher.publishEvent(new SaleCompletedEvent(new ReceiptData(sale.getSaleNo(), soldAt, lines, sale.getTotal())));
+    }
+
+    private Sale sell(String saleNo, List<CartLine> cartLines, String cartId, String checkoutToken) {
         if (cartLines == null || cartLines.isEmpty()) {
             throw new AppLevelValidationException(translations.t("pos.cart.empty"));
         }
 
-        // 1) Validate stock
+        if (inventoryEngine.isEnabled()) {
+            Sale sale = inventoryEngine.checkout(saleNo, cartLines, cartId, checkoutToken);
+            if (cartId != null) {
+                cartLines.stream()
+                        .map(line -> line.product().getId())
+                        .distinct()
+                        .forEach(productId -> reservationLedger.release(cartId, productId));
+            }
+            return sale;
+        }
+
+        // 1) Sum requested quantities per product, sorted by product id (lock order)
+        Map<Long, Quantity> requested = new TreeMap<>();
+        Map<Long, Product> products = new HashMap<>();
         for (CartLine line : cartLines) {
-            StockItem stock = stockRepo.findByProductId(line.product().getId())
-                    .orElseThrow(() -> new AppLevelValidationException(translations.t(
-                            "pos.stock.missing",
-                            line.product().getName()
-                    )));
+            Long productId = line.product().getId();
+            requested.merge(productId, line.quantity(), Quantity::plus);
+            products.putIfAbsent(productId, line.product());
+        }
+
+        // 2) Lines fully reserved by this cart need no check under lock; the conditional
+        //    decrements below still catch stock removed outside the ledger
+        Map<Long, Quantity> reservations = reservationLedger.reservedQuantities(cartId);
+        Set<Long> reserved = new HashSet<>();
+        for (Map.Entry<Long, Quantity> entry : requested.entrySet()) {
+            if (reservations.getOrDefault(entry.getKey(), Quantity.ZERO).compareTo(entry.getValue()) >= 0) {
+                reserved.add(entry.getKey());
+            }
+        }
+
+        // 3) Lock and validate the stock rows: unsharded rows exclusively, sharded rows shared,
+        //    so checkouts of a hot product only meet on its shard rows. A fully reserved cart only
+        //    share-locks its sharded rows, so a concurrent reshard waits; otherwise all rows are
+        //    locked here to keep the product id lock order.
+        Map<Long, StockItem> stocks = new HashMap<>();
+        if (reserved.size() == requested.size()) {
+            for (StockItem stock : stockRepo.lockShardedByProductIds(reserved)) {
+                stocks.put(stock.getProduct().getId(), stock);
+            }
+            for (StockItem stock : stockRepo.findByProductIdIn(reserved)) {
+                stocks.putIfAbsent(stock.getProduct().getId(), stock);
+            }
+        } else {
+            for (StockItem stock : stockRepo.lockByProductIds(requested.keySet())) {
+                stocks.put(stock.getProduct().getId(), stock);
+            }
+            for (StockItem stock : stockRepo.lockShardedByProductIds(requested.keySet())) {
+                stocks.put(stock.getProduct().getId(), stock);
+            }
+        }
 
-            if (stock.getQuantityOnHand().compareTo(line.quantity()) < 0) {
+        for (Map.Entry<Long, Quantity> entry : requested.entrySet()) {
+            Product product = products.get(entry.getKey());
+            StockItem stock = stocks.get(entry.getKey());
+            if (stock == null) {
+                // the shard count may have changed between the two lock statements
+                String key = stockRepo.existsByProductId(entry.getKey()) ? "pos.stock.reconfigured" : "pos.stock.missing";
+                throw new AppLevelValidationException(translations.t(key, product.getName()));
+            }
+
+            // reserved lines are covered; sharded stock is checked by the shard decrement below
+            if (stock.isSharded() || reserved.contains(entry.getKey())) {
+                continue;
+            }
+            Quantity available = Quantity.of(stock.getQuantityOnHand())
+                    .minus(reservationLedger.reservedByOthers(entry.getKey(), cartId));
+            if (available.compareTo(entry.getValue()) < 0) {
                 throw new AppLevelValidationException(translations.t(
                         "pos.stock.insufficient",
-                        line.product().getName(),
-                        stock.getQuantityOnHand(),
-                        line.quantity()
+                        product.getName(),
+                        available,
+                        entry.getValue()
                 ));
             }
         }
 
-        // 2) Create sale header
-        String saleNo = "S-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        // 4) Conditional decrements, still in lock order
+        OffsetDateTime now = OffsetDateTime.now();
+        for (Map.Entry<Long, Quantity> entry : requested.entrySet()) {
+            StockItem stock = stocks.get(entry.getKey());
+            BigDecimal quantity = entry.getValue().toBigDecimal();
+            boolean decremented = stock.isSharded()
+                    ? stockShardService.decrement(stock, quantity)
+                    : stockRepo.decrementIfAvailable(entry.getKey(), quantity, now) == 1;
+            if (!decremented) {
+                if (!stock.isSharded()) {
+                    // the bulk update bypasses the loaded item; report the quantity it saw
+                    entityManager.refresh(stock);
+                }
+                Product product = products.get(entry.getKey());
+                throw new AppLevelValidationException(translations.t(
+                        "pos.stock.insufficient",
+                        product.getName(),
+                        stockShardService.quantityOnHand(stock),
+                        entry.getValue()
+                ));
+            }
+        }
+
+        // 5) Build sale header, lines and movements; ids come from pooled sequences,
+        //    so the inserts below are sent as JDBC batches at flush time
         Sale sale = new Sale(saleNo);
-        sale = saleRepo.save(sale);
+        sale.setCheckoutToken(checkoutToken);
 
-        BigDecimal total = BigDecimal.ZERO;
+        long totalMinor = 0;
+        List<SaleLine> saleLines = new ArrayList<>(cartLines.size());
+        List<StockMovement> movements = new ArrayList<>(cartLines.size());
 
-        // 3) Create lines + update stock + movements
         for (CartLine line : cartLines) {
-            BigDecimal lineTotal = line.unitPrice().multiply(line.quantity());
-            total = total.add(lineTotal);
-
-            SaleLine sl = new SaleLine(sale, line.product(), line.quantity(), line.unitPrice());
-            sl.setLineTotal(lineTotal);
-            saleLineRepo.save(sl);
-
-            StockItem stock = stockRepo.findByProductId(line.product().getId()).orElseThrow();
-            stock.setQuantityOnHand(stock.getQuantityOnHand().subtract(line.quantity()));
-            stockRepo.save(stock);
-
-            movementRepo.save(new StockMovement(
-                    line.product(),
-                    StockMovementType.OUT,
-                    line.quantity(),
-                    "Sale " + saleNo
-            ));
+            long lineTotalMinor = Money.timesMinor(line.unitPrice().minorUnits(), line.quantity().milliUnits());
+            totalMinor = Math.addExact(totalMinor, lineTotalMinor);
+
+            // Money/Quantity become BigDecimal only here, at the entity boundary
+            BigDecimal quantity = line.quantity().toBigDecimal();
+            SaleLine sl = new SaleLine(sale, line.product(), quantity, line.unitPrice().toBigDecimal());
+            sl.setLineTotal(Money.ofMinor(lineTotalMinor).toBigDecimal());
+            saleLines.add(sl);
+
+            if (!deriveSaleMovements) {
+                StockMovement movement = new StockMovement(
+                        line.product(),
+                        StockMovementType.OUT,
+                        quantity,
+                        "Sale " + saleNo
+                );
+                movement.setSale(sale);
+                movements.add(movement);
+            }
         }
 
-        sale.setTotal(total);
-        return saleRepo.save(sale);
+        sale.setTotal(Money.ofMinor(totalMinor).toBigDecimal());
+        sale = saleRepo.save(sale);
+        saleLineRepo.saveAll(saleLines);
+        if (!movements.isEmpty()) {
+            movementRepo.saveAll(movements);
+        }
+        if (cartId != null) {
+            reservationLedger.consume(cartId, requested.keySet());
+        }
+        lowStockIndex.refreshAfterCommit(requested.keySet());
+        return sale;
     }
 }
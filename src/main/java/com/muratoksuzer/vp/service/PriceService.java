@@ -20,10 +20,12 @@ public class PriceService {
 
     private PriceRepository priceRepository;
     private ProductRepository productRepository;
+    private BarcodeIndex barcodeIndex;
 
-    public PriceService(PriceRepository priceRepository, ProductRepository productRepository) {
+    public PriceService(PriceRepository priceRepository, ProductRepository productRepository, BarcodeIndex barcodeIndex) {
         this.priceRepository = priceRepository;
         this.productRepository = productRepository;
+        this.barcodeIndex = barcodeIndex;
     }
 
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
@@ -70,6 +72,7 @@ public class PriceService {
         }
 
         priceRepository.save(entity);
+        barcodeIndex.refreshAfterCommit(productId);
     }
 
     public void activatePrice(Long priceId, Long productId) {
@@ -84,12 +87,19 @@ public class PriceService {
             }
             price.setActive(true);
             priceRepository.save(price);
+            barcodeIndex.refreshAfterCommit(productId);
         }
 
     }
 
     public void delete(Long priceId) {
-        priceRepository.deleteById(priceId);
+        Optional<Price> byId = priceRepository.findById(priceId);
+        if (byId.isPresent()) {
+            Long productId = byId.get().getProduct().getId();
+            priceRepository.delete(byId.get());
+            // the deleted price may have been the active one the index hands to the POS
+            barcodeIndex.refreshAfterCommit(productId);
+        }
     }
 
     private Price mapToEntity(PriceDto dto) {
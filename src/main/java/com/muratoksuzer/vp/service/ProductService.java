@@ -22,12 +22,16 @@ public class ProductService {
 
     private final ProductRepository productRepo;
     private final StockItemRepository stockItemRepo;
+    private final BarcodeIndex barcodeIndex;
+    private final LowStockIndex lowStockIndex;
     private TranslationService translationService;
 
 
-    public ProductService(ProductRepository productRepo, StockItemRepository stockItemRepo, TranslationService translationService) {
+    public ProductService(ProductRepository productRepo, StockItemRepository stockItemRepo, BarcodeIndex barcodeIndex, LowStockIndex lowStockIndex, TranslationService translationService) {
         this.productRepo = productRepo;
         this.stockItemRepo = stockItemRepo;
+        this.barcodeIndex = barcodeIndex;
+        this.lowStockIndex = lowStockIndex;
         this.translationService = translationService;
     }
 
@@ -58,6 +62,9 @@ public class ProductService {
         stockItemRepo.findByProductId(saved.getId())
                 .orElseGet(() -> stockItemRepo.save(new StockItem(saved)));
 
+        barcodeIndex.refreshAfterCommit(saved.getId());
+        // a new product's empty stock row is low; a renamed one shows its new name
+        lowStockIndex.refreshAfterCommit(List.of(saved.getId()));
         return saved;
     }
 
@@ -105,6 +112,8 @@ public class ProductService {
 
     public void delete(ProductDto p) {
         productRepo.deleteById(p.getId());
+        barcodeIndex.removeAfterCommit(p.getId());
+        lowStockIndex.refreshAfterCommit(List.of(p.getId()));
     }
 
 
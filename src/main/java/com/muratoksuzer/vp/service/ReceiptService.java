@@ -0,0 +1,166 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.ReceiptData;
+import com.muratoksuzer.vp.dto.ReceiptStats;
+import com.muratoksuzer.vp.entity.domain.Sale;
+import com.muratoksuzer.vp.entity.domain.SaleLine;
+import com.muratoksuzer.vp.receipt.ReceiptTemplate;
+import com.muratoksuzer.vp.repository.SaleLineRepository;
+import com.muratoksuzer.vp.repository.SaleRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receipt pipeline: once a sale's transaction commits, its ESC/POS and PDF receipts are rendered on
+ * a virtual thread, never inside the checkout or on a UI thread, and kept in an LRU cache by sale
+ * number for printing and reprints. A receipt that is not cached (evicted, from before a restart or
+ * still being rendered) is rendered from the stored sale on request.
+ * <p>
+ * Rendered byte arrays are never modified, so they are handed out without copying.
+ */
+@Service
+public class ReceiptService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptService.class);
+
+    public record RenderedReceipt(byte[] escPos, byte[] pdf) {}
+
+    private final SaleRepository saleRepository;
+    private final SaleLineRepository saleLineRepository;
+    private final ReceiptTemplate template;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, RenderedReceipt> cache;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+    private final LongAdder committedRenders = new LongAdder();
+    private final LongAdder commitLagNanos = new LongAdder();
+
+    public ReceiptService(SaleRepository saleRepository,
+                          SaleLineRepository saleLineRepository,
+                          @Value("${pos.receipts.store-name:myStock}") String storeName,
+                          @Value("${pos.receipts.header-lines:}") List<String> headerLines,
+                          @Value("${pos.receipts.footer-lines:}") List<String> footerLines,
+                          @Value("${pos.receipts.width:42}") int width,
+                          @Value("${pos.receipts.charset:IBM857}") String charset,
+                          @Value("${pos.receipts.code-page:13}") int codePage,
+                          @Value("${pos.receipts.cache-size:2000}") int cacheSize) {
+        this.saleRepository = saleRepository;
+        this.saleLineRepository = saleLineRepository;
+        this.template = new ReceiptTemplate(storeName, headerLines, footerLines, width, Charset.forName(charset), codePage);
+        this.cache = new LinkedHashMap<>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RenderedReceipt> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSaleCompleted(SaleCompletedEvent event) {
+        long committedAt = System.nanoTime();
+        pending.incrementAndGet();
+        executor.submit(() -> {
+            try {
+                render(event.receipt());
+                committedRenders.increment();
+                commitLagNanos.add(System.nanoTime() - committedAt);
+            } catch (RuntimeException e) {
+                failed.increment();
+                logger.warn("Could not render receipt of sale {}", event.receipt().saleNo(), e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Receipt of the sale, or empty if there is no stored sale with this number (yet).
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Optional<RenderedReceipt> findReceipt(String saleNo) {
+        RenderedReceipt receipt;
+        synchronized (cache) {
+            receipt = cache.get(saleNo);
+        }
+        if (receipt != null) {
+            cacheHits.increment();
+            return Optional.of(receipt);
+        }
+        cacheMisses.increment();
+        return saleRepository.findBySaleNo(saleNo).map(sale -> render(toReceiptData(sale)));
+    }
+
+    public ReceiptStats getStats() {
+        long count = rendered.sum();
+        long committed = committedRenders.sum();
+        int cached;
+        synchronized (cache) {
+            cached = cache.size();
+        }
+        return new ReceiptStats(
+                count,
+                failed.sum(),
+                pending.get(),
+                cached,
+                cacheHits.sum(),
+                cacheMisses.sum(),
+                count == 0 ? 0 : renderNanos.sum() / 1000.0 / count,
+                maxRenderNanos.get() / 1000,
+                committed == 0 ? 0 : commitLagNanos.sum() / 1000.0 / committed
+        );
+    }
+
+    private RenderedReceipt render(ReceiptData data) {
+        long start = System.nanoTime();
+        RenderedReceipt receipt = new RenderedReceipt(template.renderEscPos(data), template.renderPdf(data));
+        long elapsed = System.nanoTime() - start;
+        rendered.increment();
+        renderNanos.add(elapsed);
+        maxRenderNanos.accumulateAndGet(elapsed, Math::max);
+        synchronized (cache) {
+            cache.put(data.saleNo(), receipt);
+        }
+        return receipt;
+    }
+
+    private ReceiptData toReceiptData(Sale sale) {
+        List<ReceiptData.Line> lines = saleLineRepository.findBySaleIdWithProduct(sale.getId()).stream()
+                .map(ReceiptService::toReceiptLine)
+                .toList();
+        return new ReceiptData(sale.getSaleNo(), sale.getDateCreated(), lines, sale.getTotal());
+    }
+
+    private static ReceiptData.Line toReceiptLine(SaleLine line) {
+        return new ReceiptData.Line(line.getProduct().getName(), line.getQuantity(), line.getUnitPrice(), line.getLineTotal());
+    }
+}
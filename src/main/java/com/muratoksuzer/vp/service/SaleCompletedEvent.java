@@ -0,0 +1,9 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.ReceiptData;
+
+/**
+ * Published by {@link PosService} for every new sale; listeners that need the sale to be durable
+ * listen after commit.
+ */
+public record SaleCompletedEvent(ReceiptData receipt) {}
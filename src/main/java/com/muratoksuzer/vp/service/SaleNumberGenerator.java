@@ -0,0 +1,124 @@
+package com.muratoksuzer.vp.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out sale numbers like {@code S-01-261018-000123}: node id, business day and a running number.
+ * <p>
+ * Running numbers come from the {@code sale_no_seq} database sequence, which is incremented by
+ * {@link #BLOCK_SIZE}; each nextval reserves a whole block that this node then hands out in memory
+ * with a single CAS. The running number alone is unique across all nodes, so the node and day parts
+ * are only for readability and never cause collisions. Unused numbers of a block are lost on restart.
+ */
+@Service
+public class SaleNumberGenerator {
+
+    static final int BLOCK_SIZE = 100;
+
+    private static final DateTimeFormatter DAY_FMT = DateTimeFormatter.ofPattern("yyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    // the business day of the day part; shared with stock snapshots and movement partitions
+    private final ZoneId zone;
+
+    private final AtomicLong provisionalCounter = new AtomicLong();
+
+    private volatile Block block = new Block(0, 0);
+    private volatile DayPrefix dayPrefix = new DayPrefix(LocalDate.MIN, "");
+
+    public SaleNumberGenerator(JdbcTemplate jdbcTemplate,
+                              @Value("${pos.node-id:01}") String nodeId,
+                              @Value("${pos.business-zone:Europe/Istanbul}") ZoneId zone) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = nodeId;
+        this.zone = zone;
+    }
+
+    @PostConstruct
+    void createSequence() {
+        jdbcTemplate.execute("create sequence if not exists sale_no_seq start with 1 increment by " + BLOCK_SIZE);
+    }
+
+    public String next() {
+        return prefix() + String.format("%06d", nextNumber());
+    }
+
+    /**
+     * Like {@link #next()} but never touches the database; returns null when the current block is used up.
+     */
+    public String nextIfAvailable() {
+        Block current = block;
+        long number = current.next.getAndIncrement();
+        return number < current.end ? prefix() + String.format("%06d", number) : null;
+    }
+
+    /**
+     * Reserves a fresh block if the current one is used up.
+     */
+    public void prefetch() {
+        Block current = block;
+        if (current.next.get() >= current.end) {
+            refill(current);
+        }
+    }
+
+    /**
+     * Number for a sale taken while the database is unreachable, e.g. {@code P-01-MGX2K1QZ-7}.
+     * Unique per node (timestamp plus in-memory counter) and distinguishable from regular numbers.
+     */
+    public String provisional() {
+        return "P-" + nodeId + "-" + Long.toString(System.currentTimeMillis(), 36).toUpperCase()
+                + "-" + (provisionalCounter.incrementAndGet() % 1000);
+    }
+
+    private long nextNumber() {
+        while (true) {
+            Block current = block;
+            long number = current.next.getAndIncrement();
+            if (number < current.end) {
+                return number;
+            }
+            refill(current);
+        }
+    }
+
+    private synchronized void refill(Block exhausted) {
+        // another thread may have refilled while we waited for the monitor
+        if (block != exhausted) {
+            return;
+        }
+        Long start = jdbcTemplate.queryForObject("select nextval('sale_no_seq')", Long.class);
+        block = new Block(start, start + BLOCK_SIZE);
+    }
+
+    private String prefix() {
+        LocalDate today = LocalDate.now(zone);
+        DayPrefix current = dayPrefix;
+        if (!current.day().equals(today)) {
+            current = new DayPrefix(today, "S-" + nodeId + "-" + today.format(DAY_FMT) + "-");
+            dayPrefix = current;
+        }
+        return current.prefix();
+    }
+
+    private record DayPrefix(LocalDate day, String prefix) {}
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
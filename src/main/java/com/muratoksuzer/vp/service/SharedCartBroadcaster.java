@@ -0,0 +1,73 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.SharedScan;
+import com.vaadin.flow.shared.Registration;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * In-process channel from scanner devices to POS terminals: a terminal registers under a short
+ * pairing code and scanner UIs publish scans to that code. Registration and delivery are lock-free
+ * (a concurrent map lookup and a direct call); listeners hand the scans to their UI with
+ * {@code UI.access}, so the terminal is updated over push without any polling.
+ * <p>
+ * Codes are per JVM: scanner and terminal have to be served by the same node.
+ */
+@Service
+public class SharedCartBroadcaster {
+
+    private static final String CODE_ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+    private static final int CODE_LENGTH = 6;
+
+    private final Map<String, Consumer<List<SharedScan>>> terminals = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a terminal under a new, unused pairing code. Remove the registration when the
+     * terminal's view is detached.
+     */
+    public Registration register(Consumer<List<SharedScan>> terminal, Consumer<String> codeAssigned) {
+        while (true) {
+            String code = newCode();
+            if (terminals.putIfAbsent(code, terminal) == null) {
+                codeAssigned.accept(code);
+                return () -> terminals.remove(code, terminal);
+            }
+        }
+    }
+
+    /**
+     * Sends the scans to the terminal paired under {@code code}. Returns false if no terminal uses it.
+     */
+    public boolean publish(String code, List<SharedScan> scans) {
+        Consumer<List<SharedScan>> terminal = code == null ? null : terminals.get(normalize(code));
+        if (terminal == null) {
+            return false;
+        }
+        if (!scans.isEmpty()) {
+            terminal.accept(List.copyOf(scans));
+        }
+        return true;
+    }
+
+    public boolean isConnected(String code) {
+        return code != null && terminals.containsKey(normalize(code));
+    }
+
+    private static String normalize(String code) {
+        return code.trim().toUpperCase();
+    }
+
+    private static String newCode() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder code = new StringBuilder(CODE_LENGTH);
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            code.append(CODE_ALPHABET.charAt(random.nextInt(CODE_ALPHABET.length())));
+        }
+        return code.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.muratoksuzer.vp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background task that keeps the {@code stock_movement} partitions ahead of time and retires old
+ * months, see {@link StockMovementPartitionService#maintain()}. Not created when
+ * {@code pos.movement-partitions.check-interval-ms} is 0 or less.
+ */
+@Component
+@ConditionalOnExpression("${pos.movement-partitions.check-interval-ms:3600000} > 0")
+public class StockMovementPartitionMaintainer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockMovementPartitionMaintainer.class);
+
+    private final StockMovementPartitionService partitionService;
+
+    public StockMovementPartitionMaintainer(StockMovementPartitionService partitionService) {
+        this.partitionService = partitionService;
+    }
+
+    @Scheduled(initialDelayString = "${pos.movement-partitions.check-interval-ms:3600000}",
+            fixedDelayString = "${pos.movement-partitions.check-interval-ms:3600000}")
+    void maintain() {
+        try {
+            partitionService.maintain();
+        } catch (RuntimeException e) {
+            logger.warn("Stock movement partition maintenance failed, retrying", e);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.muratoksuzer.vp.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps {@code stock_movement} range partitioned by {@code date_created}, one partition per month of
+ * {@code pos.business-zone}, so listing a month reads one partition and old months are removed
+ * without deletes.
+ * <p>
+ * The plain table left by Hibernate is only converted on request, as a maintenance step
+ * ({@code --pos.movement-partitions.convert=true}, see {@link com.muratoksuzer.vp.init.MovementPartitionRunner})
+ * with the other nodes stopped: its rows are copied into a partitioned table with the same columns,
+ * indexes and foreign keys, and the primary key becomes {@code (id, date_created)} as PostgreSQL
+ * requires. Writes to the table wait until the copy is done.
+ * <p>
+ * Once partitioned, partitions are created {@code months-ahead} in advance, on startup and then by
+ * {@link StockMovementPartitionMaintainer} every {@code check-interval-ms}. A movement dated outside
+ * them goes to {@code stock_movement_default} instead of failing, and is moved into its month's
+ * partition when that is created.
+ * <p>
+ * With {@code retention-months} set, older months are retired: their movements are added up per
+ * product into {@code stock_movement_summary}, then the partition is detached and kept as
+ * {@code stock_movement_archive_<yyyyMM>}, or dropped with {@code keep-detached=false}. Derived sale
+ * movements ({@code pos.derive-sale-movements}) are not stored here and stay in the sales.
+ * <p>
+ * Partition changes take a transaction-level advisory lock, so only one node makes them at a time.
+ */
+@Service
+public class StockMovementPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockMovementPartitionService.class);
+
+    private static final String PARTITION_PREFIX = "stock_movement_p";
+    private static final String ARCHIVE_PREFIX = "stock_movement_archive_";
+    private static final String DEFAULT_PARTITION = "stock_movement_default";
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("uuuuMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ssXXX");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean keepDetached;
+
+    private volatile boolean partitioned;
+
+    // the transaction manager is built on the entity manager factory, so Hibernate has created the table by now
+    public StockMovementPartitionService(JdbcTemplate jdbcTemplate,
+                                         PlatformTransactionManager transactionManager,
+                                         @Value("${pos.business-zone:Europe/Istanbul}") ZoneId zone,
+                                         @Value("${pos.movement-partitions.months-ahead:3}") int monthsAhead,
+                                         @Value("${pos.movement-partitions.retention-months:0}") int retentionMonths,
+                                         @Value("${pos.movement-partitions.keep-detached:true}") boolean keepDetached) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.zone = zone;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.keepDetached = keepDetached;
+    }
+
+    @PostConstruct
+    void start() {
+        jdbcTemplate.execute("""
+                create table if not exists stock_movement_summary (
+                    month date not null,
+                    product_id bigint not null,
+                    quantity_in numeric(19, 3) not null,
+                    quantity_out numeric(19, 3) not null,
+                    movements integer not null,
+                    primary key (month, product_id)
+                )
+                """);
+        partitioned = isPartitionedTable();
+        if (partitioned) {
+            createPartitionsAhead();
+        }
+    }
+
+    /**
+     * Creates the partitions ahead and retires old months; does nothing while the table is not partitioned.
+     */
+    public void maintain() {
+        if (partitioned) {
+            createPartitionsAhead();
+            retireOldPartitions();
+        }
+    }
+
+    /**
+     * Converts a plain {@code stock_movement} into the partitioned layout. Meant to run as a maintenance
+     * step with the other nodes stopped; writers to the table wait until it commits. Returns false if
+     * the table was partitioned already.
+     */
+    public synchronized boolean convertToPartitioned() {
+        Boolean converted = transactionTemplate.execute(status -> {
+            lock();
+            if (isPartitionedTable()) {
+                return false;
+            }
+            convert();
+            return true;
+        });
+        partitioned = isPartitionedTable();
+        if (partitioned) {
+            createPartitionsAhead();
+        }
+        return Boolean.TRUE.equals(converted);
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Months that have a partition, newest first, up to the current month.
+     */
+    public List<YearMonth> findMonths() {
+        YearMonth current = YearMonth.now(zone);
+        return partitionMonths().stream()
+                .filter(month -> !month.isAfter(current))
+                .sorted((a, b) -> b.compareTo(a))
+                .toList();
+    }
+
+    /**
+     * Creates the default partition and the partitions of the current month and the next
+     * {@code months-ahead} months that do not exist yet.
+     */
+    public void createPartitionsAhead() {
+        YearMonth current = YearMonth.now(zone);
+        transactionTemplate.executeWithoutResult(status -> {
+            lock();
+            jdbcTemplate.execute("create table if not exists " + DEFAULT_PARTITION + " partition of stock_movement default");
+            for (int i = 0; i <= monthsAhead; i++) {
+                addMonth(current.plusMonths(i));
+            }
+        });
+    }
+
+    /**
+     * Summarizes, detaches and drops (or archives) the partitions of months before the retention window.
+     * Returns the number of months retired.
+     */
+    public int retireOldPartitions() {
+        if (retentionMonths <= 0) {
+            return 0;
+        }
+        YearMonth oldestKept = YearMonth.now(zone).minusMonths(retentionMonths);
+        int retired = 0;
+        for (YearMonth month : partitionMonths().stream().sorted().toList()) {
+            if (!month.isBefore(oldestKept)) {
+                break;
+            }
+            Boolean done = transactionTemplate.execute(status -> {
+                lock();
+                // another node may have retired it meanwhile
+                if (!partitionMonths().contains(month)) {
+                    return false;
+                }
+                retire(month);
+                return true;
+            });
+            if (Boolean.TRUE.equals(done)) {
+                retired++;
+            }
+        }
+        return retired;
+    }
+
+    private void retire(YearMonth month) {
+        long start = System.currentTimeMillis();
+        String partition = partitionName(month);
+        int products = jdbcTemplate.update("""
+                insert into stock_movement_summary (month, product_id, quantity_in, quantity_out, movements)
+                select ?, m.product_id,
+                       coalesce(sum(m.quantity) filter (where m.type = 'IN'), 0),
+                       coalesce(sum(m.quantity) filter (where m.type = 'OUT'), 0),
+                       count(*)
+                from %s m
+                group by m.product_id
+                on conflict (month, product_id) do update
+                set quantity_in = excluded.quantity_in,
+                    quantity_out = excluded.quantity_out,
+                    movements = excluded.movements
+                """.formatted(partition), month.atDay(1));
+        jdbcTemplate.execute("alter table stock_movement detach partition " + partition);
+        if (keepDetached) {
+            jdbcTemplate.execute("alter table " + partition + " rename to " + ARCHIVE_PREFIX + month.format(MONTH_SUFFIX));
+        } else {
+            jdbcTemplate.execute("drop table " + partition);
+        }
+        logger.info("Stock movements of {} summarized for {} products and {} in {} ms", month, products,
+                keepDetached ? "archived" : "dropped", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Copies the plain table into a partitioned one and swaps the two.
+     */
+    private void convert() {
+        long start = System.currentTimeMillis();
+        // reads go on; a movement written during the copy would be lost with the old table
+        jdbcTemplate.execute("lock table stock_movement in exclusive mode");
+        OffsetDateTime first = jdbcTemplate.queryForObject("select min(date_created) from stock_movement", OffsetDateTime.class);
+        OffsetDateTime last = jdbcTemplate.queryForObject("select max(date_created) from stock_movement", OffsetDateTime.class);
+        YearMonth current = YearMonth.now(zone);
+        YearMonth from = first != null && monthOf(first).isBefore(current) ? monthOf(first) : current;
+        YearMonth to = current.plusMonths(monthsAhead);
+        if (last != null && monthOf(last).isAfter(to)) {
+            to = monthOf(last);
+        }
+
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList("""
+                select conname, pg_get_constraintdef(oid) as definition
+                from pg_constraint
+                where conrelid = 'stock_movement'::regclass and contype = 'f'
+                """);
+        // the definitions name the table, which has the same name once the copy is renamed
+        List<String> indexes = jdbcTemplate.queryForList("""
+                select pg_get_indexdef(indexrelid)
+                from pg_index
+                where indrelid = 'stock_movement'::regclass and not indisprimary
+                """, String.class);
+
+        jdbcTemplate.execute("""
+                create table stock_movement_partitioned (like stock_movement including defaults)
+                partition by range (date_created)
+                """);
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            createPartition("stock_movement_partitioned", month);
+        }
+        jdbcTemplate.execute("create table " + DEFAULT_PARTITION + " partition of stock_movement_partitioned default");
+        int rows = jdbcTemplate.update("insert into stock_movement_partitioned select * from stock_movement");
+
+        // index and constraint names are unique per schema, so they are created once the old table is gone
+        jdbcTemplate.execute("drop table stock_movement");
+        jdbcTemplate.execute("alter table stock_movement_partitioned rename to stock_movement");
+        jdbcTemplate.execute("alter table stock_movement add constraint stock_movement_pkey primary key (id, date_created)");
+        indexes.forEach(jdbcTemplate::execute);
+        for (Map<String, Object> foreignKey : foreignKeys) {
+            jdbcTemplate.execute("alter table stock_movement add constraint " + foreignKey.get("conname")
+                    + " " + foreignKey.get("definition"));
+        }
+        logger.info("stock_movement partitioned by month: {} rows moved into {} to {} in {} ms",
+                rows, from, to, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds the month's partition unless it exists. Movements of the month in the default partition
+     * are moved into it; PostgreSQL refuses the new partition while they are there.
+     */
+    private void addMonth(YearMonth month) {
+        String partition = partitionName(month);
+        if (jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, partition)) {
+            return;
+        }
+        String range = "date_created >= '%s' and date_created < '%s'".formatted(
+                BOUND.format(monthStart(month)), BOUND.format(monthStart(month.plusMonths(1))));
+        boolean misplaced = jdbcTemplate.queryForObject(
+                "select exists (select 1 from " + DEFAULT_PARTITION + " where " + range + ")", Boolean.class);
+        if (misplaced) {
+            jdbcTemplate.execute("create temporary table stock_movement_moved as select * from " + DEFAULT_PARTITION + " where " + range);
+            jdbcTemplate.execute("delete from " + DEFAULT_PARTITION + " where " + range);
+        }
+        createPartition("stock_movement", month);
+        if (misplaced) {
+            int rows = jdbcTemplate.update("insert into stock_movement select * from stock_movement_moved");
+            jdbcTemplate.execute("drop table stock_movement_moved");
+            logger.info("Moved {} stock movements of {} out of the default partition", rows, month);
+        }
+    }
+
+    private void createPartition(String parent, YearMonth month) {
+        jdbcTemplate.execute("create table %s partition of %s for values from ('%s') to ('%s')".formatted(
+                partitionName(month), parent,
+                BOUND.format(monthStart(month)), BOUND.format(monthStart(month.plusMonths(1)))));
+    }
+
+    /**
+     * First instant of the month in the partitioning zone.
+     */
+    public OffsetDateTime monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay(zone).toOffsetDateTime();
+    }
+
+    private YearMonth monthOf(OffsetDateTime time) {
+        return YearMonth.from(time.atZoneSameInstant(zone));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(MONTH_SUFFIX);
+    }
+
+    private List<YearMonth> partitionMonths() {
+        List<String> names = jdbcTemplate.queryForList("""
+                select c.relname
+                from pg_inherits i
+                join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = 'stock_movement'::regclass
+                """, String.class);
+        List<YearMonth> months = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (!name.startsWith(PARTITION_PREFIX)) {
+                continue;
+            }
+            try {
+                months.add(YearMonth.parse(name.substring(PARTITION_PREFIX.length()), MONTH_SUFFIX));
+            } catch (DateTimeParseException e) {
+                // a partition attached by hand; left alone
+            }
+        }
+        return months;
+    }
+
+    private boolean isPartitionedTable() {
+        String kind = jdbcTemplate.queryForObject(
+                "select relkind::text from pg_class where oid = 'stock_movement'::regclass", String.class);
+        return "p".equals(kind);
+    }
+
+    private void lock() {
+        jdbcTemplate.queryForObject("select pg_advisory_xact_lock(hashtext('stock_movement_partitions'))::text", String.class);
+    }
+}
@@ -1,35 +1,92 @@
 package com.muratoksuzer.vp.service;
 
+import com.muratoksuzer.vp.dto.MovementCursor;
+import com.muratoksuzer.vp.dto.MovementWindow;
 import com.muratoksuzer.vp.dto.ProductDto;
 import com.muratoksuzer.vp.dto.StockMovementDto;
 import com.muratoksuzer.vp.entity.domain.Product;
 import com.muratoksuzer.vp.entity.domain.StockMovement;
 import com.muratoksuzer.vp.repository.StockMovementRepository;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.IntStream;
+
 @Transactional(rollbackFor = Exception.class)
 @Service
 public class StockMovementService {
 
+    // months offered when stock_movement is not partitioned
+    private static final int UNPARTITIONED_MONTHS = 12;
+
     private StockMovementRepository stockMovementRepository;
+    private final StockMovementPartitionService partitionService;
+    private final boolean deriveSaleMovements;
 
-    public StockMovementService(StockMovementRepository stockMovementRepository) {
+    public StockMovementService(StockMovementRepository stockMovementRepository,
+                                StockMovementPartitionService partitionService,
+                                @Value("${pos.derive-sale-movements:false}") boolean deriveSaleMovements) {
         this.stockMovementRepository = stockMovementRepository;
+        this.partitionService = partitionService;
+        this.deriveSaleMovements = deriveSaleMovements;
+    }
+
+    /**
+     * True when checkout does not store sale movements, so lists must use {@link #findWindow}.
+     */
+    public boolean isDerivingSaleMovements() {
+        return deriveSaleMovements;
     }
 
+    /**
+     * Keyset page over manual movements plus sale lines shown as OUT movements.
+     */
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
-    public Page<StockMovementDto> findPaginated(Pageable pageable, String searchTerm) {
-        if (StringUtils.isBlank(searchTerm)) {
-            return mapToDto(stockMovementRepository.findAll(pageable));
+    public MovementWindow findWindow(MovementCursor cursor, int pageSize, String searchTerm) {
+        List<StockMovementDto> rows = stockMovementRepository.findUnifiedAfter(cursor, searchTerm, pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new MovementWindow(rows, null);
         }
+        List<StockMovementDto> items = rows.subList(0, pageSize);
+        return new MovementWindow(items, MovementCursor.after(items.get(pageSize - 1)));
+    }
+
+    public int linkLegacySaleMovements() {
+        return stockMovementRepository.linkLegacySaleMovements();
+    }
 
-        return mapToDto(stockMovementRepository.findByProductNameContainingIgnoreCaseOrProductBarcodeContaining(searchTerm, searchTerm, pageable));
+    /**
+     * Months the movement list can be browsed by, newest first.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<YearMonth> findMonths() {
+        if (partitionService.isPartitioned()) {
+            return partitionService.findMonths();
+        }
+        YearMonth current = YearMonth.now(partitionService.getZone());
+        return IntStream.range(0, UNPARTITIONED_MONTHS).mapToObj(current::minusMonths).toList();
+    }
+
+    /**
+     * Movements of one month, newest first. The date range limits the page and its count to the month's partition.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Page<StockMovementDto> findPaginated(YearMonth month, Pageable pageable, String searchTerm) {
+        OffsetDateTime from = partitionService.monthStart(month);
+        OffsetDateTime to = partitionService.monthStart(month.plusMonths(1));
+        if (StringUtils.isBlank(searchTerm)) {
+            return mapToDto(stockMovementRepository.findByDateCreatedGreaterThanEqualAndDateCreatedLessThanOrderByDateCreatedDescIdDesc(from, to, pageable));
+        }
 
+        return mapToDto(stockMovementRepository.searchBetween(from, to, searchTerm, pageable));
     }
 
     private Page<StockMovementDto> mapToDto(Page<StockMovement> page) {
@@ -0,0 +1,349 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.engine.InventoryEngine;
+import com.muratoksuzer.vp.entity.domain.StockReservation;
+import com.muratoksuzer.vp.repository.StockItemRepository;
+import com.muratoksuzer.vp.repository.StockReservationRepository;
+import com.muratoksuzer.vp.value.Quantity;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds stock for open POS carts, so a cart line only exists if its quantity was available when it
+ * was added.
+ * <p>
+ * Reservations live in memory, grouped per product and guarded by one of {@value #STRIPES} lock
+ * stripes chosen by product id. A scan reads the stock on hand only when it reserves more and writes
+ * nothing; changed carts are written behind to {@link StockReservation} by {@link #flush()}, which
+ * {@link StockReservationSweeper} calls on every sweep. A cart belongs to one POS view and does not
+ * outlive the JVM, so on startup the node deletes its rows instead of reloading them.
+ * <p>
+ * A cart's reservations expire {@code pos.reservations.ttl-minutes} after its last change; the
+ * sweeper drops expired carts. Available stock is the stock on hand minus what other carts hold.
+ * The ledger is per JVM: other nodes' carts are not seen.
+ */
+@Transactional(rollbackFor = Exception.class)
+@Service
+public class StockReservationLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationLedger.class);
+
+    private static final int STRIPES = 64;
+
+    private static final class ProductReservations {
+        // guarded by the product's stripe lock
+        private final Map<String, Long> milliByCart = new HashMap<>();
+        private long totalMilli;
+    }
+
+    private static final class CartReservations {
+        private final Set<Long> productIds = ConcurrentHashMap.newKeySet();
+        private volatile long expiresAtMillis;
+    }
+
+    private final StockReservationRepository reservationRepository;
+    private final StockItemRepository stockRepo;
+    private final StockShardService stockShardService;
+    private final JdbcTemplate jdbcTemplate;
+    // the engine itself depends on the ledger
+    private final ObjectProvider<InventoryEngine> inventoryEngine;
+    private final Duration ttl;
+    private final String nodeId;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<Long, ProductReservations> byProduct = new ConcurrentHashMap<>();
+    private final Map<String, CartReservations> byCart = new ConcurrentHashMap<>();
+    // carts changed since the last flush
+    private final Set<String> dirtyCarts = ConcurrentHashMap.newKeySet();
+
+    public StockReservationLedger(StockReservationRepository reservationRepository,
+                                  StockItemRepository stockRepo,
+                                  StockShardService stockShardService,
+                                  JdbcTemplate jdbcTemplate,
+                                  ObjectProvider<InventoryEngine> inventoryEngine,
+                                  @Value("${pos.reservations.ttl-minutes:30}") long ttlMinutes,
+                                  @Value("${pos.node-id:01}") String nodeId) {
+        this.reservationRepository = reservationRepository;
+        this.stockRepo = stockRepo;
+        this.stockShardService = stockShardService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.inventoryEngine = inventoryEngine;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.nodeId = nodeId;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        // the views that owned these carts went away with the previous JVM
+        int deleted = reservationRepository.deleteByNodeId(nodeId);
+        if (deleted > 0) {
+            logger.info("Deleted {} stock reservations of carts from before the restart", deleted);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Could not write stock reservations on shutdown", e);
+        }
+    }
+
+    /**
+     * Sets the cart's reservation for the product to {@code quantity}. Increases only succeed if the
+     * stock on hand minus other carts' reservations covers the new quantity; decreases always do.
+     * Returns false, changing nothing, if there is not enough stock.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public boolean reserve(String cartId, Long productId, Quantity quantity) {
+        if (!quantity.isPositive()) {
+            release(cartId, productId);
+            return true;
+        }
+
+        // only an increase needs the stock on hand; it is read outside the stripe lock
+        Long onHand = quantity.milliUnits() > currentMilli(cartId, productId) ? onHandMilli(productId) : null;
+
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductReservations reservations = byProduct.computeIfAbsent(productId, id -> new ProductReservations());
+            long previous = reservations.milliByCart.getOrDefault(cartId, 0L);
+            long others = reservations.totalMilli - previous;
+            if (quantity.milliUnits() > previous) {
+                long stock = onHand != null ? onHand : onHandMilli(productId);
+                if (stock - others < quantity.milliUnits()) {
+                    return false;
+                }
+            }
+            reservations.milliByCart.put(cartId, quantity.milliUnits());
+            reservations.totalMilli += quantity.milliUnits() - previous;
+        } finally {
+            lock.unlock();
+        }
+
+        CartReservations cart = byCart.computeIfAbsent(cartId, id -> new CartReservations());
+        cart.productIds.add(productId);
+        // any change keeps the whole cart alive
+        cart.expiresAtMillis = System.currentTimeMillis() + ttl.toMillis();
+        dirtyCarts.add(cartId);
+        return true;
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public void release(String cartId, Long productId) {
+        setMemory(cartId, productId, 0);
+        dirtyCarts.add(cartId);
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public void releaseCart(String cartId) {
+        releaseMemory(cartId);
+        dirtyCarts.add(cartId);
+    }
+
+    /**
+     * Drops the cart's reservations for the products once the current (checkout) transaction commits;
+     * until then they keep the sold stock held.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void consume(String cartId, Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<Long> consumed = List.copyOf(productIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                consumed.forEach(productId -> setMemory(cartId, productId, 0));
+                dirtyCarts.add(cartId);
+            }
+        });
+    }
+
+    /**
+     * Replaces the rows of the carts changed since the last flush with their current reservations,
+     * in one transaction. If it fails the carts stay marked for the next flush.
+     */
+    public void flush() {
+        if (dirtyCarts.isEmpty()) {
+            return;
+        }
+        List<String> carts = List.copyOf(dirtyCarts);
+        dirtyCarts.removeAll(carts);
+        try {
+            List<Object[]> rows = new ArrayList<>();
+            for (String cartId : carts) {
+                CartReservations cart = byCart.get(cartId);
+                if (cart == null) {
+                    continue;
+                }
+                OffsetDateTime expiresAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(cart.expiresAtMillis), ZoneOffset.UTC);
+                reservedQuantities(cartId).forEach((productId, quantity) ->
+                        rows.add(new Object[]{cartId, productId, quantity.toBigDecimal(), expiresAt, nodeId}));
+            }
+            jdbcTemplate.update("delete from stock_reservation where cart_id = any (?)",
+                    (Object) carts.toArray(String[]::new));
+            jdbcTemplate.batchUpdate("""
+                    insert into stock_reservation (cart_id, product_id, quantity, expires_at, node_id, date_created, last_updated)
+                    values (?, ?, ?, ?, ?, now(), now())
+                    """, rows);
+        } catch (RuntimeException e) {
+            dirtyCarts.addAll(carts);
+            throw e;
+        }
+    }
+
+    /**
+     * Current reservations of the cart by product id; empty if the cart has none or has expired.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Map<Long, Quantity> reservedQuantities(String cartId) {
+        Map<Long, Quantity> quantities = new HashMap<>();
+        CartReservations cart = cartId == null ? null : byCart.get(cartId);
+        if (cart == null || cart.expiresAtMillis <= System.currentTimeMillis()) {
+            return quantities;
+        }
+        for (Long productId : cart.productIds) {
+            ReentrantLock lock = stripe(productId);
+            lock.lock();
+            try {
+                ProductReservations reservations = byProduct.get(productId);
+                Long milli = reservations == null ? null : reservations.milliByCart.get(cartId);
+                if (milli != null) {
+                    quantities.put(productId, Quantity.ofMilli(milli));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return quantities;
+    }
+
+    /**
+     * Quantity of the product held by carts other than {@code cartId} (which may be null).
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Quantity reservedByOthers(Long productId, String cartId) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductReservations reservations = byProduct.get(productId);
+            if (reservations == null) {
+                return Quantity.ZERO;
+            }
+            long own = cartId == null ? 0 : reservations.milliByCart.getOrDefault(cartId, 0L);
+            return Quantity.ofMilli(reservations.totalMilli - own);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stock the cart could still reserve for the product: on hand minus other carts' reservations.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Quantity available(String cartId, Long productId) {
+        long available = onHandMilli(productId) - reservedByOthers(productId, cartId).milliUnits();
+        return Quantity.ofMilli(Math.max(0, available));
+    }
+
+    /**
+     * Drops all carts whose time to live has passed. Returns the number of expired carts.
+     */
+    public int expire() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Map.Entry<String, CartReservations> entry : byCart.entrySet()) {
+            if (entry.getValue().expiresAtMillis <= now) {
+                releaseMemory(entry.getKey());
+                expired++;
+            }
+        }
+        reservationRepository.deleteExpired(OffsetDateTime.now());
+        return expired;
+    }
+
+    private long currentMilli(String cartId, Long productId) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductReservations reservations = byProduct.get(productId);
+            return reservations == null ? 0 : reservations.milliByCart.getOrDefault(cartId, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long onHandMilli(Long productId) {
+        InventoryEngine engine = inventoryEngine.getObject();
+        if (engine.isEnabled()) {
+            return engine.quantities(List.of(productId)).getOrDefault(productId, Quantity.ZERO).milliUnits();
+        }
+        return stockRepo.findByProductId(productId)
+                .map(stockItem -> Quantity.of(stockShardService.quantityOnHand(stockItem)).milliUnits())
+                .orElse(0L);
+    }
+
+    private void releaseMemory(String cartId) {
+        CartReservations cart = byCart.remove(cartId);
+        if (cart != null) {
+            cart.productIds.forEach(productId -> setMemory(cartId, productId, 0));
+        }
+    }
+
+    private void setMemory(String cartId, Long productId, long milli) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductReservations reservations = byProduct.computeIfAbsent(productId, id -> new ProductReservations());
+            Long previous = milli > 0
+                    ? reservations.milliByCart.put(cartId, milli)
+                    : reservations.milliByCart.remove(cartId);
+            reservations.totalMilli += milli - (previous == null ? 0 : previous);
+            if (reservations.milliByCart.isEmpty()) {
+                byProduct.remove(productId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (milli == 0) {
+            CartReservations cart = byCart.get(cartId);
+            if (cart != null) {
+                cart.productIds.remove(productId);
+            }
+        }
+    }
+
+    private ReentrantLock stripe(Long productId) {
+        return stripes[Long.hashCode(productId) & (STRIPES - 1)];
+    }
+}
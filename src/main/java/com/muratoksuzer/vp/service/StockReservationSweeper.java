@@ -0,0 +1,39 @@
+package com.muratoksuzer.vp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background task that periodically releases the reservations of carts whose time to live
+ * has passed, in memory and in the database, and writes the carts changed since the last sweep.
+ * Not created when {@code pos.reservations.sweep-interval-ms} is 0 or less.
+ */
+@Component
+@ConditionalOnExpression("${pos.reservations.sweep-interval-ms:10000} > 0")
+public class StockReservationSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationSweeper.class);
+
+    private final StockReservationLedger reservationLedger;
+
+    public StockReservationSweeper(StockReservationLedger reservationLedger) {
+        this.reservationLedger = reservationLedger;
+    }
+
+    @Scheduled(initialDelayString = "${pos.reservations.sweep-interval-ms:10000}",
+            fixedDelayString = "${pos.reservations.sweep-interval-ms:10000}")
+    void sweep() {
+        try {
+            int expired = reservationLedger.expire();
+            if (expired > 0) {
+                logger.info("Released stock reservations of {} expired carts", expired);
+            }
+            reservationLedger.flush();
+        } catch (RuntimeException e) {
+            logger.warn("Expiring stock reservations failed, retrying", e);
+        }
+    }
+}
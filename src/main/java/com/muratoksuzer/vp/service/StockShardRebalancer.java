@@ -0,0 +1,49 @@
+package com.muratoksuzer.vp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Background task that periodically evens out the shards of sharded stock items, so random
+ * decrements keep finding a shard with enough stock. Each item is rebalanced in its own short
+ * transaction and shards held by a checkout are skipped. Not created when
+ * {@code pos.stock-shards.rebalance-interval-ms} is 0 or less.
+ */
+@Component
+@ConditionalOnExpression("${pos.stock-shards.rebalance-interval-ms:5000} > 0")
+public class StockShardRebalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockShardRebalancer.class);
+
+    private final StockShardService stockShardService;
+
+    public StockShardRebalancer(StockShardService stockShardService) {
+        this.stockShardService = stockShardService;
+    }
+
+    @Scheduled(initialDelayString = "${pos.stock-shards.rebalance-interval-ms:5000}",
+            fixedDelayString = "${pos.stock-shards.rebalance-interval-ms:5000}")
+    void rebalance() {
+        try {
+            rebalanceAll();
+        } catch (RuntimeException e) {
+            logger.warn("Stock shard rebalancing failed, retrying", e);
+        }
+    }
+
+    public int rebalanceAll() {
+        int rebalanced = 0;
+        for (Long stockItemId : stockShardService.findShardedStockItemIds()) {
+            if (stockShardService.rebalance(stockItemId)) {
+                rebalanced++;
+            }
+        }
+        if (rebalanced > 0) {
+            logger.debug("Rebalanced shards of {} stock items", rebalanced);
+        }
+        return rebalanced;
+    }
+}
@@ -0,0 +1,198 @@
+package com.muratoksuzer.vp.service;
+
+import com.muratoksuzer.vp.dto.StockShardTotal;
+import com.muratoksuzer.vp.entity.domain.StockItem;
+import com.muratoksuzer.vp.entity.domain.StockShard;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.repository.StockItemRepository;
+import com.muratoksuzer.vp.repository.StockShardRepository;
+import com.muratoksuzer.vp.value.Quantity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stock counters split over K rows for hot products.
+ * <p>
+ * A sharded {@link StockItem} ({@code shardCount > 1}) keeps {@code quantityOnHand} at 0 and holds its
+ * stock in {@link StockShard} rows, so the stock on hand is always {@code quantityOnHand + sum(shards)}.
+ * A decrement first takes the whole quantity from one random shard that is not locked by another
+ * checkout; only when no single shard can serve it are all shards locked and drained in shard order.
+ * Callers hold a share lock on the stock item, which keeps {@link #reshard(Long, int)} out meanwhile.
+ */
+@Transactional(rollbackFor = Exception.class)
+@Service
+public class StockShardService {
+
+    public static final int MAX_SHARDS = 64;
+
+    private final StockItemRepository stockRepo;
+    private final StockShardRepository shardRepo;
+    private final TranslationService translations;
+
+    public StockShardService(StockItemRepository stockRepo, StockShardRepository shardRepo, TranslationService translations) {
+        this.stockRepo = stockRepo;
+        this.shardRepo = shardRepo;
+        this.translations = translations;
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public BigDecimal quantityOnHand(StockItem stockItem) {
+        if (!stockItem.isSharded()) {
+            return stockItem.getQuantityOnHand();
+        }
+        return stockItem.getQuantityOnHand().add(shardRepo.sumByStockItemId(stockItem.getId()));
+    }
+
+    /**
+     * Sums the shards of the given stock items; items without shards are not in the map.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Map<Long, BigDecimal> shardTotals(Collection<Long> stockItemIds) {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        if (stockItemIds.isEmpty()) {
+            return totals;
+        }
+        for (StockShardTotal total : shardRepo.sumByStockItemIds(stockItemIds)) {
+            totals.put(total.stockItemId(), total.quantity());
+        }
+        return totals;
+    }
+
+    /**
+     * Takes the quantity from the shards of a sharded item. Returns false if the shards together
+     * do not hold enough, in which case nothing is changed.
+     */
+    public boolean decrement(StockItem stockItem, BigDecimal quantity) {
+        OffsetDateTime now = OffsetDateTime.now();
+        if (shardRepo.decrementRandomShard(stockItem.getId(), quantity, now) == 1) {
+            return true;
+        }
+
+        // no free shard holds enough on its own: wait for all of them and drain the fullest first
+        List<StockShard> shards = shardRepo.lockByStockItemId(stockItem.getId());
+        long available = 0;
+        for (StockShard shard : shards) {
+            available += Quantity.of(shard.getQuantity()).milliUnits();
+        }
+        long remaining = Quantity.of(quantity).milliUnits();
+        if (available < remaining) {
+            return false;
+        }
+
+        List<StockShard> fullestFirst = new ArrayList<>(shards);
+        fullestFirst.sort(Comparator.comparing(StockShard::getQuantity).reversed());
+        for (StockShard shard : fullestFirst) {
+            if (remaining == 0) {
+                break;
+            }
+            long held = Quantity.of(shard.getQuantity()).milliUnits();
+            long taken = Math.min(held, remaining);
+            shard.setQuantity(Quantity.ofMilli(held - taken).toBigDecimal());
+            remaining -= taken;
+        }
+        return true;
+    }
+
+    public void increase(StockItem stockItem, BigDecimal quantity) {
+        if (shardRepo.incrementSmallestShard(stockItem.getId(), quantity, OffsetDateTime.now()) == 1) {
+            return;
+        }
+
+        List<StockShard> shards = shardRepo.lockByStockItemId(stockItem.getId());
+        StockShard smallest = shards.stream()
+                .min(Comparator.comparing(StockShard::getQuantity))
+                .orElseThrow(() -> new IllegalStateException("sharded stock item " + stockItem.getId() + " has no shards"));
+        smallest.setQuantity(smallest.getQuantity().add(quantity));
+    }
+
+    /**
+     * Changes the number of shards of the product's stock and spreads the stock on hand evenly over
+     * them. A shard count of 1 moves all stock back to the stock item row.
+     */
+    public void reshard(Long productId, int shardCount) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new AppLevelValidationException(translations.t("inventory.shards.invalid", MAX_SHARDS));
+        }
+
+        StockItem stockItem = stockRepo.lockByProductId(productId)
+                .orElseThrow(() -> new AppLevelValidationException(translations.t("pos.stock.missing", productId)));
+
+        long total = Quantity.of(stockItem.getQuantityOnHand()).milliUnits();
+        if (stockItem.isSharded()) {
+            for (StockShard shard : shardRepo.lockByStockItemId(stockItem.getId())) {
+                total += Quantity.of(shard.getQuantity()).milliUnits();
+            }
+            shardRepo.deleteByStockItemId(stockItem.getId());
+        }
+
+        stockItem.setShardCount(shardCount);
+        if (shardCount == 1) {
+            stockItem.setQuantityOnHand(Quantity.ofMilli(total).toBigDecimal());
+            return;
+        }
+
+        stockItem.setQuantityOnHand(BigDecimal.ZERO);
+        long[] split = split(total, shardCount);
+        List<StockShard> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new StockShard(stockItem, i, Quantity.ofMilli(split[i]).toBigDecimal()));
+        }
+        shardRepo.saveAll(shards);
+    }
+
+    /**
+     * Evens out the shards of one item that are not in use by a checkout right now.
+     * Returns true if anything was moved.
+     */
+    public boolean rebalance(Long stockItemId) {
+        List<StockShard> shards = shardRepo.lockAvailableByStockItemId(stockItemId);
+        if (shards.size() < 2) {
+            return false;
+        }
+
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        for (StockShard shard : shards) {
+            long held = Quantity.of(shard.getQuantity()).milliUnits();
+            total += held;
+            min = Math.min(min, held);
+        }
+
+        // only act once a shard has dropped below half of its fair share
+        long fairShare = total / shards.size();
+        if (min * 2 >= fairShare) {
+            return false;
+        }
+
+        long[] split = split(total, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setQuantity(Quantity.ofMilli(split[i]).toBigDecimal());
+        }
+        return true;
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Long> findShardedStockItemIds() {
+        return shardRepo.findShardedStockItemIds();
+    }
+
+    private static long[] split(long totalMilli, int parts) {
+        long[] split = new long[parts];
+        long base = totalMilli / parts;
+        long remainder = totalMilli % parts;
+        for (int i = 0; i < parts; i++) {
+            split[i] = base + (i < remainder ? 1 : 0);
+        }
+        return split;
+    }
+}
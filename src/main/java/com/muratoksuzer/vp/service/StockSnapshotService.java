@@ -0,0 +1,332 @@
+package com.muratoksuzer.vp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Point-in-time stock. At every day (or month) boundary the stock on hand of each product is written
+ * to {@code stock_snapshot}, so the quantity at any instant is the nearest snapshot, or the current
+ * stock, plus or minus the movements between it and that instant. The work no longer grows with the
+ * length of the movement history.
+ * <p>
+ * A snapshot is computed backwards from the current stock, so it is exact for its boundary whenever
+ * the job runs. Boundaries missed while no node was running are taken on startup, every one after
+ * the newest snapshot. On several nodes, the first node to claim a boundary takes the snapshot. Products without stock are left out of a snapshot. Daily snapshots
+ * older than {@code keep-daily-days} are dropped; the ones on the first day of a month are kept.
+ * <p>
+ * Movements are counted as the Movements view lists them. When sale movements are derived
+ * ({@code pos.derive-sale-movements}), sale lines without a stored movement count as OUT. Movements of
+ * months retired by {@link StockMovementPartitionService} are gone, so within those months only the
+ * instants of the kept month-start snapshots are exact.
+ * <p>
+ * Not transactional as a whole: a snapshot runs in its own repeatable-read transaction, so that the
+ * stock rows and the movements after them come from the same database snapshot. The job runs on the
+ * {@link TaskScheduler}, each run scheduling the next one at the following boundary.
+ */
+@Service
+public class StockSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockSnapshotService.class);
+
+    // open upper bound for "every movement after"
+    private static final OffsetDateTime FAR_FUTURE = OffsetDateTime.of(9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    public enum Interval {
+        NONE,
+        DAILY,
+        MONTHLY
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate snapshotTransaction;
+    private final boolean deriveSaleMovements;
+    private final Interval interval;
+    private final ZoneId zone;
+    private final int keepDailyDays;
+
+    private volatile ScheduledFuture<?> nextRun;
+
+    public StockSnapshotService(NamedParameterJdbcTemplate jdbcTemplate,
+                                TaskScheduler taskScheduler,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${pos.derive-sale-movements:false}") boolean deriveSaleMovements,
+                                @Value("${pos.stock-snapshots.interval:NONE}") Interval interval,
+                                @Value("${pos.business-zone:Europe/Istanbul}") ZoneId zone,
+                                @Value("${pos.stock-snapshots.keep-daily-days:90}") int keepDailyDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskScheduler = taskScheduler;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.deriveSaleMovements = deriveSaleMovements;
+        this.interval = interval;
+        this.zone = zone;
+        this.keepDailyDays = keepDailyDays;
+    }
+
+    @PostConstruct
+    void start() {
+        jdbcTemplate.getJdbcTemplate().execute("""
+                create table if not exists stock_snapshot_run (
+                    snapshot_at timestamp with time zone primary key,
+                    products integer not null,
+                    taken_at timestamp with time zone not null
+                )
+                """);
+        jdbcTemplate.getJdbcTemplate().execute("""
+                create table if not exists stock_snapshot (
+                    snapshot_at timestamp with time zone not null,
+                    product_id bigint not null,
+                    quantity numeric(19, 3) not null,
+                    primary key (snapshot_at, product_id)
+                )
+                """);
+        if (interval == Interval.NONE) {
+            return;
+        }
+        nextRun = taskScheduler.schedule(this::takeDueSnapshots, Instant.now());
+    }
+
+    @PreDestroy
+    void stop() {
+        ScheduledFuture<?> run = nextRun;
+        if (run != null) {
+            run.cancel(false);
+        }
+    }
+
+    /**
+     * Quantity of the product at {@code instant}, shards included.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public BigDecimal quantityAsOf(Long productId, Instant instant) {
+        Map<Long, BigDecimal> quantities = quantitiesAsOf(productId, instant);
+        return quantities.getOrDefault(productId, BigDecimal.ZERO);
+    }
+
+    /**
+     * Quantities of all products at {@code instant}; products without stock then are left out.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Map<Long, BigDecimal> quantityAsOf(Instant instant) {
+        return quantitiesAsOf(null, instant);
+    }
+
+    /**
+     * Writes the snapshot for {@code boundary} unless it exists. Returns false if it did.
+     */
+    public boolean takeSnapshot(OffsetDateTime boundary) {
+        long start = System.currentTimeMillis();
+        Integer products = snapshotTransaction.execute(status -> {
+            MapSqlParameterSource params = new MapSqlParameterSource("at", boundary);
+            int claimed = jdbcTemplate.update("""
+                    insert into stock_snapshot_run (snapshot_at, products, taken_at)
+                    values (:at, 0, now())
+                    on conflict (snapshot_at) do nothing
+                    """, params);
+            if (claimed == 0) {
+                return null;
+            }
+
+            // stock now minus every change after the boundary
+            params.addValue("from", boundary).addValue("to", FAR_FUTURE).addValue("sign", -1);
+            int written = jdbcTemplate.update("""
+                    insert into stock_snapshot (snapshot_at, product_id, quantity)
+                    select :at, x.product_id, sum(x.quantity)
+                    from (%s) x
+                    group by x.product_id
+                    having sum(x.quantity) <> 0
+                    """.formatted(quantityRows(currentStockRows(false), false)), params);
+            jdbcTemplate.update("update stock_snapshot_run set products = :products where snapshot_at = :at",
+                    params.addValue("products", written));
+            return written;
+        });
+        if (products == null) {
+            return false;
+        }
+        logger.info("Stock snapshot {} written for {} products in {} ms", boundary, products, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    private Map<Long, BigDecimal> quantitiesAsOf(Long productId, Instant instant) {
+        OffsetDateTime at = instant.atOffset(ZoneOffset.UTC);
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        MapSqlParameterSource params = new MapSqlParameterSource("t", at);
+        OffsetDateTime previous = jdbcTemplate.queryForObject(
+                "select max(snapshot_at) from stock_snapshot_run where snapshot_at <= :t", params, OffsetDateTime.class);
+        OffsetDateTime next = jdbcTemplate.queryForObject(
+                "select min(snapshot_at) from stock_snapshot_run where snapshot_at > :t", params, OffsetDateTime.class);
+
+        // start from whichever is closest in time: the previous snapshot going forward,
+        // or the next snapshot or the current stock going back
+        boolean forProduct = productId != null;
+        String baseRows = currentStockRows(forProduct);
+        Duration distance = Duration.between(at, now).abs();
+        params.addValue("from", at).addValue("to", FAR_FUTURE).addValue("sign", -1);
+        if (next != null && Duration.between(at, next).compareTo(distance) < 0) {
+            distance = Duration.between(at, next);
+            baseRows = snapshotRows(forProduct);
+            params.addValue("base", next).addValue("to", next);
+        }
+        if (previous != null && Duration.between(previous, at).compareTo(distance) <= 0) {
+            baseRows = snapshotRows(forProduct);
+            params.addValue("base", previous).addValue("from", previous).addValue("to", at).addValue("sign", 1);
+        }
+        if (forProduct) {
+            params.addValue("productId", productId);
+        }
+
+        Map<Long, BigDecimal> quantities = new HashMap<>();
+        jdbcTemplate.query("""
+                select x.product_id, sum(x.quantity)
+                from (%s) x
+                group by x.product_id
+                having sum(x.quantity) <> 0
+                """.formatted(quantityRows(baseRows, forProduct)), params,
+                (RowCallbackHandler) rs -> {
+                    quantities.put(rs.getLong(1), rs.getBigDecimal(2));
+                });
+        return quantities;
+    }
+
+    /**
+     * Base quantities plus {@code :sign} times the changes dated within ({@code :from}, {@code :to}].
+     */
+    private String quantityRows(String baseRows, boolean forProduct) {
+        return baseRows + """
+                union all
+                select c.product_id, :sign * c.quantity
+                from (%s) c
+                """.formatted(changeRows(forProduct));
+    }
+
+    private static String currentStockRows(boolean forProduct) {
+        return """
+                select si.product_id,
+                       si.quantity_on_hand
+                           + coalesce((select sum(sh.quantity) from stock_shard sh where sh.stock_item_id = si.id), 0) as quantity
+                from stock_item si
+                %s
+                """.formatted(forProduct ? "where si.product_id = :productId" : "");
+    }
+
+    private static String snapshotRows(boolean forProduct) {
+        return """
+                select ss.product_id, ss.quantity
+                from stock_snapshot ss
+                where ss.snapshot_at = :base %s
+                """.formatted(forProduct ? "and ss.product_id = :productId" : "");
+    }
+
+    private String changeRows(boolean forProduct) {
+        String sql = """
+                select m.product_id, case when m.type = 'IN' then m.quantity else -m.quantity end as quantity
+                from stock_movement m
+                where m.date_created > :from and m.date_created <= :to %s
+                """.formatted(forProduct ? "and m.product_id = :productId" : "");
+        if (deriveSaleMovements) {
+            sql += """
+                    union all
+                    select sl.product_id, -sl.quantity
+                    from sale s
+                    join sale_line sl on sl.sale_id = s.id
+                    where s.date_created > :from and s.date_created <= :to %s
+                      and not exists (select 1 from stock_movement m where m.sale_id = s.id)
+                    """.formatted(forProduct ? "and sl.product_id = :productId" : "");
+        }
+        return sql;
+    }
+
+    /**
+     * Takes every snapshot due up to now and schedules the next run at the following boundary, or in
+     * a minute if this one failed.
+     */
+    private void takeDueSnapshots() {
+        Duration delay;
+        try {
+            ZonedDateTime now = ZonedDateTime.now(zone);
+            ZonedDateTime latest = boundaryAtOrBefore(now);
+            boolean taken = false;
+            for (ZonedDateTime boundary : missedBoundaries(latest)) {
+                taken |= takeSnapshot(boundary.toOffsetDateTime());
+            }
+            if (taken) {
+                dropOldDailySnapshots();
+            }
+            delay = Duration.between(now, next(latest));
+        } catch (RuntimeException e) {
+            logger.warn("Stock snapshot failed, retrying", e);
+            delay = Duration.ofMinutes(1);
+        }
+        nextRun = taskScheduler.schedule(this::takeDueSnapshots, Instant.now().plusMillis(Math.max(1000, delay.toMillis())));
+    }
+
+    /**
+     * Boundaries after the newest snapshot up to {@code latest}; only {@code latest} when there is none yet.
+     */
+    private List<ZonedDateTime> missedBoundaries(ZonedDateTime latest) {
+        OffsetDateTime newest = jdbcTemplate.queryForObject(
+                "select max(snapshot_at) from stock_snapshot_run", new MapSqlParameterSource(), OffsetDateTime.class);
+        List<ZonedDateTime> boundaries = new ArrayList<>();
+        ZonedDateTime boundary = newest == null ? latest : next(boundaryAtOrBefore(newest.atZoneSameInstant(zone)));
+        for (; !boundary.isAfter(latest); boundary = next(boundary)) {
+            boundaries.add(boundary);
+        }
+        return boundaries;
+    }
+
+    private void dropOldDailySnapshots() {
+        if (interval != Interval.DAILY || keepDailyDays <= 0) {
+            return;
+        }
+        OffsetDateTime cutoff = OffsetDateTime.now(zone).minusDays(keepDailyDays);
+        List<OffsetDateTime> old = jdbcTemplate.queryForList(
+                "select snapshot_at from stock_snapshot_run where snapshot_at < :cutoff",
+                new MapSqlParameterSource("cutoff", cutoff), OffsetDateTime.class);
+        for (OffsetDateTime snapshotAt : old) {
+            if (snapshotAt.atZoneSameInstant(zone).getDayOfMonth() == 1) {
+                continue;
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource("at", snapshotAt);
+            jdbcTemplate.update("delete from stock_snapshot where snapshot_at = :at", params);
+            jdbcTemplate.update("delete from stock_snapshot_run where snapshot_at = :at", params);
+        }
+    }
+
+    private ZonedDateTime boundaryAtOrBefore(ZonedDateTime time) {
+        ZonedDateTime day = time.toLocalDate().atStartOfDay(zone);
+        return interval == Interval.MONTHLY ? day.withDayOfMonth(1).toLocalDate().atStartOfDay(zone) : day;
+    }
+
+    private ZonedDateTime next(ZonedDateTime boundary) {
+        return interval == Interval.MONTHLY
+                ? boundary.toLocalDate().plusMonths(1).atStartOfDay(zone)
+                : boundary.toLocalDate().plusDays(1).atStartOfDay(zone);
+    }
+}
@@ -6,15 +6,42 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Locale;
+import java.util.function.Supplier;
 
 @Service
 public class TranslationService {
 
+    // locale of work handed off from a UI request to a background thread
+    private static final ThreadLocal<Locale> BACKGROUND_LOCALE = new ThreadLocal<>();
+
     @Autowired
     private I18NProvider i18nProvider;
 
     public String t(String key, Object ...parameters) {
-        return i18nProvider.getTranslation(key, VaadinSession.getCurrent().getLocale(), parameters);
+        Locale locale = BACKGROUND_LOCALE.get();
+        if (locale == null) {
+            // services are also called outside a Vaadin request (startup runners, background jobs)
+            VaadinSession session = VaadinSession.getCurrent();
+            locale = session != null ? session.getLocale() : Locale.ENGLISH;
+        }
+        return i18nProvider.getTranslation(key, locale, parameters);
+    }
+
+    /**
+     * Runs {@code work} on the current thread with messages translated to {@code locale}.
+     */
+    public <T> T withLocale(Locale locale, Supplier<T> work) {
+        Locale previous = BACKGROUND_LOCALE.get();
+        BACKGROUND_LOCALE.set(locale);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                BACKGROUND_LOCALE.remove();
+            } else {
+                BACKGROUND_LOCALE.set(previous);
+            }
+        }
     }
 
     public String t(String key, Locale locale, Object ...parameters) {
@@ -0,0 +1,63 @@
+package com.muratoksuzer.vp.value;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point amount in minor units (cents/kuruş) with a fixed scale of {@value #SCALE}.
+ * Used for cart and sale math; converted to {@link BigDecimal} only when written to an entity.
+ * Currency is not part of the value, all amounts in one cart share the active price currency.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    public static Money ofMinor(long minorUnits) {
+        return new Money(minorUnits);
+    }
+
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Minor units of {@code priceMinor * quantityMilli}, rounded half-up to {@value #SCALE} decimals.
+     * Allocation-free building block for line totals.
+     */
+    public static long timesMinor(long priceMinor, long quantityMilli) {
+        long product = Math.multiplyExact(priceMinor, quantityMilli);
+        long quotient = product / Quantity.MILLI;
+        long remainder = Math.abs(product % Quantity.MILLI);
+        if (remainder * 2 >= Quantity.MILLI) {
+            quotient += Long.signum(product);
+        }
+        return quotient;
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(Quantity quantity) {
+        return new Money(timesMinor(minorUnits, quantity.milliUnits()));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
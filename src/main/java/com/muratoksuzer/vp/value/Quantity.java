@@ -0,0 +1,50 @@
+package com.muratoksuzer.vp.value;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point quantity in thousandths, matching the scale-3 quantity columns.
+ */
+public record Quantity(long milliUnits) implements Comparable<Quantity> {
+
+    public static final int SCALE = 3;
+    public static final long MILLI = 1000;
+
+    public static final Quantity ZERO = new Quantity(0);
+    public static final Quantity ONE = new Quantity(MILLI);
+
+    public static Quantity ofMilli(long milliUnits) {
+        return new Quantity(milliUnits);
+    }
+
+    public static Quantity of(BigDecimal quantity) {
+        return new Quantity(quantity.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public Quantity plus(Quantity other) {
+        return new Quantity(Math.addExact(milliUnits, other.milliUnits));
+    }
+
+    public Quantity minus(Quantity other) {
+        return new Quantity(Math.subtractExact(milliUnits, other.milliUnits));
+    }
+
+    public boolean isPositive() {
+        return milliUnits > 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(milliUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Quantity other) {
+        return Long.compare(milliUnits, other.milliUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().stripTrailingZeros().toPlainString();
+    }
+}
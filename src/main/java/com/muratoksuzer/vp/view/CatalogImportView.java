@@ -0,0 +1,152 @@
+package com.muratoksuzer.vp.view;
+
+import com.muratoksuzer.vp.dto.CatalogImportProgress;
+import com.muratoksuzer.vp.dto.CatalogImportResult;
+import com.muratoksuzer.vp.service.CatalogImportService;
+import com.muratoksuzer.vp.service.TranslationService;
+import com.muratoksuzer.vp.support.NotificationSupport;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.streams.UploadHandler;
+import jakarta.annotation.security.RolesAllowed;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Admin view for loading a product catalog from a CSV or XLSX file. The import runs in the background
+ * and reports its progress after every committed chunk.
+ */
+@Route(value = "catalog-import", layout = MainLayout.class)
+@PageTitle("Catalog Import")
+@RolesAllowed({"ADMIN"})
+public class CatalogImportView extends VerticalLayout {
+
+    private final CatalogImportService catalogImportService;
+    private final TranslationService translations;
+
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Span status = new Span();
+    private final TextArea problemsField;
+    private final Button importButton;
+    private File uploadedFile;
+    private String uploadedFileName;
+
+    public CatalogImportView(CatalogImportService catalogImportService, TranslationService translations) {
+        this.catalogImportService = catalogImportService;
+        this.translations = translations;
+        setSizeFull();
+        add(new H2(translations.t("catalogImport.title")));
+        add(new Paragraph(translations.t("catalogImport.format")));
+
+        UI ui = UI.getCurrent();
+        Upload upload = new Upload(UploadHandler.toTempFile((metadata, file) -> ui.access(() -> {
+            deleteUploadedFile();
+            uploadedFile = file;
+            uploadedFileName = metadata.fileName();
+            status.setText(metadata.fileName());
+        })));
+        upload.setAcceptedFileTypes(".csv", ".txt", ".tsv", ".xlsx");
+        upload.setMaxFiles(1);
+        upload.setDropLabel(new Span(translations.t("catalogImport.upload")));
+
+        importButton = new Button(translations.t("catalogImport.start"), VaadinIcon.UPLOAD.create());
+        importButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        importButton.addClickListener(e -> startImport(ui));
+
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+
+        problemsField = new TextArea(translations.t("catalogImport.problems"));
+        problemsField.setReadOnly(true);
+        problemsField.setWidthFull();
+        problemsField.setMinHeight("160px");
+        problemsField.setVisible(false);
+
+        add(upload, importButton, progressBar, status, problemsField);
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        super.onDetach(detachEvent);
+        deleteUploadedFile();
+    }
+
+    private void startImport(UI ui) {
+        if (uploadedFile == null) {
+            NotificationSupport.showError(translations.t("catalogImport.noFile"));
+            return;
+        }
+
+        // the import owns the file from here on; a new upload does not delete it
+        File file = uploadedFile;
+        String fileName = uploadedFileName;
+        uploadedFile = null;
+        Locale locale = ui.getLocale();
+
+        importButton.setEnabled(false);
+        progressBar.setVisible(true);
+        problemsField.setVisible(false);
+        status.setText(translations.t("catalogImport.running", fileName));
+
+        Thread.ofVirtual().name("catalog-import").start(() -> {
+            try {
+                CatalogImportResult result = translations.withLocale(locale, () ->
+                        catalogImportService.importCatalog(file.toPath(), fileName, progress -> showProgress(ui, progress)));
+                access(ui, () -> {
+                    status.setText(translations.t("catalogImport.done", result.imported(), result.rows(),
+                            result.duplicates(), result.invalid(), result.elapsedMillis(), result.rowsPerSecond()));
+                    NotificationSupport.showSuccess(translations.t("catalogImport.imported", result.imported()));
+                    if (!result.problems().isEmpty()) {
+                        problemsField.setValue(String.join("\n", result.problems()));
+                        problemsField.setVisible(true);
+                    }
+                });
+            } catch (RuntimeException e) {
+                access(ui, () -> {
+                    status.setText("");
+                    NotificationSupport.showError(e.getMessage());
+                });
+            } finally {
+                file.delete();
+                access(ui, () -> {
+                    progressBar.setVisible(false);
+                    importButton.setEnabled(true);
+                });
+            }
+        });
+    }
+
+    private void showProgress(UI ui, CatalogImportProgress progress) {
+        access(ui, () -> status.setText(translations.t("catalogImport.progress",
+                progress.rows(), progress.imported(), progress.skipped(), progress.rowsPerSecond())));
+    }
+
+    private static void access(UI ui, Runnable update) {
+        try {
+            ui.access(update::run);
+        } catch (UIDetachedException detached) {
+            // the view was left meanwhile; the import itself still completes
+        }
+    }
+
+    private void deleteUploadedFile() {
+        if (uploadedFile != null) {
+            uploadedFile.delete();
+            uploadedFile = null;
+        }
+    }
+}
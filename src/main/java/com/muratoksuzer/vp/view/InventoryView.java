@@ -1,12 +1,15 @@
 package com.muratoksuzer.vp.view;
 
 import com.muratoksuzer.vp.dto.StockItemDto;
+import com.muratoksuzer.vp.service.GoodsReceiptService;
 import com.muratoksuzer.vp.service.InventoryService;
+import com.muratoksuzer.vp.service.StockShardService;
 import com.muratoksuzer.vp.service.TranslationService;
 import com.muratoksuzer.vp.support.NotificationSupport;
 import com.muratoksuzer.vp.view.components.PaginationView;
 import com.muratoksuzer.vp.view.components.SearchBarView;
 import com.muratoksuzer.vp.view.subview.DecreaseInventoryDialog;
+import com.muratoksuzer.vp.view.subview.GoodsReceiptDialog;
 import com.muratoksuzer.vp.view.subview.IncreaseInventoryDialog;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
@@ -19,6 +22,7 @@ import com.vaadin.flow.component.orderedlayout.FlexComponent;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.BigDecimalField;
+import com.vaadin.flow.component.textfield.IntegerField;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.PageTitle;
@@ -35,12 +39,14 @@ import java.math.BigDecimal;
 public class InventoryView extends VerticalLayout {
 
     private final InventoryService inventoryService;
+    private final GoodsReceiptService goodsReceiptService;
     private final TranslationService translations;
     private PaginationView paginationView;
     private Grid<StockItemDto> stockItemGrid;
 
-    public InventoryView(InventoryService inventoryService, TranslationService translations) {
+    public InventoryView(InventoryService inventoryService, GoodsReceiptService goodsReceiptService, TranslationService translations) {
         this.inventoryService = inventoryService;
+        this.goodsReceiptService = goodsReceiptService;
         this.translations = translations;
 
         setSizeFull();
@@ -58,6 +64,11 @@ public class InventoryView extends VerticalLayout {
 
         searchBarView.setJustifyContentMode(JustifyContentMode.END);
 
+        Button goodsReceiptButton = new Button(translations.t("goodsReceipt.button"), VaadinIcon.TRUCK.create());
+        goodsReceiptButton.addClickListener(e ->
+                new GoodsReceiptDialog(goodsReceiptService, translations, v -> paginationView.loadCurrentPageAfterAddition()).open());
+        searchBarView.addComponentAsFirst(goodsReceiptButton);
+
         add(searchBarView);
 
         this.stockItemGrid = createGrid();
@@ -157,10 +168,18 @@ public class InventoryView extends VerticalLayout {
         TextField locationField = new TextField("Location");
         locationField.setWidthFull();
 
+        IntegerField shardsField = new IntegerField(translations.t("inventory.shards"));
+        shardsField.setHelperText(translations.t("inventory.shards.helper"));
+        shardsField.setMin(1);
+        shardsField.setMax(StockShardService.MAX_SHARDS);
+        shardsField.setStepButtonsVisible(true);
+        shardsField.setWidthFull();
+
         // preload existing values
 
         reorderField.setValue(stockItemDto.getReorderLevel());
         locationField.setValue(stockItemDto.getLocation() == null ? "" : stockItemDto.getLocation());
+        shardsField.setValue(stockItemDto.getShardCount());
 
         Button save = new Button("Save", e -> {
             inventoryService.updateReorderLevel(
@@ -168,6 +187,10 @@ public class InventoryView extends VerticalLayout {
                     reorderField.getValue(),
                     locationField.getValue()
             );
+            Integer shardCount = shardsField.getValue();
+            if (shardCount != null && shardCount != stockItemDto.getShardCount()) {
+                inventoryService.updateShardCount(stockItemDto.getProduct().getId(), shardCount);
+            }
             dialog.close();
             NotificationSupport.showSuccess("Saved");
             paginationView.loadCurrentPageAfterAddition();
@@ -179,7 +202,7 @@ public class InventoryView extends VerticalLayout {
         actions.setJustifyContentMode(JustifyContentMode.END);
         actions.setWidthFull();
 
-        dialog.add(new VerticalLayout(reorderField, locationField, actions));
+        dialog.add(new VerticalLayout(reorderField, locationField, shardsField, actions));
         dialog.open();
     }
 }
@@ -111,6 +111,12 @@ public class MainLayout extends AppLayout {
                 VaadinIcon.CART.create()
         );
 
+        SideNavItem scannerLink = new SideNavItem(
+                translations.t("menu.scanner"),
+                ScannerView.class,
+                VaadinIcon.BARCODE.create()
+        );
+
         SideNavItem salesLink = new SideNavItem(
                 translations.t("menu.sales"),
                 SalesView.class,
@@ -137,6 +143,20 @@ public class MainLayout extends AppLayout {
         );
 
 
+        SideNavItem rejectedSalesLink = new SideNavItem(
+                translations.t("menu.rejectedSales"),
+                RejectedSalesView.class,
+                VaadinIcon.WARNING.create()
+        );
+
+
+        SideNavItem catalogImportLink = new SideNavItem(
+                translations.t("menu.catalogImport"),
+                CatalogImportView.class,
+                VaadinIcon.UPLOAD.create()
+        );
+
+
         SideNavItem aboutLink = new SideNavItem(
                 translations.t("menu.about"),
                 AboutView.class,
@@ -147,11 +167,14 @@ public class MainLayout extends AppLayout {
                 productLink,
                 inventoryLink,
                 posLink,
+                scannerLink,
                 salesLink,
                 movementsLink);
 
         if (hasAdminRole) {
             nav.addItem(usersLink);
+            nav.addItem(rejectedSalesLink);
+            nav.addItem(catalogImportLink);
         }
 
         nav.addItem(settingsLink,
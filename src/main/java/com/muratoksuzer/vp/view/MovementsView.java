@@ -1,11 +1,15 @@
 package com.muratoksuzer.vp.view;
 
+import com.muratoksuzer.vp.dto.MovementCursor;
+import com.muratoksuzer.vp.dto.MovementWindow;
 import com.muratoksuzer.vp.dto.StockMovementDto;
 import com.muratoksuzer.vp.service.StockMovementService;
 import com.muratoksuzer.vp.service.TranslationService;
 import com.muratoksuzer.vp.support.NotificationSupport;
+import com.muratoksuzer.vp.view.components.KeysetPaginationView;
 import com.muratoksuzer.vp.view.components.PaginationView;
 import com.muratoksuzer.vp.view.components.SearchBarView;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
@@ -15,12 +19,20 @@ import jakarta.annotation.security.RolesAllowed;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
 @Route(value = "movements", layout = MainLayout.class)
 @PageTitle("Stock Movements")
 @RolesAllowed({"USER", "ADMIN"})
 public class MovementsView extends VerticalLayout {
 
+    private static final int PAGE_SIZE = 10;
+
     private PaginationView paginationView;
+    private KeysetPaginationView<MovementCursor> keysetPaginationView;
+    private ComboBox<YearMonth> monthComboBox;
     private final TranslationService translations;
     private StockMovementService stockMovementService;
     private Grid<StockMovementDto> stockMovementGrid;
@@ -35,6 +47,11 @@ public class MovementsView extends VerticalLayout {
 
             @Override
             public void searchClicked(String searchValue) {
+                if (keysetPaginationView != null) {
+                    keysetPaginationView.setSearchTerm(searchValue);
+                    keysetPaginationView.loadFirstPage();
+                    return;
+                }
                 paginationView.setSearchTerm(searchValue);
                 long foundCount = paginationView.loadPage(0);
                 NotificationSupport.showInfo(translations.t("general.search.foundNotification", foundCount));
@@ -45,16 +62,49 @@ public class MovementsView extends VerticalLayout {
 
         this.stockMovementGrid = createGrid();
         add(stockMovementGrid);
+
+        if (stockMovementService.isDerivingSaleMovements()) {
+            // sale movements are derived from sale lines; the merged list is paged by cursor, without counting
+            keysetPaginationView = new KeysetPaginationView<>(MovementCursor.first()) {
+
+                @Override
+                protected MovementCursor loadAndGetNextCursor(MovementCursor cursor, String searchTerm) {
+                    MovementWindow window = stockMovementService.findWindow(cursor, PAGE_SIZE, searchTerm);
+                    stockMovementGrid.setItems(window.items());
+                    return window.next();
+                }
+            };
+            add(keysetPaginationView);
+            keysetPaginationView.loadFirstPage();
+            return;
+        }
+
+        // one month at a time, so a page and its count read a single partition of stock_movement
+        List<YearMonth> months = stockMovementService.findMonths();
+        monthComboBox = new ComboBox<>();
+        monthComboBox.setItems(months);
+        monthComboBox.setItemLabelGenerator(month -> month.format(DateTimeFormatter.ofPattern("MMMM yyyy", getLocale())));
+        monthComboBox.setPlaceholder(translations.t("movement.month"));
+        monthComboBox.setValue(months.getFirst());
+        monthComboBox.addValueChangeListener(e -> {
+            if (e.getValue() != null) {
+                paginationView.loadPage(0);
+            }
+        });
+        searchBarView.addComponentAsFirst(monthComboBox);
+
         paginationView = new PaginationView() {
 
             @Override
             protected Page loadAndGetPage(Pageable pageable, String searchTerm) {
-                Page<StockMovementDto> page = stockMovementService.findPaginated(pageable, searchTerm);
+                YearMonth month = monthComboBox.getValue() != null ? monthComboBox.getValue() : months.getFirst();
+                Page<StockMovementDto> page = stockMovementService.findPaginated(month, pageable, searchTerm);
                 // Update the grid with the current page data
                 stockMovementGrid.setItems(page.getContent());
                 return page;
             }
         };
+        paginationView.setPageSize(PAGE_SIZE);
         paginationView.setCurrentPageKey("currentPageMovement");
         add(paginationView);
         paginationView.loadPage(paginationView.getCurrentPageInSession());
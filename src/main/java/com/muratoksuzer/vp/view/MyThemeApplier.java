@@ -2,10 +2,12 @@ package com.muratoksuzer.vp.view;
 
 import com.vaadin.flow.component.dependency.StyleSheet;
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.theme.lumo.Lumo;
 
 @StyleSheet(Lumo.STYLESHEET) // Use Aura.STYLESHEET to use Aura instead
 @StyleSheet(Lumo.UTILITY_STYLESHEET)
 @StyleSheet("styles.css") // Your custom styles
+@Push // lets background work (e.g. POS checkout) update the UI when it completes
 public class MyThemeApplier implements AppShellConfigurator {
 }
\ No newline at end of file
@@ -1,15 +1,34 @@
 package com.muratoksuzer.vp.view;
 
-import com.muratoksuzer.vp.dto.PriceDto;
+import com.muratoksuzer.vp.dto.ParkedCartDto;
+import com.muratoksuzer.vp.dto.ParkedCartLine;
+import com.muratoksuzer.vp.dto.ProductScanSnapshot;
+import com.muratoksuzer.vp.dto.SharedScan;
 import com.muratoksuzer.vp.dto.UiCartLineDto;
 import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.service.BarcodeIndex;
+import com.muratoksuzer.vp.service.DegradedCheckoutService;
+import com.muratoksuzer.vp.service.ParkedCartService;
 import com.muratoksuzer.vp.service.PosService;
-import com.muratoksuzer.vp.service.PriceService;
+import com.muratoksuzer.vp.service.SecurityService;
+import com.muratoksuzer.vp.service.SharedCartBroadcaster;
+import com.muratoksuzer.vp.service.StockReservationLedger;
 import com.muratoksuzer.vp.service.TranslationService;
 import com.muratoksuzer.vp.support.NotificationSupport;
-import com.vaadin.flow.component.Key;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.ClientCallable;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.dependency.JsModule;
+import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.data.provider.ListDataProvider;
+import com.vaadin.flow.data.renderer.LitRenderer;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.notification.Notification;
@@ -17,32 +36,70 @@ import com.vaadin.flow.component.orderedlayout.*;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
 import jakarta.annotation.security.RolesAllowed;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Route(value = "pos", layout = MainLayout.class)
 @PageTitle("POS")
 @RolesAllowed({"USER", "ADMIN"})
+@JsModule("./pos/scan-buffer.js")
 public class PosView extends VerticalLayout {
 
+    // a scanner burst is sent once the scanner pauses this long, or once it holds MAX_BURST barcodes
+    private static final int SCAN_PAUSE_MS = 60;
+    private static final int MAX_BURST = 50;
+
     // key = productId
     private final Map<Long, UiCartLineDto> cart = new LinkedHashMap<>();
+    // stock reservations of this cart are held under this id
+    private final String cartId = UUID.randomUUID().toString();
+    // identifies the sale of the current cart contents; kept across retries, replaced whenever the cart changes
+    private String checkoutToken = UUID.randomUUID().toString();
 
     private final PosService posService;
+    private final DegradedCheckoutService degradedCheckoutService;
     private final Grid<UiCartLineDto> grid = new Grid<>(UiCartLineDto.class, false);
+    // live view of the cart: quantity changes refresh one row, added or removed lines refresh the grid
+    private final ListDataProvider<UiCartLineDto> cartDataProvider = new ListDataProvider<>(cart.values());
     private final TextField barcodeField;
-    private final PriceService priceService;
+    private final Button checkoutButton;
+    // true from the checkout click until its result is shown; the cart cannot change meanwhile
+    private boolean checkoutInProgress;
+    private final BarcodeIndex barcodeIndex;
+    private final StockReservationLedger reservationLedger;
+    private final ParkedCartService parkedCartService;
+    private final SecurityService securityService;
+    private final SharedCartBroadcaster sharedCartBroadcaster;
+    // pairing code scanner devices use to send scans to this cart, shown while the view is attached
+    private final Span pairingCode = new Span();
+    private Registration sharedCartRegistration;
+    // scans pushed by a scanner device while a checkout was running
+    private final List<SharedScan> pendingSharedScans = new ArrayList<>();
     private TranslationService translations;
 
-    public PosView(PosService posService, PriceService priceService, TranslationService translations) {
+    public PosView(PosService posService, DegradedCheckoutService degradedCheckoutService, BarcodeIndex barcodeIndex, StockReservationLedger reservationLedger, ParkedCartService parkedCartService, SecurityService securityService, SharedCartBroadcaster sharedCartBroadcaster, TranslationService translations) {
         this.posService = posService;
-        this.priceService = priceService;
+        this.degradedCheckoutService = degradedCheckoutService;
+        this.barcodeIndex = barcodeIndex;
+        this.reservationLedger = reservationLedger;
+        this.parkedCartService = parkedCartService;
+        this.securityService = securityService;
+        this.sharedCartBroadcaster = sharedCartBroadcaster;
         this.translations = translations;
         setSizeFull();
 
+        addDetachListener(e -> reservationLedger.releaseCart(cartId));
+
         HorizontalLayout barcodeLayout = new HorizontalLayout();
 
         Button searchButton = new Button(translations.t("general.search.button"),
@@ -55,7 +112,7 @@ public class PosView extends VerticalLayout {
         barcodeField.setClearButtonVisible(true);
         barcodeField.setWidthFull();
 
-        barcodeField.addKeyPressListener(Key.ENTER, e -> onBarcodeEntered());
+        // ENTER is handled by scan-buffer.js, which sends scanner bursts to onBarcodes
 
         barcodeLayout.add(barcodeField);
         barcodeLayout.add(searchButton);
@@ -66,83 +123,427 @@ public class PosView extends VerticalLayout {
         barcodeLayout.setJustifyContentMode(JustifyContentMode.END);
         barcodeLayout.setDefaultVerticalComponentAlignment(Alignment.BASELINE);
 
-        grid.addColumn(l -> l.getProduct().getName()).setHeader(translations.t("pos.grid.product")).setFlexGrow(1);
+        grid.addColumn(UiCartLineDto::getProductName).setHeader(translations.t("pos.grid.product")).setFlexGrow(1);
         grid.addColumn(UiCartLineDto::getQuantity).setHeader(translations.t("pos.grid.qty")).setAutoWidth(true);
         grid.addColumn(UiCartLineDto::getUnitPrice).setHeader(translations.t("pos.grid.unitPrice")).setAutoWidth(true);
         grid.addColumn(UiCartLineDto::getLineTotal).setHeader(translations.t("pos.grid.lineTotal")).setAutoWidth(true);
 
-        grid.addComponentColumn(line -> {
-            Button minus = new Button("-", e -> { line.setQuantity(line.getQuantity().subtract(new BigDecimal("1"))); normalize(line); });
-            Button plus = new Button("+", e -> { line.setQuantity(line.getQuantity().add(new BigDecimal("1"))); normalize(line); });
-            Button remove = new Button(translations.t("button.remove"), e -> { cart.remove(line.getProduct().getId()); refreshGrid(); });
-            return new HorizontalLayout(minus, plus, remove);
-        }).setHeader(translations.t("general.columns.actions")).setAutoWidth(true);
+        // rendered in the browser, so no per-row components are kept on the server
+        String removeLabel = translations.t("button.remove");
+        grid.addColumn(LitRenderer.<UiCartLineDto>of("""
+                        <vaadin-horizontal-layout theme="spacing">
+                            <vaadin-button @click=${decrease}>-</vaadin-button>
+                            <vaadin-button @click=${increase}>+</vaadin-button>
+                            <vaadin-button @click=${remove}>${item.removeLabel}</vaadin-button>
+                        </vaadin-horizontal-layout>
+                        """)
+                .withProperty("removeLabel", line -> removeLabel)
+                .withFunction("decrease", line -> changeQuantity(line, -Quantity.MILLI))
+                .withFunction("increase", line -> changeQuantity(line, Quantity.MILLI))
+                .withFunction("remove", this::removeLine)
+        ).setHeader(translations.t("general.columns.actions")).setAutoWidth(true);
+        grid.setDataProvider(cartDataProvider);
+
+        checkoutButton = new Button(translations.t("pos.checkout"), e -> onCheckout());
+        // disabled in the browser on click, so a double click sends one request
+        checkoutButton.setDisableOnClick(true);
+
+        Button parkButton = new Button(translations.t("pos.park"), e -> openParkDialog());
+        Button resumeButton = new Button(translations.t("pos.resume"), e -> openResumeDialog());
+
+        HorizontalLayout actions = new HorizontalLayout(checkoutButton, parkButton, resumeButton, pairingCode);
+        actions.setDefaultVerticalComponentAlignment(Alignment.CENTER);
+
+        add(barcodeLayout, actions, grid);
+        barcodeField.focus();
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        barcodeField.getElement().executeJs(
+                "window.PosScanBuffer && window.PosScanBuffer.attach($0, $1, $2, $3);",
+                barcodeField.getElement(),
+                getElement(),
+                SCAN_PAUSE_MS,
+                MAX_BURST
+        );
+
+        UI ui = attachEvent.getUI();
+        sharedCartRegistration = sharedCartBroadcaster.register(scans -> {
+            try {
+                ui.access(() -> onSharedScans(scans));
+            } catch (UIDetachedException detached) {
+                // the registration is removed on detach
+            }
+        }, code -> pairingCode.setText(translations.t("pos.shared.code", code)));
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (sharedCartRegistration != null) {
+            sharedCartRegistration.remove();
+            sharedCartRegistration = null;
+        }
+        super.onDetach(detachEvent);
+    }
+
+    /**
+     * Receives a burst of scanned barcodes from the client-side scan buffer.
+     */
+    @ClientCallable
+    private void onBarcodes(String[] barcodes) {
+        addScans(List.of(barcodes).subList(0, Math.min(barcodes.length, MAX_BURST)));
+    }
+
+    /**
+     * Runs the checkout in the background; the session is not locked while the database works and the
+     * result is pushed to the browser once the sale is stored or rejected.
+     */
+    private void onCheckout() {
+        if (checkoutInProgress) {
+            return;
+        }
+        var lines = cart.values().stream()
+                .map(l -> new PosService.CartLine(toProduct(l), l.getQuantity(), l.getUnitPrice()))
+                .toList();
+        if (lines.isEmpty()) {
+            NotificationSupport.showError(translations.t("pos.cart.empty"));
+            checkoutButton.setEnabled(true);
+            return;
+        }
 
-        Button checkout = new Button(translations.t("pos.checkout"), e -> {
+        setCheckoutInProgress(true);
+        UI ui = UI.getCurrent();
+        CompletableFuture<DegradedCheckoutService.CheckoutResult> result;
+        try {
+            result = degradedCheckoutService.checkoutAsync(lines, cartId, checkoutToken, ui.getLocale());
+        } catch (RuntimeException e) {
+            // e.g. the checkout executor rejected the task; the cart stays as it is
+            setCheckoutInProgress(false);
+            Notification.show(e.getMessage(), 5000, Notification.Position.MIDDLE);
+            addPendingSharedScans();
+            return;
+        }
+        result.whenComplete((sale, error) -> {
             try {
-                var lines = cart.values().stream()
-                        .map(l -> new PosService.CartLine(l.getProduct(), l.getQuantity(), l.getUnitPrice()))
-                        .toList();
-
-                var sale = posService.checkout(lines);
-                NotificationSupport.showInfo(translations.t(
-                        "pos.checkout.success",
-                        sale.getSaleNo(),
-                        sale.getTotal()
-                ));
-                cart.clear();
-                refreshGrid();
-                barcodeField.focus();
-            } catch (Exception ex) {
-                Notification.show(ex.getMessage(), 5000, Notification.Position.MIDDLE);
+                ui.access(() -> {
+                    setCheckoutInProgress(false);
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        Notification.show(cause.getMessage(), 5000, Notification.Position.MIDDLE);
+                        addPendingSharedScans();
+                        return;
+                    }
+
+                    NotificationSupport.showInfo(translations.t(
+                            sale.provisional() ? "pos.checkout.queued" : "pos.checkout.success",
+                            sale.saleNo(),
+                            sale.total()
+                    ));
+                    // a sale taken into the journal leaves its reservations behind
+                    reservationLedger.releaseCart(cartId);
+                    cart.clear();
+                    cartChanged();
+                    cartDataProvider.refreshAll();
+                    // scans sent during the checkout start the next cart
+                    addPendingSharedScans();
+                    barcodeField.focus();
+                });
+            } catch (UIDetachedException detached) {
+                // the view was closed meanwhile; its reservations are released on detach
             }
         });
+    }
 
-        HorizontalLayout actions = new HorizontalLayout(checkout);
-        actions.setDefaultVerticalComponentAlignment(Alignment.END);
+    private void setCheckoutInProgress(boolean inProgress) {
+        checkoutInProgress = inProgress;
+        checkoutButton.setEnabled(!inProgress);
+        checkoutButton.setText(translations.t(inProgress ? "pos.checkout.inProgress" : "pos.checkout"));
+        barcodeField.setReadOnly(inProgress);
+        grid.setEnabled(!inProgress);
+    }
 
-        add(barcodeLayout, actions, grid);
-        barcodeField.focus();
-        refreshGrid();
+    private void addPendingSharedScans() {
+        if (pendingSharedScans.isEmpty()) {
+            return;
+        }
+        List<SharedScan> scans = List.copyOf(pendingSharedScans);
+        pendingSharedScans.clear();
+        addLines(scans);
     }
 
     private void onBarcodeEntered() {
         String barcode = barcodeField.getValue() == null ? "" : barcodeField.getValue().trim();
         barcodeField.clear();
-        if (barcode.isBlank()) {
+        addScans(List.of(barcode));
+    }
+
+    /**
+     * Adds one unit per scan; all barcodes are resolved in one lookup.
+     */
+    private void addScans(List<String> barcodes) {
+        if (checkoutInProgress) {
+            NotificationSupport.showError(translations.t("pos.checkout.busy"));
+            return;
+        }
+        List<String> scanned = barcodes.stream()
+                .map(String::trim)
+                .filter(barcode -> !barcode.isBlank())
+                .toList();
+        if (scanned.isEmpty()) {
+            return;
+        }
+
+        Set<String> notFound = new LinkedHashSet<>();
+        Set<String> withoutPrice = new LinkedHashSet<>();
+        List<SharedScan> scans = resolveScans(barcodeIndex, scanned, notFound, withoutPrice);
+        notFound.forEach(barcode -> NotificationSupport.showError(translations.t("pos.productNotFound", barcode)));
+        withoutPrice.forEach(name -> NotificationSupport.showError(translations.t("pos.activePriceNotFound", name)));
+
+        addLines(scans);
+    }
+
+    /**
+     * Resolves scanned barcodes in one lookup into one scan per product, in scan order; unknown barcodes
+     * and products without an active price are collected for the caller to report.
+     */
+    static List<SharedScan> resolveScans(BarcodeIndex barcodeIndex, List<String> barcodes, Set<String> notFound, Set<String> withoutPrice) {
+        Map<String, ProductScanSnapshot> snapshots = barcodeIndex.lookupAll(barcodes);
+
+        Map<Long, Long> scansByProduct = new LinkedHashMap<>();
+        Map<Long, ProductScanSnapshot> products = new LinkedHashMap<>();
+        for (String barcode : barcodes) {
+            ProductScanSnapshot snapshot = snapshots.get(barcode);
+            if (snapshot == null) {
+                notFound.add(barcode);
+            } else if (snapshot.price() == null) {
+                withoutPrice.add(snapshot.name());
+            } else {
+                scansByProduct.merge(snapshot.productId(), 1L, Long::sum);
+                products.putIfAbsent(snapshot.productId(), snapshot);
+            }
+        }
+
+        List<SharedScan> scans = new ArrayList<>(scansByProduct.size());
+        scansByProduct.forEach((productId, count) -> {
+            ProductScanSnapshot snapshot = products.get(productId);
+            scans.add(new SharedScan(productId, snapshot.name(), Money.of(snapshot.price()).minorUnits(), count * Quantity.MILLI));
+        });
+        return scans;
+    }
+
+    /**
+     * Adds resolved scans to the cart: each product's reservation is changed once for all of its
+     * scans, and only changed rows are refreshed.
+     */
+    private void addLines(List<SharedScan> scans) {
+        boolean added = false;
+        for (SharedScan scan : scans) {
+            UiCartLineDto line = cart.get(scan.productId());
+            if (line != null) {
+                if (reserve(line.getProductId(), line.getProductName(), line.getQuantityMilli() + scan.quantityMilli())) {
+                    line.addQuantity(scan.quantityMilli());
+                    cartDataProvider.refreshItem(line);
+                    cartChanged();
+                }
+                continue;
+            }
+
+            if (reserve(scan.productId(), scan.productName(), scan.quantityMilli())) {
+                cart.put(scan.productId(), new UiCartLineDto(scan.productId(), scan.productName(),
+                        Quantity.ofMilli(scan.quantityMilli()), Money.ofMinor(scan.unitPriceMinor())));
+                added = true;
+            }
+        }
+        if (added) {
+            cartDataProvider.refreshAll();
+            cartChanged();
+        }
+    }
+
+    /**
+     * Receives scans pushed from a paired scanner device; runs inside {@code UI.access}. Scans that
+     * arrive during a checkout are kept and added once its result is shown.
+     */
+    private void onSharedScans(List<SharedScan> scans) {
+        if (checkoutInProgress) {
+            pendingSharedScans.addAll(scans);
             return;
         }
+        addLines(scans);
+    }
 
-        Product p = posService.findProductByBarcode(barcode);
-        if (p == null) {
-            NotificationSupport.showError(translations.t("pos.productNotFound", barcode));
+    private void changeQuantity(UiCartLineDto line, long deltaMilli) {
+        if (checkoutInProgress) {
             return;
         }
+        if (reserve(line.getProductId(), line.getProductName(), line.getQuantityMilli() + deltaMilli)) {
+            line.addQuantity(deltaMilli);
+            if (line.getQuantityMilli() <= 0) {
+                cart.remove(line.getProductId());
+                cartDataProvider.refreshAll();
+            } else {
+                cartDataProvider.refreshItem(line);
+            }
+            cartChanged();
+        }
+    }
 
-        PriceDto activePrice = priceService.getActivePrice(p.getId());
-        if(activePrice == null) {
-            NotificationSupport.showError(translations.t("pos.activePriceNotFound", p.getName()));
+    private void removeLine(UiCartLineDto line) {
+        if (checkoutInProgress) {
             return;
         }
+        cart.remove(line.getProductId());
+        reservationLedger.release(cartId, line.getProductId());
+        cartDataProvider.refreshAll();
+        cartChanged();
+    }
+
+    /**
+     * Gives the changed cart a new checkout token: a retry with the old one would return the sale of
+     * the previous contents instead of selling these.
+     */
+    private void cartChanged() {
+        checkoutToken = UUID.randomUUID().toString();
+    }
+
+    /**
+     * Sets this cart's reservation for the product; shows the available stock if it is not enough.
+     */
+    private boolean reserve(long productId, String productName, long quantityMilli) {
+        Quantity quantity = Quantity.ofMilli(Math.max(0, quantityMilli));
+        if (reservationLedger.reserve(cartId, productId, quantity)) {
+            return true;
+        }
+        NotificationSupport.showError(translations.t(
+                "pos.stock.insufficient",
+                productName,
+                reservationLedger.available(cartId, productId),
+                quantity
+        ));
+        return false;
+    }
+
+    /**
+     * Detached product reference for the checkout; the session itself only keeps ids and names.
+     */
+    private Product toProduct(UiCartLineDto line) {
+        Product product = new Product(line.getProductName(), null);
+        product.setId(line.getProductId());
+        return product;
+    }
 
-        UiCartLineDto line = cart.get(p.getId());
-        if (line == null) {
-            cart.put(p.getId(), new UiCartLineDto(p, new BigDecimal("1"), activePrice.getAmount()));
-        } else {
-            line.setQuantity(line.getQuantity().add(new BigDecimal("1")));
+    private void openParkDialog() {
+        if (checkoutInProgress) {
+            NotificationSupport.showError(translations.t("pos.checkout.busy"));
+            return;
+        }
+        if (cart.isEmpty()) {
+            NotificationSupport.showError(translations.t("pos.cart.empty"));
+            return;
         }
-        refreshGrid();
+
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle(translations.t("pos.park"));
+        dialog.setWidth("90%");
+        dialog.setMaxWidth("480px");
+
+        TextField labelField = new TextField(translations.t("pos.park.label"));
+        labelField.setMaxLength(64);
+        labelField.setWidthFull();
+
+        Button save = new Button(translations.t("pos.park"), e -> {
+            List<ParkedCartLine> lines = cart.values().stream()
+                    .map(l -> new ParkedCartLine(l.getProductId(), l.getQuantityMilli(), l.getUnitPriceMinor()))
+                    .toList();
+            var user = securityService.getAuthenticatedUser();
+            parkedCartService.park(labelField.getValue(), user == null ? null : user.getUsername(), lines);
+            // a parked cart holds no stock
+            reservationLedger.releaseCart(cartId);
+            cart.clear();
+            cartChanged();
+            cartDataProvider.refreshAll();
+            dialog.close();
+            NotificationSupport.showSuccess(translations.t("pos.park.done"));
+            barcodeField.focus();
+        });
+        Button cancel = new Button(translations.t("button.cancel"), e -> dialog.close());
+
+        HorizontalLayout buttons = new HorizontalLayout(cancel, save);
+        buttons.setJustifyContentMode(JustifyContentMode.END);
+        buttons.setWidthFull();
+
+        dialog.add(new VerticalLayout(labelField, buttons));
+        dialog.open();
+        labelField.focus();
     }
 
-    private void normalize(UiCartLineDto line) {
-        if (line.getQuantity().compareTo(BigDecimal.ZERO) <= 0) {
-            cart.remove(line.getProduct().getId());
+    private void openResumeDialog() {
+        if (checkoutInProgress) {
+            NotificationSupport.showError(translations.t("pos.checkout.busy"));
+            return;
+        }
+        if (!cart.isEmpty()) {
+            NotificationSupport.showError(translations.t("pos.resume.cartNotEmpty"));
+            return;
         }
-        refreshGrid();
+
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle(translations.t("pos.resume"));
+        dialog.setWidth("90%");
+        dialog.setMaxWidth("700px");
+
+        Grid<ParkedCartDto> parkedGrid = new Grid<>(ParkedCartDto.class, false);
+        parkedGrid.addColumn(ParkedCartDto::label).setHeader(translations.t("pos.park.label")).setFlexGrow(1);
+        parkedGrid.addColumn(ParkedCartDto::parkedBy).setHeader(translations.t("pos.park.parkedBy")).setAutoWidth(true);
+        parkedGrid.addColumn(ParkedCartDto::lineCount).setHeader(translations.t("pos.park.lines")).setAutoWidth(true);
+        parkedGrid.addColumn(ParkedCartDto::total).setHeader(translations.t("pos.grid.lineTotal")).setAutoWidth(true);
+        parkedGrid.addColumn(ParkedCartDto::dateCreated).setHeader(translations.t("pos.park.parkedAt")).setAutoWidth(true);
+        parkedGrid.setItems(parkedCartService.findParked());
+        parkedGrid.addItemClickListener(e -> {
+            dialog.close();
+            resume(e.getItem());
+        });
+
+        Button cancel = new Button(translations.t("button.cancel"), e -> dialog.close());
+        dialog.add(parkedGrid);
+        dialog.getFooter().add(cancel);
+        dialog.open();
     }
 
-    private void refreshGrid() {
-        grid.setItems(cart.values());
+    /**
+     * Puts a parked cart back into this view at today's prices and reserves its stock again; lines
+     * whose product or price is gone, or whose stock is no longer available, are left out.
+     */
+    private void resume(ParkedCartDto parked) {
+        List<ParkedCartLine> lines = parkedCartService.resume(parked.id());
+        List<String> repriced = new ArrayList<>();
+        for (ParkedCartLine parkedLine : lines) {
+            ProductScanSnapshot snapshot = barcodeIndex.lookupByProductId(parkedLine.productId());
+            if (snapshot == null) {
+                NotificationSupport.showError(translations.t("pos.resume.productGone", parkedLine.productId()));
+                continue;
+            }
+            if (snapshot.price() == null) {
+                NotificationSupport.showError(translations.t("pos.activePriceNotFound", snapshot.name()));
+                continue;
+            }
+            Money price = Money.of(snapshot.price());
+            if (price.minorUnits() != parkedLine.unitPriceMinor()) {
+                repriced.add(snapshot.name());
+            }
+            if (reserve(snapshot.productId(), snapshot.name(), parkedLine.quantityMilli())) {
+                cart.put(snapshot.productId(), new UiCartLineDto(snapshot.productId(), snapshot.name(),
+                        Quantity.ofMilli(parkedLine.quantityMilli()), price));
+            }
+        }
+        if (!repriced.isEmpty()) {
+            NotificationSupport.showInfo(translations.t("pos.resume.priceChanged", String.join(", ", repriced)));
+        }
+        cartDataProvider.refreshAll();
+        cartChanged();
+        barcodeField.focus();
     }
 
 }
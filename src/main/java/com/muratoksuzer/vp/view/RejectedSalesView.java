@@ -0,0 +1,102 @@
+package com.muratoksuzer.vp.view;
+
+import com.muratoksuzer.vp.dto.CheckoutJournalStats;
+import com.muratoksuzer.vp.dto.RejectedSaleDto;
+import com.muratoksuzer.vp.service.DegradedCheckoutService;
+import com.muratoksuzer.vp.service.TranslationService;
+import com.muratoksuzer.vp.support.NotificationSupport;
+import com.muratoksuzer.vp.view.components.PaginationView;
+import com.muratoksuzer.vp.view.components.SearchBarView;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import jakarta.annotation.security.RolesAllowed;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Manager view of sales taken in degraded mode that could not be applied, plus journal health.
+ */
+@Route(value = "rejected-sales", layout = MainLayout.class)
+@PageTitle("Rejected Sales")
+@RolesAllowed({"ADMIN"})
+public class RejectedSalesView extends VerticalLayout {
+
+    private final DegradedCheckoutService degradedCheckoutService;
+    private final TranslationService translations;
+    private final Span journalStatus = new Span();
+    private PaginationView paginationView;
+    private Grid<RejectedSaleDto> rejectedSaleGrid;
+
+    public RejectedSalesView(DegradedCheckoutService degradedCheckoutService, TranslationService translations) {
+        this.degradedCheckoutService = degradedCheckoutService;
+        this.translations = translations;
+        setSizeFull();
+        add(new H2(translations.t("rejectedSale.title")));
+
+        Button refreshButton = new Button(translations.t("button.refresh"), VaadinIcon.REFRESH.create(), e -> {
+            refreshJournalStatus();
+            paginationView.loadCurrentPageAfterAddition();
+        });
+        HorizontalLayout statusLayout = new HorizontalLayout(journalStatus, refreshButton);
+        statusLayout.setDefaultVerticalComponentAlignment(Alignment.CENTER);
+        add(statusLayout);
+
+        SearchBarView searchBarView = new SearchBarView(translations) {
+
+            @Override
+            public void searchClicked(String searchValue) {
+                paginationView.setSearchTerm(searchValue);
+                long foundCount = paginationView.loadPage(0);
+                NotificationSupport.showInfo(translations.t("general.search.foundNotification", foundCount));
+            }
+        };
+        searchBarView.setJustifyContentMode(JustifyContentMode.END);
+        add(searchBarView);
+
+        this.rejectedSaleGrid = createGrid();
+        add(rejectedSaleGrid);
+
+        paginationView = new PaginationView() {
+
+            @Override
+            protected Page loadAndGetPage(Pageable pageable, String searchTerm) {
+                Page<RejectedSaleDto> page = degradedCheckoutService.findRejectedPaginated(pageable, searchTerm);
+                rejectedSaleGrid.setItems(page.getContent());
+                return page;
+            }
+        };
+        paginationView.setCurrentPageKey("currentPageRejectedSale");
+        add(paginationView);
+        paginationView.loadPage(paginationView.getCurrentPageInSession());
+
+        refreshJournalStatus();
+    }
+
+    private void refreshJournalStatus() {
+        CheckoutJournalStats stats = degradedCheckoutService.getStats();
+        journalStatus.setText(stats.enabled()
+                ? translations.t("rejectedSale.journalStatus", stats.queueDepth(), stats.drainLagMillis(), stats.drained(), stats.rejected())
+                : translations.t("rejectedSale.degradedModeOff"));
+    }
+
+    private Grid<RejectedSaleDto> createGrid() {
+        Grid<RejectedSaleDto> grid = new Grid<>(RejectedSaleDto.class, false);
+        grid.setSizeFull();
+        grid.setEmptyStateText(translations.t("general.noItems"));
+
+        grid.addColumn(RejectedSaleDto::saleNo).setHeader(translations.t("rejectedSale.saleNo")).setAutoWidth(true);
+        grid.addColumn(RejectedSaleDto::dateCreated).setHeader(translations.t("rejectedSale.rejectedAt")).setAutoWidth(true);
+        grid.addColumn(RejectedSaleDto::total).setHeader(translations.t("rejectedSale.total")).setAutoWidth(true);
+        grid.addColumn(RejectedSaleDto::reason).setHeader(translations.t("rejectedSale.reason")).setFlexGrow(1);
+        grid.addColumn(RejectedSaleDto::lines).setHeader(translations.t("rejectedSale.lines")).setFlexGrow(2);
+
+        return grid;
+    }
+}
@@ -0,0 +1,109 @@
+package com.muratoksuzer.vp.view;
+
+import com.muratoksuzer.vp.dto.SharedScan;
+import com.muratoksuzer.vp.service.BarcodeIndex;
+import com.muratoksuzer.vp.service.SharedCartBroadcaster;
+import com.muratoksuzer.vp.service.TranslationService;
+import com.muratoksuzer.vp.support.NotificationSupport;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.ClientCallable;
+import com.vaadin.flow.component.dependency.JsModule;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import jakarta.annotation.security.RolesAllowed;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Scanner device paired with a POS terminal by the code the terminal shows: barcodes are resolved
+ * here and the resolved lines are pushed to the terminal's cart.
+ */
+@Route(value = "pos/scanner", layout = MainLayout.class)
+@PageTitle("Scanner")
+@RolesAllowed({"USER", "ADMIN"})
+@JsModule("./pos/scan-buffer.js")
+public class ScannerView extends VerticalLayout {
+
+    private static final int SCAN_PAUSE_MS = 60;
+    private static final int MAX_BURST = 50;
+
+    private final BarcodeIndex barcodeIndex;
+    private final SharedCartBroadcaster sharedCartBroadcaster;
+    private final TranslationService translations;
+
+    private final TextField codeField;
+    private final TextField barcodeField;
+    private final Span lastSent = new Span();
+
+    public ScannerView(BarcodeIndex barcodeIndex, SharedCartBroadcaster sharedCartBroadcaster, TranslationService translations) {
+        this.barcodeIndex = barcodeIndex;
+        this.sharedCartBroadcaster = sharedCartBroadcaster;
+        this.translations = translations;
+
+        codeField = new TextField(translations.t("pos.shared.codeField"));
+        codeField.setMaxLength(16);
+        codeField.setWidthFull();
+
+        barcodeField = new TextField(translations.t("pos.scanEnterBarcode"));
+        barcodeField.setPlaceholder(translations.t("pos.scanEnterBarcodePlaceholder"));
+        barcodeField.setWidthFull();
+
+        add(codeField, barcodeField, lastSent);
+        codeField.focus();
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        barcodeField.getElement().executeJs(
+                "window.PosScanBuffer && window.PosScanBuffer.attach($0, $1, $2, $3);",
+                barcodeField.getElement(),
+                getElement(),
+                SCAN_PAUSE_MS,
+                MAX_BURST
+        );
+    }
+
+    /**
+     * Receives a burst of scanned barcodes from the client-side scan buffer.
+     */
+    @ClientCallable
+    private void onBarcodes(String[] barcodes) {
+        String code = codeField.getValue() == null ? "" : codeField.getValue().trim();
+        // checked before the lookup, so scans for a closed terminal cost nothing
+        if (!sharedCartBroadcaster.isConnected(code)) {
+            NotificationSupport.showError(translations.t("pos.shared.noTerminal", code));
+            return;
+        }
+
+        List<String> scanned = List.of(barcodes).subList(0, Math.min(barcodes.length, MAX_BURST)).stream()
+                .map(String::trim)
+                .filter(barcode -> !barcode.isBlank())
+                .toList();
+        if (scanned.isEmpty()) {
+            return;
+        }
+
+        Set<String> notFound = new LinkedHashSet<>();
+        Set<String> withoutPrice = new LinkedHashSet<>();
+        List<SharedScan> scans = PosView.resolveScans(barcodeIndex, scanned, notFound, withoutPrice);
+        notFound.forEach(barcode -> NotificationSupport.showError(translations.t("pos.productNotFound", barcode)));
+        withoutPrice.forEach(name -> NotificationSupport.showError(translations.t("pos.activePriceNotFound", name)));
+        if (scans.isEmpty()) {
+            return;
+        }
+
+        if (!sharedCartBroadcaster.publish(code, scans)) {
+            NotificationSupport.showError(translations.t("pos.shared.noTerminal", code));
+            return;
+        }
+        lastSent.setText(translations.t("pos.shared.sent", code.toUpperCase(),
+                scans.stream().map(SharedScan::productName).collect(Collectors.joining(", "))));
+    }
+}
@@ -0,0 +1,73 @@
+package com.muratoksuzer.vp.view.components;
+
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Prev/next paging by cursor instead of page number, for lists that are too large to count.
+ * Keeps the start cursor of every visited page so "previous" does not need a reverse query.
+ *
+ * @param <C> cursor type
+ */
+public abstract class KeysetPaginationView<C> extends HorizontalLayout {
+
+    private final Button prevButton = new Button("<");
+    private final Button nextButton = new Button(">");
+
+    private final C firstCursor;
+    private final Deque<C> visitedCursors = new ArrayDeque<>();
+    private C currentCursor;
+    private C nextCursor;
+    private String searchTerm;
+
+    public KeysetPaginationView(C firstCursor) {
+        this.firstCursor = firstCursor;
+        this.currentCursor = firstCursor;
+
+        prevButton.addClickListener(event -> {
+            if (!visitedCursors.isEmpty()) {
+                currentCursor = visitedCursors.pop();
+                loadCurrentPage();
+            }
+        });
+
+        nextButton.addClickListener(event -> {
+            if (nextCursor != null) {
+                visitedCursors.push(currentCursor);
+                currentCursor = nextCursor;
+                loadCurrentPage();
+            }
+        });
+
+        setAlignItems(Alignment.CENTER);
+        setWidthFull();
+        prevButton.addThemeVariants(ButtonVariant.LUMO_SMALL);
+        nextButton.addThemeVariants(ButtonVariant.LUMO_SMALL);
+        add(prevButton, nextButton);
+    }
+
+    public void loadFirstPage() {
+        visitedCursors.clear();
+        currentCursor = firstCursor;
+        loadCurrentPage();
+    }
+
+    public void loadCurrentPage() {
+        nextCursor = loadAndGetNextCursor(currentCursor, searchTerm);
+        prevButton.setEnabled(!visitedCursors.isEmpty());
+        nextButton.setEnabled(nextCursor != null);
+    }
+
+    /**
+     * Loads the page starting at {@code cursor} and returns the cursor of the following page, or null.
+     */
+    protected abstract C loadAndGetNextCursor(C cursor, String searchTerm);
+
+    public void setSearchTerm(String searchTerm) {
+        this.searchTerm = searchTerm;
+    }
+}
@@ -0,0 +1,176 @@
+package com.muratoksuzer.vp.view.subview;
+
+import com.muratoksuzer.vp.dto.GoodsReceiptProgress;
+import com.muratoksuzer.vp.dto.GoodsReceiptResult;
+import com.muratoksuzer.vp.service.GoodsReceiptService;
+import com.muratoksuzer.vp.service.TranslationService;
+import com.muratoksuzer.vp.support.NotificationSupport;
+import com.vaadin.flow.component.Key;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.checkbox.Checkbox;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.server.streams.UploadHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Receives a delivery from an uploaded file or a scanned list. The receipt runs in the background
+ * and its progress is pushed to the dialog.
+ */
+public class GoodsReceiptDialog extends Dialog {
+
+    private final GoodsReceiptService goodsReceiptService;
+    private final TranslationService translations;
+
+    private final TextField referenceField;
+    private final TextArea linesField;
+    private final Checkbox skipUnknownField;
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Span status = new Span();
+    private final Button receive;
+    private File uploadedFile;
+
+    public GoodsReceiptDialog(GoodsReceiptService goodsReceiptService,
+                              TranslationService translations,
+                              Consumer<Void> onSuccessReload) {
+        this.goodsReceiptService = goodsReceiptService;
+        this.translations = translations;
+
+        setDraggable(true);
+        setResizable(false);
+        setWidth("90%");
+        setMaxWidth("700px");
+        setMinWidth("320px");
+        setHeaderTitle(translations.t("goodsReceipt.title"));
+
+        referenceField = new TextField(translations.t("goodsReceipt.reference"));
+        referenceField.setWidthFull();
+        referenceField.setMaxLength(64);
+
+        UI ui = UI.getCurrent();
+        Upload upload = new Upload(UploadHandler.toTempFile((metadata, file) -> ui.access(() -> {
+            deleteUploadedFile();
+            uploadedFile = file;
+            status.setText(metadata.fileName());
+        })));
+        upload.setAcceptedFileTypes(".csv", ".txt", ".tsv");
+        upload.setMaxFiles(1);
+        upload.setDropLabel(new Span(translations.t("goodsReceipt.upload")));
+
+        linesField = new TextArea(translations.t("goodsReceipt.scanned"));
+        linesField.setWidthFull();
+        linesField.setMinHeight("120px");
+
+        skipUnknownField = new Checkbox(translations.t("goodsReceipt.skipUnknown"));
+
+        progressBar.setVisible(false);
+
+        Button cancel = new Button(translations.t("button.cancel"), e -> close());
+        cancel.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+        cancel.addClickShortcut(Key.ESCAPE);
+
+        receive = new Button(translations.t("goodsReceipt.receive"));
+        receive.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        receive.addClickListener(e -> startReceipt(ui, onSuccessReload));
+
+        HorizontalLayout buttons = new HorizontalLayout(cancel, receive);
+        buttons.setJustifyContentMode(HorizontalLayout.JustifyContentMode.END);
+        buttons.setWidthFull();
+
+        VerticalLayout content = new VerticalLayout(referenceField, upload, linesField, skipUnknownField, progressBar, status, buttons);
+        content.setPadding(false);
+        content.setSpacing(true);
+        add(content);
+
+        addDetachListener(e -> deleteUploadedFile());
+        referenceField.focus();
+    }
+
+    private void startReceipt(UI ui, Consumer<Void> onSuccessReload) {
+        String scanned = linesField.getValue() == null ? "" : linesField.getValue().strip();
+        if (uploadedFile == null && scanned.isEmpty()) {
+            NotificationSupport.showError(translations.t("goodsReceipt.noInput"));
+            return;
+        }
+
+        File file = uploadedFile;
+        String reference = referenceField.getValue();
+        boolean skipUnknown = skipUnknownField.getValue();
+        Locale locale = ui.getLocale();
+
+        receive.setEnabled(false);
+        progressBar.setVisible(true);
+        progressBar.setValue(0);
+
+        Thread.ofVirtual().name("goods-receipt").start(() -> {
+            try (InputStream input = file != null
+                    ? Files.newInputStream(file.toPath())
+                    : new ByteArrayInputStream(scanned.getBytes(StandardCharsets.UTF_8))) {
+                long size = file != null ? file.length() : scanned.length();
+                GoodsReceiptResult result = translations.withLocale(locale, () ->
+                        goodsReceiptService.receive(reference, input, size, skipUnknown, progress -> showProgress(ui, progress)));
+                access(ui, () -> {
+                    NotificationSupport.showSuccess(translations.t("goodsReceipt.done",
+                            result.lines(), result.products(), result.elapsedMillis()));
+                    if (!result.unknownBarcodes().isEmpty()) {
+                        NotificationSupport.showInfo(translations.t("goodsReceipt.skipped", String.join(", ", result.unknownBarcodes())));
+                    }
+                    close();
+                    if (onSuccessReload != null) onSuccessReload.accept(null);
+                });
+            } catch (IOException | RuntimeException e) {
+                access(ui, () -> {
+                    NotificationSupport.showError(e.getMessage());
+                    progressBar.setVisible(false);
+                    receive.setEnabled(true);
+                });
+            }
+        });
+    }
+
+    private void showProgress(UI ui, GoodsReceiptProgress progress) {
+        access(ui, () -> {
+            if (progress.phase() == GoodsReceiptProgress.Phase.STAGING && progress.totalBytes() > 0) {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue(progress.fraction());
+            } else {
+                progressBar.setIndeterminate(progress.phase() == GoodsReceiptProgress.Phase.APPLYING);
+            }
+            status.setText(translations.t(
+                    progress.phase() == GoodsReceiptProgress.Phase.STAGING ? "goodsReceipt.staging" : "goodsReceipt.applying",
+                    progress.lines()));
+        });
+    }
+
+    private static void access(UI ui, Runnable update) {
+        try {
+            ui.access(update::run);
+        } catch (UIDetachedException detached) {
+            // the dialog was closed meanwhile; the receipt itself still completes
+        }
+    }
+
+    private void deleteUploadedFile() {
+        if (uploadedFile != null) {
+            uploadedFile.delete();
+            uploadedFile = null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+// Collects barcodes typed by a keyboard-wedge scanner and sends them to the server in bursts:
+// every ENTER only queues the field value, and the queue is flushed once the scanner pauses for
+// `pauseMs` or holds `maxBatch` barcodes, so a fast burst costs one round trip instead of one per scan.
+
+const attached = new WeakSet();
+
+function attach(field, view, pauseMs, maxBatch) {
+  if (!field || !view || attached.has(field)) return;
+  attached.add(field);
+
+  let buffer = [];
+  let timer = null;
+
+  const flush = () => {
+    if (timer) {
+      clearTimeout(timer);
+      timer = null;
+    }
+    if (buffer.length === 0) return;
+    const batch = buffer;
+    buffer = [];
+    view.$server.onBarcodes(batch);
+  };
+
+  field.addEventListener("keydown", (e) => {
+    if (e.key !== "Enter") return;
+    e.preventDefault();
+    e.stopPropagation();
+
+    const barcode = (field.value || "").trim();
+    field.value = "";
+    if (!barcode) return;
+
+    buffer.push(barcode);
+    if (buffer.length >= maxBatch) {
+      flush();
+      return;
+    }
+    if (timer) clearTimeout(timer);
+    timer = setTimeout(flush, pauseMs);
+  });
+}
+
+window.PosScanBuffer = { attach };
@@ -0,0 +1,17 @@
+package com.muratoksuzer.vp;
+
+import org.springframework.boot.SpringApplication;
+
+/**
+ * Starts the application with the test classpath, which adds the benchmark runners and the embedded
+ * PostgreSQL of the 'loadtest' profile. The test classes have other main methods, so name this one:
+ * {@code ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.muratoksuzer.vp.TestVaadinInventoryPosApplication
+ * -Dspring-boot.run.profiles=loadtest}.
+ */
+public class TestVaadinInventoryPosApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.from(VaadinInventoryPosApplication::main).run(args);
+	}
+
+}
@@ -0,0 +1,233 @@
+package com.muratoksuzer.vp.benchmark;
+
+import com.muratoksuzer.vp.api.PosApiController;
+import com.muratoksuzer.vp.dto.PriceDto;
+import com.muratoksuzer.vp.dto.ProductDto;
+import com.muratoksuzer.vp.entity.domain.Currency;
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.service.InventoryService;
+import com.muratoksuzer.vp.service.PriceService;
+import com.muratoksuzer.vp.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Drives the REST batch checkout ({@code POST /api/pos/checkouts}) over HTTP from N virtual-thread
+ * clients against an embedded PostgreSQL.
+ * <p>
+ * Run with {@code --spring.profiles.active=loadtest --loadtest.scenario=api}. Uses
+ * {@code loadtest.terminals} as the number of clients, {@code loadtest.basket-size} and
+ * {@code loadtest.sku-count}; each client sends {@code loadtest.api.batches-per-client} batches of
+ * {@code loadtest.api.batch-size} sales. Starts once the application is ready, after the default
+ * user (root / root) is created, and reports sales per second, the latency of the first streamed
+ * result and of the whole batch, and failed sales.
+ * <p>
+ * This is the harness only: no run of it has been recorded yet.
+ */
+@Component
+@Profile("loadtest")
+@ConditionalOnProperty(name = "loadtest.scenario", havingValue = "api")
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class ApiCheckoutBenchmark implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiCheckoutBenchmark.class);
+
+    private final ProductService productService;
+    private final PriceService priceService;
+    private final InventoryService inventoryService;
+    private final Environment environment;
+    private final ApplicationContext applicationContext;
+
+    @Value("${loadtest.terminals:20}")
+    private int clients;
+
+    @Value("${loadtest.api.batches-per-client:20}")
+    private int batchesPerClient;
+
+    @Value("${loadtest.api.batch-size:100}")
+    private int batchSize;
+
+    @Value("${loadtest.basket-size:5}")
+    private int basketSize;
+
+    @Value("${loadtest.sku-count:200}")
+    private int skuCount;
+
+    @Value("${loadtest.initial-stock:100000}")
+    private long initialStock;
+
+    @Value("${loadtest.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    private final LongAdder sold = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder httpErrors = new LongAdder();
+
+    public ApiCheckoutBenchmark(ProductService productService,
+                                PriceService priceService,
+                                InventoryService inventoryService,
+                                Environment environment,
+                                ApplicationContext applicationContext) {
+        this.productService = productService;
+        this.priceService = priceService;
+        this.inventoryService = inventoryService;
+        this.environment = environment;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        List<String> barcodes = createSkus();
+        URI uri = URI.create("http://localhost:" + environment.getProperty("local.server.port") + "/api/pos/checkouts");
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("root:root".getBytes(StandardCharsets.UTF_8));
+
+        logger.info("API benchmark: clients={}, batches/client={}, batch size={}, basket={}, skus={}",
+                clients, batchesPerClient, batchSize, basketSize, skuCount);
+
+        long[][] firstResultLatencies = new long[clients][];
+        long[][] batchLatencies = new long[clients][];
+        long start = System.nanoTime();
+        try (HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                executor.submit(() -> {
+                    firstResultLatencies[client] = new long[batchesPerClient];
+                    batchLatencies[client] = new long[batchesPerClient];
+                    for (int b = 0; b < batchesPerClient; b++) {
+                        sendBatch(httpClient, uri, authorization, barcodes, firstResultLatencies[client], batchLatencies[client], b);
+                    }
+                });
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        report(firstResultLatencies, batchLatencies, elapsedNanos);
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private void sendBatch(HttpClient httpClient, URI uri, String authorization, List<String> barcodes,
+                           long[] firstResultLatencies, long[] batchLatencies, int batch) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .header("Accept", PosApiController.APPLICATION_NDJSON)
+                .POST(HttpRequest.BodyPublishers.ofString(randomBatch(barcodes)))
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                httpErrors.increment();
+                logger.warn("Batch failed with HTTP {}", response.statusCode());
+                response.body().close();
+                return;
+            }
+            long[] first = {0};
+            response.body().forEach(line -> {
+                if (first[0] == 0) {
+                    first[0] = System.nanoTime() - start;
+                }
+                if (line.contains("\"error\":null")) {
+                    sold.increment();
+                } else {
+                    failed.increment();
+                }
+            });
+            firstResultLatencies[batch] = first[0];
+        } catch (Exception e) {
+            httpErrors.increment();
+            logger.warn("Batch failed", e);
+        }
+        batchLatencies[batch] = System.nanoTime() - start;
+    }
+
+    private String randomBatch(List<String> barcodes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> sales = new ArrayList<>(batchSize);
+        for (int s = 0; s < batchSize; s++) {
+            String lines = random.ints(0, barcodes.size())
+                    .distinct()
+                    .limit(Math.min(basketSize, barcodes.size()))
+                    .mapToObj(i -> "{\"barcode\":\"" + barcodes.get(i) + "\",\"quantity\":1}")
+                    .collect(Collectors.joining(","));
+            sales.add("{\"checkoutToken\":\"" + UUID.randomUUID() + "\",\"lines\":[" + lines + "]}");
+        }
+        return "[" + String.join(",", sales) + "]";
+    }
+
+    private List<String> createSkus() {
+        long runId = System.currentTimeMillis();
+        List<String> barcodes = new ArrayList<>(skuCount);
+        for (int i = 0; i < skuCount; i++) {
+            String barcode = "API-" + runId + "-" + i;
+            Product product = productService.saveProduct(new ProductDto("Api " + runId + "-" + i, barcode));
+            priceService.createPriceAndSwitchActiveIfRequested(new PriceDto(BigDecimal.TEN, Currency.TRY), product.getId());
+            inventoryService.increaseStock(product.getId(), BigDecimal.valueOf(initialStock), "api benchmark");
+            barcodes.add(barcode);
+        }
+        return barcodes;
+    }
+
+    private void report(long[][] firstResultLatencies, long[][] batchLatencies, long elapsedNanos) {
+        long[] first = Arrays.stream(firstResultLatencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        long[] batches = Arrays.stream(batchLatencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        double seconds = elapsedNanos / 1_000_000_000.0;
+
+        logger.info("---------------- API batch checkout benchmark ----------------");
+        logger.info("batches sent           : {}", batches.length);
+        logger.info("sales sold             : {}", sold.sum());
+        logger.info("sales failed           : {}", failed.sum());
+        logger.info("failed batches (HTTP)  : {}", httpErrors.sum());
+        logger.info("throughput             : {} sales/s", String.format("%.1f", sold.sum() / seconds));
+        logger.info("first result p50       : {} ms", millis(percentile(first, 0.50)));
+        logger.info("first result p99       : {} ms", millis(percentile(first, 0.99)));
+        logger.info("batch latency p50      : {} ms", millis(percentile(batches, 0.50)));
+        logger.info("batch latency p99      : {} ms", millis(percentile(batches, 0.99)));
+        logger.info("batch latency max      : {} ms", millis(batches.length == 0 ? 0 : batches[batches.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,95 @@
+package com.muratoksuzer.vp.benchmark;
+
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.service.PosService;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the cart total: line totals plus grand total of a {@link PosService.CartLine} cart,
+ * computed as {@code PosService} does with {@link Money}/{@link Quantity} fixed-point, against the same
+ * lines held and multiplied as {@link BigDecimal}, rounded the same way.
+ * <p>
+ * Run with the test classpath, e.g.
+ * {@code ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main CartMathBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class CartMathBenchmark {
+
+    /**
+     * A cart line as it was before {@link Money}/{@link Quantity}: price and quantity as {@link BigDecimal}.
+     */
+    public record BigDecimalCartLine(Product product, BigDecimal quantity, BigDecimal unitPrice) {}
+
+    @Param({"5", "50", "200"})
+    public int lines;
+
+    private List<PosService.CartLine> cart;
+    private List<BigDecimalCartLine> bigDecimalCart;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        cart = new ArrayList<>(lines);
+        bigDecimalCart = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            Product product = new Product("Product " + i, "869" + i);
+            product.setId((long) i + 1);
+            // every fourth line is sold by weight
+            Quantity quantity = i % 4 == 0
+                    ? Quantity.ofMilli(random.nextLong(50, 5_000))
+                    : Quantity.ofMilli(random.nextLong(1, 20) * Quantity.MILLI);
+            Money unitPrice = Money.ofMinor(random.nextLong(100, 100_000));
+            cart.add(new PosService.CartLine(product, quantity, unitPrice));
+            bigDecimalCart.add(new BigDecimalCartLine(product, quantity.toBigDecimal(), unitPrice.toBigDecimal()));
+        }
+    }
+
+    @Benchmark
+    public long fixedPoint(Blackhole blackhole) {
+        long totalMinor = 0;
+        for (PosService.CartLine line : cart) {
+            long lineTotalMinor = Money.timesMinor(line.unitPrice().minorUnits(), line.quantity().milliUnits());
+            blackhole.consume(lineTotalMinor);
+            totalMinor = Math.addExact(totalMinor, lineTotalMinor);
+        }
+        return totalMinor;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal(Blackhole blackhole) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimalCartLine line : bigDecimalCart) {
+            BigDecimal lineTotal = line.unitPrice().multiply(line.quantity()).setScale(Money.SCALE, RoundingMode.HALF_UP);
+            blackhole.consume(lineTotal);
+            total = total.add(lineTotal);
+        }
+        return total;
+    }
+}
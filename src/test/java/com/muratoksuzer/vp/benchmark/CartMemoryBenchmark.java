@@ -0,0 +1,95 @@
+package com.muratoksuzer.vp.benchmark;
+
+import com.muratoksuzer.vp.dto.ParkedCartLine;
+import com.muratoksuzer.vp.dto.UiCartLineDto;
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.entity.domain.ProductUnit;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Measures what a 150-line POS cart costs in the session: lines holding a {@link Product} instance
+ * (the previous cart line layout), the primitive {@link UiCartLineDto}, and the parked binary form.
+ * <p>
+ * Keeps {@value #CARTS} carts of each kind alive and reports the heap growth per cart after a GC.
+ * {@code System.gc()} is only a request and the used heap also moves with allocation buffers, so the
+ * figures are a rough estimate for comparing the layouts, not exact sizes; use a heap dump or JOL for
+ * those. Plain main-method harness, run with a fixed heap and the test classpath, e.g.
+ * {@code ./mvnw test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * -Dexec.args="-Xms1g -Xmx1g -cp %classpath com.muratoksuzer.vp.benchmark.CartMemoryBenchmark"}.
+ */
+public final class CartMemoryBenchmark {
+
+    private static final int LINES = 150;
+    private static final int CARTS = 2_000;
+
+    /**
+     * Cart line as it was before carts kept only primitives.
+     */
+    private record ProductLine(Product product, long quantityMilli, long unitPriceMinor) {}
+
+    private CartMemoryBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long entityCart = bytesPerCart(cart -> {
+            Map<Long, ProductLine> lines = new LinkedHashMap<>();
+            for (int i = 0; i < LINES; i++) {
+                Product product = new Product("Product name " + cart + "-" + i, "869" + cart + "" + i);
+                product.setId((long) cart * LINES + i);
+                product.setUnit(ProductUnit.PCS);
+                lines.put(product.getId(), new ProductLine(product, Quantity.MILLI, 1999));
+            }
+            return lines;
+        });
+
+        long primitiveCart = bytesPerCart(cart -> {
+            Map<Long, UiCartLineDto> lines = new LinkedHashMap<>();
+            for (int i = 0; i < LINES; i++) {
+                long productId = (long) cart * LINES + i;
+                lines.put(productId, new UiCartLineDto(productId, "Product name " + cart + "-" + i, Quantity.ONE, Money.ofMinor(1999)));
+            }
+            return lines;
+        });
+
+        long parkedCart = bytesPerCart(cart -> {
+            List<ParkedCartLine> lines = new ArrayList<>(LINES);
+            for (int i = 0; i < LINES; i++) {
+                lines.add(new ParkedCartLine((long) cart * LINES + i, Quantity.MILLI, 1999));
+            }
+            return ParkedCartLine.encode(lines);
+        });
+
+        System.out.printf("%d-line cart, %d carts per run%n", LINES, CARTS);
+        System.out.printf("lines with Product     : %,d bytes/cart%n", entityCart);
+        System.out.printf("primitive cart lines   : %,d bytes/cart%n", primitiveCart);
+        System.out.printf("parked (binary) cart   : %,d bytes/cart%n", parkedCart);
+    }
+
+    private static long bytesPerCart(IntFunction<Object> cartFactory) {
+        Object[] carts = new Object[CARTS];
+        long before = usedHeap();
+        for (int i = 0; i < CARTS; i++) {
+            carts[i] = cartFactory.apply(i);
+        }
+        long after = usedHeap();
+        if (carts[CARTS - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / CARTS;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,88 @@
+package com.muratoksuzer.vp.benchmark;
+
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.entity.domain.StockItem;
+import com.muratoksuzer.vp.repository.ProductRepository;
+import com.muratoksuzer.vp.repository.StockItemRepository;
+import com.muratoksuzer.vp.service.PosService;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the INSERT statements one checkout of a 50-line basket sends to the database.
+ * Run with the 'benchmark' profile, which starts an embedded PostgreSQL.
+ * <p>
+ * With IDENTITY ids every entity is its own INSERT round trip; with pooled sequences and JDBC
+ * batching the lines and movements of a checkout go out as one batch per table. The counts are
+ * read from Hibernate statistics, so entity inserts stay the same and the JDBC statements show the
+ * difference; run it on both mappings to compare them.
+ */
+@Component
+@Profile("benchmark")
+public class CheckoutInsertBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutInsertBenchmark.class);
+
+    private static final int BASKET_SIZE = 50;
+    private static final int ROUNDS = 20;
+
+    private final PosService posService;
+    private final ProductRepository productRepository;
+    private final StockItemRepository stockItemRepository;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CheckoutInsertBenchmark(PosService posService,
+                                   ProductRepository productRepository,
+                                   StockItemRepository stockItemRepository,
+                                   EntityManagerFactory entityManagerFactory) {
+        this.posService = posService;
+        this.productRepository = productRepository;
+        this.stockItemRepository = stockItemRepository;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void run(String... args) {
+        List<PosService.CartLine> basket = createBasket();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            posService.checkout(basket);
+        }
+        long elapsedMicros = (System.nanoTime() - start) / 1_000;
+
+        logger.info("Checkout benchmark: basket={} lines, rounds={}", BASKET_SIZE, ROUNDS);
+        logger.info("  entity inserts per checkout     : {}", statistics.getEntityInsertCount() / ROUNDS);
+        logger.info("  JDBC statements per checkout    : {}", statistics.getPrepareStatementCount() / ROUNDS);
+        logger.info("  avg checkout time (micros)      : {}", elapsedMicros / ROUNDS);
+    }
+
+    private List<PosService.CartLine> createBasket() {
+        long runId = System.currentTimeMillis();
+        List<PosService.CartLine> basket = new ArrayList<>(BASKET_SIZE);
+        for (int i = 0; i < BASKET_SIZE; i++) {
+            Product product = productRepository.save(new Product("Benchmark " + runId + "-" + i, "BENCH-" + runId + "-" + i));
+            StockItem stockItem = new StockItem(product);
+            stockItem.setQuantityOnHand(new BigDecimal(ROUNDS * 10));
+            stockItemRepository.save(stockItem);
+            basket.add(new PosService.CartLine(product, Quantity.ONE, Money.ofMinor(1000)));
+        }
+        return basket;
+    }
+}
@@ -0,0 +1,276 @@
+package com.muratoksuzer.vp.benchmark;
+
+import com.muratoksuzer.vp.dto.ProductDto;
+import com.muratoksuzer.vp.engine.InventoryEngine;
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.service.GroupCommitCheckoutService;
+import com.muratoksuzer.vp.service.InventoryService;
+import com.muratoksuzer.vp.service.PosService;
+import com.muratoksuzer.vp.service.ProductService;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Drives {@link PosService#checkout} from N virtual-thread "terminals" against an embedded PostgreSQL.
+ * <p>
+ * Run with {@code --spring.profiles.active=loadtest}; knobs are the {@code loadtest.*} properties in
+ * {@code application-loadtest.properties}. SKUs are picked with a Zipf distribution, so a skew of 0
+ * spreads load evenly and a skew above 1 concentrates it on a few hot SKUs.
+ * <p>
+ * Reports throughput, latency percentiles, lock failures (deadlocks / lock timeouts), constraint
+ * violations and the drift between the stock on hand (stock item plus shards) and the sum of stock movements.
+ * Run once with {@code pos.inventory-engine.enabled=true} and once without to compare the in-memory
+ * {@link InventoryEngine} with the JPA checkout; with the engine the drift is checked after its
+ * write-behind has caught up. No engine comparison has been recorded yet.
+ */
+@Component
+@Profile("loadtest")
+@ConditionalOnProperty(name = "loadtest.scenario", havingValue = "checkout", matchIfMissing = true)
+public class CheckoutLoadTest implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutLoadTest.class);
+
+    private final PosService posService;
+    private final GroupCommitCheckoutService groupCommit;
+    private final InventoryEngine inventoryEngine;
+    private final ProductService productService;
+    private final InventoryService inventoryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationContext applicationContext;
+
+    @Value("${loadtest.terminals:20}")
+    private int terminals;
+
+    @Value("${loadtest.checkouts-per-terminal:500}")
+    private int checkoutsPerTerminal;
+
+    @Value("${loadtest.basket-size:5}")
+    private int basketSize;
+
+    @Value("${loadtest.sku-count:200}")
+    private int skuCount;
+
+    @Value("${loadtest.sku-skew:1.1}")
+    private double skuSkew;
+
+    @Value("${loadtest.initial-stock:100000}")
+    private long initialStock;
+
+    @Value("${loadtest.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder lockFailures = new LongAdder();
+    private final LongAdder constraintViolations = new LongAdder();
+    private final LongAdder otherErrors = new LongAdder();
+
+    public CheckoutLoadTest(PosService posService,
+                            GroupCommitCheckoutService groupCommit,
+                            InventoryEngine inventoryEngine,
+                            ProductService productService,
+                            InventoryService inventoryService,
+                            JdbcTemplate jdbcTemplate,
+                            ApplicationContext applicationContext) {
+        this.posService = posService;
+        this.groupCommit = groupCommit;
+        this.inventoryEngine = inventoryEngine;
+        this.productService = productService;
+        this.inventoryService = inventoryService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        List<Product> skus = createSkus();
+        double[] cumulative = zipfCumulative(skus.size(), skuSkew);
+
+        logger.info("Load test: terminals={}, checkouts/terminal={}, basket={}, skus={}, skew={}, group commit={}, inventory engine={}",
+                terminals, checkoutsPerTerminal, basketSize, skuCount, skuSkew, groupCommit.isEnabled(), inventoryEngine.isEnabled());
+
+        long[][] latencies = new long[terminals][];
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < terminals; t++) {
+                int terminal = t;
+                executor.submit(() -> latencies[terminal] = runTerminal(skus, cumulative));
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        report(latencies, elapsedNanos, skus);
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private long[] runTerminal(List<Product> skus, double[] cumulative) {
+        long[] latencies = new long[checkoutsPerTerminal];
+        for (int i = 0; i < checkoutsPerTerminal; i++) {
+            List<PosService.CartLine> basket = randomBasket(skus, cumulative);
+            long start = System.nanoTime();
+            try {
+                if (groupCommit.isEnabled()) {
+                    groupCommit.checkout(basket, null);
+                } else {
+                    posService.checkout(basket);
+                }
+                succeeded.increment();
+            } catch (AppLevelValidationException e) {
+                rejected.increment();
+            } catch (PessimisticLockingFailureException e) {
+                lockFailures.increment();
+            } catch (DataIntegrityViolationException e) {
+                constraintViolations.increment();
+            } catch (RuntimeException e) {
+                otherErrors.increment();
+                logger.warn("Checkout failed", e);
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private List<PosService.CartLine> randomBasket(List<Product> skus, double[] cumulative) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lines = Math.min(basketSize, skus.size());
+        Set<Integer> picked = new LinkedHashSet<>();
+        while (picked.size() < lines) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            picked.add(index >= 0 ? index : Math.min(-index - 1, skus.size() - 1));
+        }
+
+        List<PosService.CartLine> basket = new ArrayList<>(lines);
+        for (int index : picked) {
+            basket.add(new PosService.CartLine(skus.get(index), Quantity.ONE, Money.ofMinor(1000)));
+        }
+        return basket;
+    }
+
+    private List<Product> createSkus() {
+        long runId = System.currentTimeMillis();
+        List<Product> skus = new ArrayList<>(skuCount);
+        for (int i = 0; i < skuCount; i++) {
+            Product product = productService.saveProduct(new ProductDto("Load " + runId + "-" + i, "LOAD-" + runId + "-" + i));
+            inventoryService.increaseStock(product.getId(), BigDecimal.valueOf(initialStock), "load test");
+            skus.add(product);
+        }
+        return skus;
+    }
+
+    private static double[] zipfCumulative(int n, double skew) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1.0 / Math.pow(rank, skew);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private void report(long[][] latencies, long elapsedNanos, List<Product> skus) throws InterruptedException {
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        double seconds = elapsedNanos / 1_000_000_000.0;
+
+        logger.info("---------------- checkout load test ----------------");
+        logger.info("checkouts attempted    : {}", all.length);
+        logger.info("succeeded              : {}", succeeded.sum());
+        logger.info("rejected (validation)  : {}", rejected.sum());
+        logger.info("deadlocks/lock failures: {}", lockFailures.sum());
+        logger.info("constraint violations  : {}", constraintViolations.sum());
+        logger.info("other errors           : {}", otherErrors.sum());
+        logger.info("throughput             : {} checkouts/s", String.format("%.1f", succeeded.sum() / seconds));
+        logger.info("latency p50            : {} ms", millis(percentile(all, 0.50)));
+        logger.info("latency p99            : {} ms", millis(percentile(all, 0.99)));
+        logger.info("latency p999           : {} ms", millis(percentile(all, 0.999)));
+        logger.info("latency max            : {} ms", millis(all.length == 0 ? 0 : all[all.length - 1]));
+        if (groupCommit.isEnabled()) {
+            logger.info("group commit batch size: {} avg, {} fallbacks",
+                    String.format("%.1f", groupCommit.getAverageBatchSize()), groupCommit.getFallbackCount());
+        }
+        if (inventoryEngine.isEnabled()) {
+            long pending = inventoryEngine.getPendingWriteCount();
+            long start = System.nanoTime();
+            boolean caughtUp = inventoryEngine.awaitPersisted(Duration.ofMinutes(1));
+            logger.info("engine write-behind    : {} pending at end, {} ({} ms)", pending,
+                    caughtUp ? "caught up" : "NOT caught up", millis(System.nanoTime() - start));
+        }
+        logger.info("skus with stock drift  : {}", stockDrift(skus));
+    }
+
+    /**
+     * Counts products whose quantity on hand differs from the net sum of their stock movements.
+     * Sales are counted from sale lines, so this works with and without pos.derive-sale-movements.
+     */
+    private long stockDrift(List<Product> skus) {
+        String ids = skus.stream().map(p -> String.valueOf(p.getId())).collect(Collectors.joining(","));
+        List<String> drifted = jdbcTemplate.queryForList("""
+                select si.product_id || ': on hand=' || (si.quantity_on_hand + coalesce(sh.qty, 0)) || ', movements=' || coalesce(m.net, 0)
+                from stock_item si
+                left join (
+                    select stock_item_id, sum(quantity) as qty
+                    from stock_shard
+                    group by stock_item_id
+                ) sh on sh.stock_item_id = si.id
+                left join (
+                    select product_id, sum(delta) as net
+                    from (
+                        select product_id, case when type = 'IN' then quantity else -quantity end as delta
+                        from stock_movement
+                        where sale_id is null
+                        union all
+                        select product_id, -quantity
+                        from sale_line
+                    ) d
+                    group by product_id
+                ) m on m.product_id = si.product_id
+                where si.product_id in (%s)
+                  and si.quantity_on_hand + coalesce(sh.qty, 0) <> coalesce(m.net, 0)
+                """.formatted(ids), String.class);
+        drifted.forEach(row -> logger.warn("stock drift -> {}", row));
+        return drifted.size();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,35 @@
+package com.muratoksuzer.vp.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * Starts a throw-away PostgreSQL instance for the 'loadtest' and 'benchmark' profiles, so load and
+ * benchmark runs never touch the docker-compose database.
+ */
+@Configuration
+@Profile({"loadtest", "benchmark"})
+public class EmbeddedPostgresConfig {
+
+    @Bean(destroyMethod = "close")
+    public EmbeddedPostgres embeddedPostgres() throws IOException {
+        return EmbeddedPostgres.builder().start();
+    }
+
+    @Bean
+    public DataSource dataSource(EmbeddedPostgres embeddedPostgres,
+                                 @Value("${loadtest.terminals:20}") int terminals) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(embeddedPostgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true");
+        dataSource.setUsername("postgres");
+        dataSource.setMaximumPoolSize(terminals + 5);
+        return dataSource;
+    }
+}
@@ -0,0 +1,155 @@
+package com.muratoksuzer.vp.benchmark;
+
+import com.muratoksuzer.vp.dto.ProductDto;
+import com.muratoksuzer.vp.engine.InventoryEngine;
+import com.muratoksuzer.vp.entity.domain.Product;
+import com.muratoksuzer.vp.entity.domain.StockItem;
+import com.muratoksuzer.vp.exception.AppLevelValidationException;
+import com.muratoksuzer.vp.repository.StockItemRepository;
+import com.muratoksuzer.vp.service.InventoryService;
+import com.muratoksuzer.vp.service.PosService;
+import com.muratoksuzer.vp.service.ProductService;
+import com.muratoksuzer.vp.service.StockShardService;
+import com.muratoksuzer.vp.value.Money;
+import com.muratoksuzer.vp.value.Quantity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single hot SKU benchmark: every terminal sells the same product, once with a plain stock row and
+ * once per configured shard count, and the checkout throughput of each run is compared.
+ * <p>
+ * Run with {@code --spring.profiles.active=loadtest --loadtest.scenario=hot-sku}. Uses
+ * {@code loadtest.terminals} and {@code loadtest.checkouts-per-terminal}; the shard counts come from
+ * {@code loadtest.hot-sku.shard-counts}. After each run the stock on hand is checked against the
+ * number of units sold. With {@code pos.inventory-engine.enabled=true} shards are not used: one run is
+ * made against the in-memory {@link InventoryEngine} instead.
+ * <p>
+ * This is the harness only: no run of it has been recorded yet, so there are no plain vs sharded
+ * figures to compare against.
+ */
+@Component
+@Profile("loadtest")
+@ConditionalOnProperty(name = "loadtest.scenario", havingValue = "hot-sku")
+public class HotSkuShardBenchmark implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotSkuShardBenchmark.class);
+
+    private final PosService posService;
+    private final ProductService productService;
+    private final InventoryService inventoryService;
+    private final StockShardService stockShardService;
+    private final InventoryEngine inventoryEngine;
+    private final StockItemRepository stockItemRepository;
+    private final ApplicationContext applicationContext;
+
+    @Value("${loadtest.terminals:20}")
+    private int terminals;
+
+    @Value("${loadtest.checkouts-per-terminal:500}")
+    private int checkoutsPerTerminal;
+
+    @Value("${loadtest.hot-sku.shard-counts:1,8}")
+    private List<Integer> shardCounts;
+
+    @Value("${loadtest.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    public HotSkuShardBenchmark(PosService posService,
+                                ProductService productService,
+                                InventoryService inventoryService,
+                                StockShardService stockShardService,
+                                InventoryEngine inventoryEngine,
+                                StockItemRepository stockItemRepository,
+                                ApplicationContext applicationContext) {
+        this.posService = posService;
+        this.productService = productService;
+        this.inventoryService = inventoryService;
+        this.stockShardService = stockShardService;
+        this.inventoryEngine = inventoryEngine;
+        this.stockItemRepository = stockItemRepository;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(String... args) throws InterruptedException {
+        logger.info("Hot SKU benchmark: terminals={}, checkouts/terminal={}, shard counts={}, inventory engine={}",
+                terminals, checkoutsPerTerminal, shardCounts, inventoryEngine.isEnabled());
+
+        if (inventoryEngine.isEnabled()) {
+            runWithShards(1);
+        } else {
+            for (int shardCount : shardCounts) {
+                runWithShards(shardCount);
+            }
+        }
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private void runWithShards(int shardCount) throws InterruptedException {
+        long runId = System.currentTimeMillis();
+        Product product = productService.saveProduct(new ProductDto("Hot " + runId, "HOT-" + runId));
+        long initialStock = (long) terminals * checkoutsPerTerminal;
+        inventoryService.increaseStock(product.getId(), BigDecimal.valueOf(initialStock), "hot sku benchmark");
+        if (!inventoryEngine.isEnabled()) {
+            inventoryService.updateShardCount(product.getId(), shardCount);
+        }
+
+        List<PosService.CartLine> basket = List.of(new PosService.CartLine(product, Quantity.ONE, Money.ofMinor(100)));
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < terminals; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < checkoutsPerTerminal; i++) {
+                        try {
+                            posService.checkout(basket);
+                            succeeded.increment();
+                        } catch (AppLevelValidationException e) {
+                            failed.increment();
+                        } catch (RuntimeException e) {
+                            failed.increment();
+                            logger.warn("Checkout failed", e);
+                        }
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        if (inventoryEngine.isEnabled() && !inventoryEngine.awaitPersisted(Duration.ofMinutes(1))) {
+            logger.warn("Inventory engine write-behind did not catch up within a minute");
+        }
+
+        StockItem stockItem = stockItemRepository.findByProductId(product.getId()).orElseThrow();
+        BigDecimal onHand = stockShardService.quantityOnHand(stockItem);
+        BigDecimal expected = BigDecimal.valueOf(initialStock - succeeded.sum());
+
+        logger.info("---------------- hot sku, {} ----------------",
+                inventoryEngine.isEnabled() ? "inventory engine" : shardCount + " shard(s)");
+        logger.info("succeeded   : {}", succeeded.sum());
+        logger.info("failed      : {}", failed.sum());
+        logger.info("throughput  : {} checkouts/s", String.format("%.1f", succeeded.sum() / seconds));
+        logger.info("stock check : on hand={}, expected={}{}", onHand, expected,
+                onHand.compareTo(expected) == 0 ? "" : "  <-- DRIFT");
+    }
+}